@@ -9,12 +9,13 @@
  *******************************************************************************/
 package org.buildroot.cdt.toolchain;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.ILog;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
@@ -27,6 +28,10 @@ public class BuildrootActivator extends AbstractUIPlugin {
 	// The plug-in ID
 	public static final String PLUGIN_ID = "org.buildroot.cdt.toolchain"; //$NON-NLS-1$
 
+	// Debug option tracing the registration of the dynamic extensions
+	public static final String DEBUG_REGISTRATION = PLUGIN_ID
+			+ "/debug/registration"; //$NON-NLS-1$
+
 	// The shared instance
 	private static BuildrootActivator plugin;
 
@@ -35,7 +40,12 @@ public class BuildrootActivator extends AbstractUIPlugin {
 	 */
 	private static ILog logger;
 
-	private static Map<String, BuildrootDebuggerConfig> debuggerConfigurations = new HashMap<String, BuildrootDebuggerConfig>();
+	private static Map<String, BuildrootDebuggerConfig> debuggerConfigurations = new ConcurrentHashMap<String, BuildrootDebuggerConfig>();
+
+	/**
+	 * Watcher of the buildroot configuration file.
+	 */
+	private BuildrootToolchainsWatcher toolchainsWatcher;
 
 	/**
 	 * The constructor
@@ -63,6 +73,10 @@ public class BuildrootActivator extends AbstractUIPlugin {
 	 * )
 	 */
 	public void stop(BundleContext context) throws Exception {
+		if (toolchainsWatcher != null) {
+			toolchainsWatcher.stop();
+			toolchainsWatcher = null;
+		}
 		plugin = null;
 		debuggerConfigurations.clear();
 		super.stop(context);
@@ -77,6 +91,20 @@ public class BuildrootActivator extends AbstractUIPlugin {
 		return plugin;
 	}
 
+	/**
+	 * Set the watcher of the buildroot configuration file, which is stopped
+	 * with the plug-in.
+	 * 
+	 * @param watcher
+	 *            The started watcher
+	 */
+	public synchronized void setToolchainsWatcher(
+			BuildrootToolchainsWatcher watcher) {
+		if (toolchainsWatcher != null)
+			toolchainsWatcher.stop();
+		toolchainsWatcher = watcher;
+	}
+
 	public static ILog getLogger() {
 		return logger;
 	}
@@ -103,6 +131,30 @@ public class BuildrootActivator extends AbstractUIPlugin {
 		}
 	}
 
+	/**
+	 * Tells whether a debug option of the plug-in is enabled.
+	 * 
+	 * @param option
+	 *            the debug option
+	 * @return true if the plug-in is debugging and the option is enabled
+	 */
+	public boolean isDebugging(String option) {
+		return isDebugging()
+				&& Boolean.parseBoolean(Platform.getDebugOption(option));
+	}
+
+	/**
+	 * Logs an information in the error log.
+	 * 
+	 * @param message
+	 *            the message to log
+	 */
+	public void info(String message) {
+		this.getLog().log(
+				new Status(IStatus.INFO, this.getBundle().getSymbolicName(),
+						message));
+	}
+
 	/**
 	 * Logs a warning in the error log.
 	 * 
@@ -133,6 +185,12 @@ public class BuildrootActivator extends AbstractUIPlugin {
 		return debuggerConfigurations.get(name).getDebugName();
 	}
 
+	public static void unregisterDebuggerConfiguration(String architecture,
+			String path) {
+		debuggerConfigurations.remove(BuildrootUtils.getToolName(
+				architecture, path, null));
+	}
+
 	public static void registerDebuggerConfiguration(String architecture,
 			String prefix, String path) {
 		debuggerConfigurations.put(
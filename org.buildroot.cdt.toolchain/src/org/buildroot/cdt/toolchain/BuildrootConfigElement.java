@@ -9,10 +9,15 @@
  *******************************************************************************/
 package org.buildroot.cdt.toolchain;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import org.eclipse.cdt.managedbuilder.core.IEnvironmentVariableSupplierDynamicConfiguration;
 import org.eclipse.cdt.managedbuilder.core.IManagedConfigElement;
@@ -49,12 +54,38 @@ public class BuildrootConfigElement implements IManagedConfigElement, IEnvironme
 		}
 	}
 
-	private List<IManagedConfigElement> children = new ArrayList<IManagedConfigElement>();
+	private static final ManagedConfigElementAttribute[] ATTRIBUTES = ManagedConfigElementAttribute
+			.values();
+	private static final Map<String, ManagedConfigElementAttribute> ATTRIBUTES_BY_NAME = new HashMap<String, ManagedConfigElementAttribute>();
+	static {
+		for (ManagedConfigElementAttribute attribute : ATTRIBUTES) {
+			ATTRIBUTES_BY_NAME.put(attribute.name(), attribute);
+		}
+	}
+
+	private static final IManagedConfigElement[] NO_CHILDREN = new IManagedConfigElement[0];
+
 	private String name;
-	private Map<String, String> attributes = new HashMap<String, String>();
+
+	/**
+	 * Attribute values indexed by attribute ordinal. Values are interned as
+	 * the same ones are repeated across all the toolchains.
+	 */
+	private String[] attributes = new String[ATTRIBUTES.length];
+
+	private IManagedConfigElement[] children = NO_CHILDREN;
+
+	/**
+	 * Children by element name, computed on the first lookup by name.
+	 */
+	private Map<String, IManagedConfigElement[]> childrenByName;
 
 	public BuildrootConfigElement(ManagedConfigElement name) {
-		this.name = name.getName();
+		this(name.getName());
+	}
+
+	private BuildrootConfigElement(String name) {
+		this.name = name.intern();
 	}
 
 	public String getIdentifier(String path, String suffix) {
@@ -67,29 +98,58 @@ public class BuildrootConfigElement implements IManagedConfigElement, IEnvironme
 		return "org.buildroot." + path + "." + suffix;
 	}
 
+	/**
+	 * The returned array is shared and must not be modified.
+	 */
 	@Override
-	public IManagedConfigElement[] getChildren() {
-		return (IManagedConfigElement[]) children
-				.toArray(new IManagedConfigElement[children.size()]);
+	public synchronized IManagedConfigElement[] getChildren() {
+		return children;
 	}
 
+	/**
+	 * The returned array is shared and must not be modified.
+	 */
 	@Override
-	public IManagedConfigElement[] getChildren(String elementName) {
-		List<IManagedConfigElement> filteredChildren = new ArrayList<IManagedConfigElement>();
-		for (IManagedConfigElement element : children) {
-			if (element.getName().equals(elementName))
-				filteredChildren.add(element);
+	public synchronized IManagedConfigElement[] getChildren(String elementName) {
+		if (childrenByName == null) {
+			Map<String, List<IManagedConfigElement>> lists = new HashMap<String, List<IManagedConfigElement>>();
+			for (IManagedConfigElement element : children) {
+				List<IManagedConfigElement> list = lists.get(element.getName());
+				if (list == null) {
+					list = new ArrayList<IManagedConfigElement>();
+					lists.put(element.getName(), list);
+				}
+				list.add(element);
+			}
+			childrenByName = new HashMap<String, IManagedConfigElement[]>();
+			for (Entry<String, List<IManagedConfigElement>> entry : lists
+					.entrySet()) {
+				List<IManagedConfigElement> list = entry.getValue();
+				childrenByName.put(entry.getKey(),
+						list.toArray(new IManagedConfigElement[list.size()]));
+			}
 		}
-		return (IManagedConfigElement[]) filteredChildren
-				.toArray(new IManagedConfigElement[filteredChildren.size()]);
+		IManagedConfigElement[] filteredChildren = childrenByName
+				.get(elementName);
+		return filteredChildren != null ? filteredChildren : NO_CHILDREN;
 	}
 
-	public void addChild(IManagedConfigElement element) {
-		children.add(element);
+	public synchronized void addChild(IManagedConfigElement element) {
+		IManagedConfigElement[] newChildren = Arrays.copyOf(children,
+				children.length + 1);
+		newChildren[children.length] = element;
+		children = newChildren;
+		childrenByName = null;
 	}
 
-	public void addChildren(List<IManagedConfigElement> element) {
-		children.addAll(element);
+	public synchronized void addChildren(List<IManagedConfigElement> element) {
+		IManagedConfigElement[] newChildren = Arrays.copyOf(children,
+				children.length + element.size());
+		for (int i = 0; i < element.size(); i++) {
+			newChildren[children.length + i] = element.get(i);
+		}
+		children = newChildren;
+		childrenByName = null;
 	}
 
 	@Override
@@ -99,11 +159,71 @@ public class BuildrootConfigElement implements IManagedConfigElement, IEnvironme
 
 	@Override
 	public String getAttribute(String attribute) {
-		return attributes.get(attribute);
+		ManagedConfigElementAttribute key = ATTRIBUTES_BY_NAME.get(attribute);
+		return key != null ? attributes[key.ordinal()] : null;
 	}
 
 	public void setAttribute(ManagedConfigElementAttribute name, String value) {
-		attributes.put(name.name(), value);
+		attributes[name.ordinal()] = value != null ? value.intern() : null;
+	}
+
+	/**
+	 * Write this element and its children.
+	 * 
+	 * @param out
+	 *            Output to write to
+	 * @throws IOException
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeUTF(name);
+		int attributeCount = 0;
+		for (String value : attributes) {
+			if (value != null)
+				attributeCount++;
+		}
+		out.writeInt(attributeCount);
+		for (ManagedConfigElementAttribute attribute : ATTRIBUTES) {
+			String value = attributes[attribute.ordinal()];
+			if (value != null) {
+				out.writeUTF(attribute.name());
+				out.writeUTF(value);
+			}
+		}
+		IManagedConfigElement[] elements = getChildren();
+		out.writeInt(elements.length);
+		for (IManagedConfigElement child : elements) {
+			((BuildrootConfigElement) child).write(out);
+		}
+	}
+
+	/**
+	 * Read an element and its children written by
+	 * {@link #write(DataOutput)}.
+	 * 
+	 * @param in
+	 *            Input to read from
+	 * @return The element
+	 * @throws IOException
+	 */
+	public static BuildrootConfigElement read(DataInput in) throws IOException {
+		BuildrootConfigElement element = new BuildrootConfigElement(
+				in.readUTF());
+		int attributeCount = in.readInt();
+		for (int i = 0; i < attributeCount; i++) {
+			ManagedConfigElementAttribute key = ATTRIBUTES_BY_NAME.get(in
+					.readUTF());
+			String value = in.readUTF();
+			if (key != null)
+				element.setAttribute(key, value);
+		}
+		int childCount = in.readInt();
+		List<IManagedConfigElement> children = new ArrayList<IManagedConfigElement>(
+				childCount);
+		for (int i = 0; i < childCount; i++) {
+			children.add(read(in));
+		}
+		element.addChildren(children);
+		return element;
 	}
 
 	@Override
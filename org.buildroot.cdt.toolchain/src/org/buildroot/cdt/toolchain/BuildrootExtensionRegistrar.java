@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Melanie Bats <melanie.bats@obeo.fr> - Initial contribution
+ *******************************************************************************/
+package org.buildroot.cdt.toolchain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collect the dynamic extensions of the Buildroot toolchains and register them
+ * as a single contribution, so that the extension registry parses one
+ * document and fires one change event for all the toolchains.
+ */
+public class BuildrootExtensionRegistrar {
+	private static final String PLUGIN_START = "<plugin>";
+	private static final String PLUGIN_END = "</plugin>";
+
+	private static long registrationTime;
+	private static int registrationCount;
+
+	private List<String> contributions = new ArrayList<String>();
+	private StringBuilder extensions = new StringBuilder();
+
+	/**
+	 * Add the extensions of a plugin.xml document.
+	 *
+	 * @param contribution
+	 *            plugin.xml document defining the extension points content
+	 */
+	public void add(String contribution) {
+		int start = contribution.indexOf(PLUGIN_START);
+		int end = contribution.lastIndexOf(PLUGIN_END);
+		if (start < 0 || end < start) {
+			BuildrootActivator.getDefault().warning(
+					"Contribution is not a plugin document : " + contribution,
+					null);
+			return;
+		}
+		contributions.add(contribution);
+		extensions.append(contribution, start + PLUGIN_START.length(), end);
+	}
+
+	/**
+	 * Register all the collected extensions.
+	 */
+	public void register() {
+		if (contributions.isEmpty())
+			return;
+
+		long start = System.nanoTime();
+		StringBuilder buffer = new StringBuilder(extensions.length() + 100);
+		buffer.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+		buffer.append("<?eclipse version=\"3.4\"?>");
+		buffer.append(PLUGIN_START);
+		buffer.append(extensions);
+		buffer.append(PLUGIN_END);
+		if (!BuildrootUtils.addContribution(buffer.toString())) {
+			// Register the contributions one by one so that a faulty one does
+			// not prevent the others from being registered
+			for (String contribution : contributions) {
+				BuildrootUtils.registerExtensionPoint(contribution);
+			}
+		}
+		long duration = (System.nanoTime() - start) / 1000000;
+
+		synchronized (BuildrootExtensionRegistrar.class) {
+			registrationTime += duration;
+			registrationCount++;
+		}
+		BuildrootActivator activator = BuildrootActivator.getDefault();
+		if (activator.isDebugging(BuildrootActivator.DEBUG_REGISTRATION)) {
+			activator.info("Registered " + contributions.size()
+					+ " contributions in " + duration + " ms");
+		}
+		contributions.clear();
+		extensions.setLength(0);
+	}
+
+	/**
+	 * @return Total time spent registering extensions in milliseconds
+	 */
+	public static synchronized long getRegistrationTime() {
+		return registrationTime;
+	}
+
+	/**
+	 * @return Number of registrations done
+	 */
+	public static synchronized int getRegistrationCount() {
+		return registrationCount;
+	}
+}
@@ -24,11 +24,24 @@ public class BuildrootLaunchConfiguration {
 	}
 
 	public void createLaunchConfiguration() {
+		// Register this extension dynamically
+		BuildrootUtils.registerExtensionPoint(createLaunchConfigurationExtension());
+
+		// Register the debugger configuration
+		BuildrootActivator.registerDebuggerConfiguration(architecture, prefix, path);
+	}
+
+	/**
+	 * Get the launch configuration extensions of the toolchain.
+	 * 
+	 * @return Launch configuration extension points in string format.
+	 */
+	public StringBuffer createLaunchConfigurationExtension() {
 		StringBuffer buffer = new StringBuffer(
 				"<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
 		buffer.append("<?eclipse version=\"3.4\"?>");
 		buffer.append("<plugin>");
-		buffer.append("  <extension point=\"org.eclipse.debug.core.launchConfigurationTypes\">");
+		buffer.append("  <extension id=\"" + getLaunchConfigTypeId() + ".types\" point=\"org.eclipse.debug.core.launchConfigurationTypes\">");
 		buffer.append("    <launchConfigurationType");
 		buffer.append("      id=\"" + getLaunchConfigTypeId() + "\"");
 		buffer.append("      modes=\"run,debug\"");
@@ -36,7 +49,7 @@ public class BuildrootLaunchConfiguration {
 		buffer.append("      public=\"true\">");
 		buffer.append("    </launchConfigurationType>");
 		buffer.append("  </extension>");
-		buffer.append("  <extension point=\"org.eclipse.debug.core.launchDelegates\">");
+		buffer.append("  <extension id=\"" + getLaunchConfigTypeId() + ".delegates\" point=\"org.eclipse.debug.core.launchDelegates\">");
 		buffer.append("    <launchDelegate");
 		buffer.append("      id=\"org.eclipse.rse.remotecdt.launch." + getLaunchConfigTypeId() + "\"");
 		buffer.append("      type=\"" + getLaunchConfigTypeId() + "\"");
@@ -58,14 +71,14 @@ public class BuildrootLaunchConfiguration {
 		buffer.append("      sourcePathComputerId=\"org.eclipse.cdt.debug.core.sourcePathComputer\">");
 		buffer.append("    </launchDelegate>");
 		buffer.append("  </extension>");
-		buffer.append("  <extension point=\"org.eclipse.debug.ui.launchConfigurationTabGroups\">");
+		buffer.append("  <extension id=\"" + getLaunchConfigTypeId() + ".tabGroups\" point=\"org.eclipse.debug.ui.launchConfigurationTabGroups\">");
 		buffer.append("    <launchConfigurationTabGroup");
 		buffer.append("      class=\"org.buildroot.cdt.toolchain.BuildrootLaunchConfigurationTabGroup\"");
 		buffer.append("      id=\"" + getLaunchConfigTabGroupId() + "\"");
 		buffer.append("      type=\"" + getLaunchConfigTypeId() + "\">");
 		buffer.append("    </launchConfigurationTabGroup>");
 		buffer.append("  </extension>");
-		buffer.append("  <extension point=\"org.eclipse.debug.ui.launchConfigurationTypeImages\">");
+		buffer.append("  <extension id=\"" + getLaunchConfigTypeId() + ".images\" point=\"org.eclipse.debug.ui.launchConfigurationTypeImages\">");
 		buffer.append("    <launchConfigurationTypeImage");
 		buffer.append("      configTypeID=\"" + getLaunchConfigTypeId() + "\"");
 		buffer.append("      icon=\"icons/buildroot-icon16.png\"");
@@ -73,12 +86,7 @@ public class BuildrootLaunchConfiguration {
 		buffer.append("    </launchConfigurationTypeImage>");
 		buffer.append("  </extension>");
 		buffer.append("</plugin>");
-
-		// Register this extension dynamically
-		BuildrootUtils.registerExtensionPoint(buffer);
-
-		// Register the debugger configuration
-		BuildrootActivator.registerDebuggerConfiguration(architecture, prefix, path);
+		return buffer;
 	}
 
 	public String getLaunchConfigTypeId() {
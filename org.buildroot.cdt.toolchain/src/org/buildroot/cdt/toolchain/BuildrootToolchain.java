@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Melanie Bats <melanie.bats@obeo.fr> - Initial contribution
+ *******************************************************************************/
+package org.buildroot.cdt.toolchain;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.cdt.managedbuilder.core.IManagedConfigElement;
+
+/**
+ * A toolchain registered in $HOME/.buildroot-eclipse.toolchains together with
+ * the CDT configuration elements and the dynamic extensions generated for it.
+ */
+public class BuildrootToolchain {
+	private static final Pattern EXTENSION_ID_PATTERN = Pattern
+			.compile("<extension\\s+id=\"([^\"]+)\"");
+
+	private String path;
+	private String prefix;
+	private String architecture;
+
+	private long cCompilerTimestamp;
+	private long cppCompilerTimestamp;
+
+	private List<IManagedConfigElement> configElements = new ArrayList<IManagedConfigElement>();
+	private List<String> contributions = new ArrayList<String>();
+
+	public BuildrootToolchain(String path, String prefix, String architecture) {
+		this.path = path;
+		this.prefix = prefix;
+		this.architecture = architecture;
+	}
+
+	/**
+	 * Parse a line of the buildroot configuration file.
+	 *
+	 * @param line
+	 *            Line formatted as path:prefix:architecture
+	 * @return The toolchain or null if the line is malformed
+	 */
+	public static BuildrootToolchain parse(String line) {
+		String[] config = line.split(":");
+		if (config.length < 3)
+			return null;
+		return new BuildrootToolchain(config[0], config[1],
+				config[2].toUpperCase());
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public String getPrefix() {
+		return prefix;
+	}
+
+	public String getArchitecture() {
+		return architecture;
+	}
+
+	/**
+	 * Look for the compilers of the toolchain. This accesses the toolchain
+	 * output directory, which may be slow.
+	 */
+	public void probe() {
+		cCompilerTimestamp = getTimestamp("gcc");
+		cppCompilerTimestamp = getTimestamp("g++");
+	}
+
+	private long getTimestamp(String compilerName) {
+		return new File(BuildrootUtils.getPrefixedToolPath(prefix, path,
+				compilerName)).lastModified();
+	}
+
+	/**
+	 * @return The modification time of the C compiler as of {@link #probe()}
+	 *         or 0 if it does not exist
+	 */
+	public long getCCompilerTimestamp() {
+		return cCompilerTimestamp;
+	}
+
+	/**
+	 * @return The modification time of the C++ compiler as of
+	 *         {@link #probe()} or 0 if it does not exist
+	 */
+	public long getCppCompilerTimestamp() {
+		return cppCompilerTimestamp;
+	}
+
+	void setTimestamps(long cCompilerTimestamp, long cppCompilerTimestamp) {
+		this.cCompilerTimestamp = cCompilerTimestamp;
+		this.cppCompilerTimestamp = cppCompilerTimestamp;
+	}
+
+	/**
+	 * @param other
+	 *            Another toolchain with the same output directory
+	 * @return True if the other toolchain has the same prefix, architecture
+	 *         and compilers than this one
+	 */
+	public boolean hasSameConfiguration(BuildrootToolchain other) {
+		return prefix.equals(other.prefix)
+				&& architecture.equals(other.architecture)
+				&& cCompilerTimestamp == other.cCompilerTimestamp
+				&& cppCompilerTimestamp == other.cppCompilerTimestamp;
+	}
+
+	public boolean isCCompilerAvailable() {
+		return cCompilerTimestamp != 0;
+	}
+
+	public boolean isCppCompilerAvailable() {
+		return cppCompilerTimestamp != 0;
+	}
+
+	public List<IManagedConfigElement> getConfigElements() {
+		return Collections.unmodifiableList(configElements);
+	}
+
+	public void addConfigElements(List<IManagedConfigElement> elements) {
+		configElements.addAll(elements);
+	}
+
+	/**
+	 * @return The plugin.xml documents to contribute to the extension registry
+	 *         for this toolchain
+	 */
+	public List<String> getContributions() {
+		return Collections.unmodifiableList(contributions);
+	}
+
+	public void addContribution(StringBuffer buffer) {
+		contributions.add(buffer.toString());
+	}
+
+	public void addContribution(String contribution) {
+		contributions.add(contribution);
+	}
+
+	/**
+	 * @return The identifiers of the extensions contributed for this
+	 *         toolchain
+	 */
+	public Set<String> getExtensionIds() {
+		Set<String> ids = new HashSet<String>();
+		for (String contribution : contributions) {
+			Matcher matcher = EXTENSION_ID_PATTERN.matcher(contribution);
+			while (matcher.find()) {
+				ids.add(matcher.group(1));
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Register the debugger configuration of this toolchain and add its
+	 * extensions to the registrar.
+	 * 
+	 * @param registrar
+	 *            Registrar which registers the extensions dynamically
+	 */
+	public void register(BuildrootExtensionRegistrar registrar) {
+		for (String contribution : contributions) {
+			registrar.add(contribution);
+		}
+		BuildrootActivator.registerDebuggerConfiguration(architecture, prefix,
+				path);
+	}
+
+	/**
+	 * Remove the extensions and the debugger configuration of this toolchain.
+	 */
+	public void unregister() {
+		BuildrootUtils.removeExtensions(getExtensionIds());
+		BuildrootActivator.unregisterDebuggerConfiguration(architecture,
+				path);
+	}
+}
@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Melanie Bats <melanie.bats@obeo.fr> - Initial contribution
+ *******************************************************************************/
+package org.buildroot.cdt.toolchain;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.cdt.managedbuilder.core.IManagedConfigElement;
+
+/**
+ * On-disk cache of the configuration elements and dynamic extensions generated
+ * for the registered Buildroot toolchains.
+ *
+ * The cache is keyed by a fingerprint of the buildroot configuration file and
+ * of the modification time of the compilers of each toolchain, so that a start
+ * with an unchanged configuration neither probes the toolchains nor rebuilds
+ * the configuration elements.
+ */
+public class BuildrootToolchainsCache {
+	private static final int VERSION = 3;
+
+	private File registryFile;
+	private File cacheFile;
+
+	public BuildrootToolchainsCache(File registryFile, File cacheFile) {
+		this.registryFile = registryFile;
+		this.cacheFile = cacheFile;
+	}
+
+	/**
+	 * Compute the fingerprint of the buildroot configuration.
+	 *
+	 * @param toolchains
+	 *            Toolchains declared in the buildroot configuration file,
+	 *            already probed
+	 * @return The fingerprint or null if it can not be computed
+	 */
+	public String computeFingerprint(List<BuildrootToolchain> toolchains) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			InputStream is = new FileInputStream(registryFile);
+			try {
+				byte[] buffer = new byte[4096];
+				int read;
+				while ((read = is.read(buffer)) != -1) {
+					digest.update(buffer, 0, read);
+				}
+			} finally {
+				is.close();
+			}
+			for (BuildrootToolchain toolchain : toolchains) {
+				// The C++ compiler decides which tools are created, so it is
+				// part of the fingerprint as well as the C compiler
+				digest.update((toolchain.getPath() + ":"
+						+ toolchain.getPrefix() + "@"
+						+ toolchain.getCCompilerTimestamp() + "@"
+						+ toolchain.getCppCompilerTimestamp() + "\n").getBytes());
+			}
+			StringBuilder fingerprint = new StringBuilder();
+			for (byte b : digest.digest()) {
+				fingerprint.append(String.format("%02x", b));
+			}
+			return fingerprint.toString();
+		} catch (NoSuchAlgorithmException e) {
+			BuildrootActivator.getDefault().warning(
+					"Buildroot toolchains fingerprint can not be computed", e);
+		} catch (IOException e) {
+			BuildrootActivator.getDefault().warning(
+					"Buildroot toolchains fingerprint can not be computed", e);
+		}
+		return null;
+	}
+
+	/**
+	 * Load the toolchains stored in the cache.
+	 *
+	 * @param fingerprint
+	 *            Fingerprint of the current buildroot configuration
+	 * @return The cached toolchains or null if the cache does not exist or is
+	 *         out of date
+	 */
+	public List<BuildrootToolchain> load(String fingerprint) {
+		if (fingerprint == null || !cacheFile.exists())
+			return null;
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(cacheFile)));
+			try {
+				if (in.readInt() != VERSION
+						|| !fingerprint.equals(in.readUTF()))
+					return null;
+				int toolchainCount = in.readInt();
+				List<BuildrootToolchain> toolchains = new ArrayList<BuildrootToolchain>(
+						toolchainCount);
+				for (int i = 0; i < toolchainCount; i++) {
+					toolchains.add(readToolchain(in));
+				}
+				return toolchains;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			BuildrootActivator.getDefault().warning(
+					"Buildroot toolchains cache can not be read : "
+							+ cacheFile, e);
+		} catch (RuntimeException e) {
+			// Corrupted cache
+			BuildrootActivator.getDefault().warning(
+					"Buildroot toolchains cache can not be read : "
+							+ cacheFile, e);
+		}
+		return null;
+	}
+
+	/**
+	 * Store the toolchains in the cache.
+	 *
+	 * @param fingerprint
+	 *            Fingerprint of the current buildroot configuration
+	 * @param toolchains
+	 *            Toolchains to store
+	 */
+	public void store(String fingerprint, List<BuildrootToolchain> toolchains) {
+		if (fingerprint == null)
+			return;
+		File tmpFile = new File(cacheFile.getPath() + ".tmp");
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmpFile)));
+			try {
+				out.writeInt(VERSION);
+				out.writeUTF(fingerprint);
+				out.writeInt(toolchains.size());
+				for (BuildrootToolchain toolchain : toolchains) {
+					writeToolchain(out, toolchain);
+				}
+			} finally {
+				out.close();
+			}
+			if (cacheFile.exists() && !cacheFile.delete()
+					|| !tmpFile.renameTo(cacheFile))
+				throw new IOException("Can not replace " + cacheFile);
+		} catch (IOException e) {
+			tmpFile.delete();
+			BuildrootActivator.getDefault().warning(
+					"Buildroot toolchains cache can not be written : "
+							+ cacheFile, e);
+		}
+	}
+
+	private void writeToolchain(DataOutputStream out,
+			BuildrootToolchain toolchain) throws IOException {
+		out.writeUTF(toolchain.getPath());
+		out.writeUTF(toolchain.getPrefix());
+		out.writeUTF(toolchain.getArchitecture());
+		out.writeLong(toolchain.getCCompilerTimestamp());
+		out.writeLong(toolchain.getCppCompilerTimestamp());
+		List<IManagedConfigElement> elements = toolchain.getConfigElements();
+		out.writeInt(elements.size());
+		for (IManagedConfigElement element : elements) {
+			((BuildrootConfigElement) element).write(out);
+		}
+		List<String> contributions = toolchain.getContributions();
+		out.writeInt(contributions.size());
+		for (String contribution : contributions) {
+			// Contributions may exceed the writeUTF limit
+			byte[] bytes = contribution.getBytes("UTF-8");
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	private BuildrootToolchain readToolchain(DataInputStream in)
+			throws IOException {
+		BuildrootToolchain toolchain = new BuildrootToolchain(in.readUTF(),
+				in.readUTF(), in.readUTF());
+		toolchain.setTimestamps(in.readLong(), in.readLong());
+		int elementCount = in.readInt();
+		List<IManagedConfigElement> elements = new ArrayList<IManagedConfigElement>(
+				elementCount);
+		for (int i = 0; i < elementCount; i++) {
+			elements.add(BuildrootConfigElement.read(in));
+		}
+		toolchain.addConfigElements(elements);
+		int contributionCount = in.readInt();
+		for (int i = 0; i < contributionCount; i++) {
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			toolchain.addContribution(new String(bytes, "UTF-8"));
+		}
+		return toolchain;
+	}
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Melanie Bats <melanie.bats@obeo.fr> - Initial contribution
+ *******************************************************************************/
+package org.buildroot.cdt.toolchain;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run a task for each registered toolchain on a bounded number of threads.
+ *
+ * Toolchain output directories often are on network or slow file systems, so
+ * a task which does not complete within the timeout is abandoned and its
+ * toolchain is ignored instead of stalling the loading of the other ones.
+ */
+public class BuildrootToolchainsExecutor {
+	/**
+	 * A task to run for a toolchain.
+	 */
+	public interface ToolchainTask<T> {
+		T run(BuildrootToolchain toolchain) throws Exception;
+	}
+
+	private int maxThreads;
+	private long timeout;
+
+	/**
+	 * @param maxThreads
+	 *            Maximum number of tasks running at the same time
+	 * @param timeout
+	 *            Maximum duration of a task in milliseconds
+	 */
+	public BuildrootToolchainsExecutor(int maxThreads, long timeout) {
+		this.maxThreads = maxThreads;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Run the task for each toolchain.
+	 *
+	 * @param toolchains
+	 *            Toolchains
+	 * @param task
+	 *            Task to run
+	 * @param description
+	 *            Description of the task used in log messages
+	 * @return The task results in toolchains order, null for the toolchains
+	 *         whose task failed or timed out
+	 */
+	public <T> List<T> run(List<BuildrootToolchain> toolchains,
+			final ToolchainTask<T> task, String description) {
+		List<T> results = new ArrayList<T>(toolchains.size());
+		for (int i = 0; i < toolchains.size(); i++) {
+			results.add(null);
+		}
+		if (toolchains.isEmpty())
+			return results;
+
+		// Threads stuck on a stale mount are abandoned, so they must neither
+		// be reused nor prevent the shutdown of the workbench
+		ExecutorService executor = Executors
+				.newCachedThreadPool(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable,
+								"Buildroot toolchains loader");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		CompletionService<T> completionService = new ExecutorCompletionService<T>(
+				executor);
+		Map<Future<T>, Integer> indexes = new HashMap<Future<T>, Integer>();
+		Map<Future<T>, Long> deadlines = new HashMap<Future<T>, Long>();
+		Iterator<BuildrootToolchain> pending = toolchains.iterator();
+		int index = 0;
+		try {
+			while (pending.hasNext() || !deadlines.isEmpty()) {
+				while (deadlines.size() < maxThreads && pending.hasNext()) {
+					final BuildrootToolchain toolchain = pending.next();
+					Future<T> future = completionService
+							.submit(new Callable<T>() {
+								@Override
+								public T call() throws Exception {
+									return task.run(toolchain);
+								}
+							});
+					indexes.put(future, index++);
+					deadlines.put(future, System.currentTimeMillis() + timeout);
+				}
+
+				long nextDeadline = Long.MAX_VALUE;
+				for (Long deadline : deadlines.values()) {
+					nextDeadline = Math.min(nextDeadline, deadline);
+				}
+				Future<T> future = completionService.poll(
+						Math.max(0, nextDeadline - System.currentTimeMillis()),
+						TimeUnit.MILLISECONDS);
+				if (future != null) {
+					deadlines.remove(future);
+					int i = indexes.get(future);
+					try {
+						results.set(i, future.get());
+					} catch (ExecutionException e) {
+						BuildrootActivator.getDefault().error(
+								description + " failed for toolchain "
+										+ toolchains.get(i).getPath(),
+								e.getCause());
+					}
+				}
+
+				// Abandon the tasks which exceeded the timeout
+				long now = System.currentTimeMillis();
+				Iterator<Map.Entry<Future<T>, Long>> running = deadlines
+						.entrySet().iterator();
+				while (running.hasNext()) {
+					Map.Entry<Future<T>, Long> entry = running.next();
+					if (entry.getValue() <= now && !entry.getKey().isDone()) {
+						entry.getKey().cancel(true);
+						running.remove();
+						BuildrootActivator.getDefault().warning(
+								description + " timed out for toolchain "
+										+ toolchains.get(
+												indexes.get(entry.getKey()))
+												.getPath(), null);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+		return results;
+	}
+}
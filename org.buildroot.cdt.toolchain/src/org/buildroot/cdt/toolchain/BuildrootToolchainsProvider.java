@@ -3,13 +3,16 @@ package org.buildroot.cdt.toolchain;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 import org.buildroot.cdt.toolchain.BuildrootConfigElement.ManagedConfigElement;
 import org.buildroot.cdt.toolchain.BuildrootConfigElement.ManagedConfigElementAttribute;
 import org.eclipse.cdt.managedbuilder.core.IManagedConfigElement;
 import org.eclipse.cdt.managedbuilder.core.IManagedConfigElementProvider;
+import org.eclipse.cdt.managedbuilder.core.ManagedBuildManager;
 
 public class BuildrootToolchainsProvider implements
 		IManagedConfigElementProvider {
@@ -17,6 +20,31 @@ public class BuildrootToolchainsProvider implements
 	private static final String STRING = "string";
 	private static final String ALL = "all";
 	private static final String FALSE = "false";
+	private static final String TOOLCHAINS_CACHE_FILE = "toolchains.cache";
+
+	/**
+	 * Maximum number of toolchains loaded at the same time.
+	 */
+	private static final int LOADER_THREADS = 8;
+
+	/**
+	 * Maximum duration in milliseconds of the loading of a toolchain.
+	 */
+	private static final long LOADER_TIMEOUT = 10000L;
+
+	/**
+	 * Managed build revision of the provided elements, as declared in
+	 * plugin.xml.
+	 */
+	private static final String MANAGED_BUILD_REVISION = "1.0.0";
+
+	private BuildrootToolchainsExecutor executor = new BuildrootToolchainsExecutor(
+			LOADER_THREADS, LOADER_TIMEOUT);
+
+	/**
+	 * Registered toolchains by output directory.
+	 */
+	private Map<String, BuildrootToolchain> registeredToolchains = new LinkedHashMap<String, BuildrootToolchain>();
 
 	private enum BuildArtefactType {
 		CDT_EXE("exe"), CDT_SHARED_LIBRARY("sharedLib"), CDT_STATIC_LIBRARY(
@@ -50,69 +78,237 @@ public class BuildrootToolchainsProvider implements
 
 	@Override
 	public IManagedConfigElement[] getConfigElements() {
-		// When a Buildroot project is built with BR2_ECLIPSE_REGISTER, it adds
-		// a few information describing the generated toolchain into
-		// $HOME/.buildroot-eclipse.toolchains.
-		String buildrootConfigFilePath = System.getProperty("user.home")
-				+ File.separator + ".buildroot-eclipse.toolchains";
+		File file = getBuildrootConfigFile();
 
 		// Parse the build configuration and provide dynamically the
 		// configuration information to CDT
-		return parseBuildrootConfiguration(buildrootConfigFilePath);
+		IManagedConfigElement[] configElements = parseBuildrootConfiguration(file);
+
+		// Update the toolchains when the build configuration changes
+		BuildrootToolchainsWatcher watcher = new BuildrootToolchainsWatcher(
+				file, this);
+		watcher.start();
+		BuildrootActivator.getDefault().setToolchainsWatcher(watcher);
+
+		return configElements;
+	}
+
+	private File getBuildrootConfigFile() {
+		// When a Buildroot project is built with BR2_ECLIPSE_REGISTER, it adds
+		// a few information describing the generated toolchain into
+		// $HOME/.buildroot-eclipse.toolchains.
+		return new File(System.getProperty("user.home") + File.separator
+				+ ".buildroot-eclipse.toolchains");
 	}
 
 	/**
 	 * Parse the buildroot configuration file to create project types.
 	 * 
-	 * @param buildrootConfigFilePath
-	 *            Path to the buildroot configuration file
+	 * @param file
+	 *            The buildroot configuration file
 	 * @return List of CDT configuration elements
 	 */
-	private IManagedConfigElement[] parseBuildrootConfiguration(
-			String buildrootConfigFilePath) {
-		File file = new File(buildrootConfigFilePath);
-		Scanner input;
+	private synchronized IManagedConfigElement[] parseBuildrootConfiguration(
+			File file) {
+		List<BuildrootToolchain> toolchains = readToolchains(file);
+		if (toolchains == null) {
+			BuildrootActivator.getDefault().error(
+					"Buildroot configuration file does not exist : " + file,
+					null);
+			return new IManagedConfigElement[0];
+		}
+		List<BuildrootToolchain> availableToolchains = probeToolchains(toolchains);
+
+		// Reuse the toolchains of the previous start if neither the
+		// configuration file nor the compilers changed since then
+		BuildrootToolchainsCache cache = new BuildrootToolchainsCache(file,
+				getCacheFile());
+		String fingerprint = cache.computeFingerprint(availableToolchains);
+		List<BuildrootToolchain> loadedToolchains = cache.load(fingerprint);
+		if (loadedToolchains == null) {
+			loadedToolchains = createToolchains(availableToolchains);
+			cache.store(fingerprint, loadedToolchains);
+		}
+
+		// Register the dynamic extensions of all the toolchains at once
+		BuildrootExtensionRegistrar registrar = new BuildrootExtensionRegistrar();
 		List<IManagedConfigElement> configElements = new ArrayList<IManagedConfigElement>();
+		for (BuildrootToolchain toolchain : loadedToolchains) {
+			toolchain.register(registrar);
+			configElements.addAll(toolchain.getConfigElements());
+			registeredToolchains.put(toolchain.getPath(), toolchain);
+		}
+		registrar.register();
+		return (IManagedConfigElement[]) configElements
+				.toArray(new IManagedConfigElement[configElements.size()]);
+	}
+
+	/**
+	 * Update the registered toolchains after a change of the buildroot
+	 * configuration file. Only the added, removed or rebuilt toolchains are
+	 * registered to or removed from CDT.
+	 */
+	public synchronized void reload() {
+		File file = getBuildrootConfigFile();
+		List<BuildrootToolchain> toolchains = readToolchains(file);
+		if (toolchains == null)
+			toolchains = new ArrayList<BuildrootToolchain>();
+		List<BuildrootToolchain> availableToolchains = probeToolchains(toolchains);
+
+		Map<String, BuildrootToolchain> keptToolchains = new LinkedHashMap<String, BuildrootToolchain>();
+		List<BuildrootToolchain> addedToolchains = new ArrayList<BuildrootToolchain>();
+		for (BuildrootToolchain toolchain : toolchains) {
+			BuildrootToolchain registered = registeredToolchains.get(toolchain
+					.getPath());
+			if (!availableToolchains.contains(toolchain)) {
+				// Do not drop a toolchain in use because its output directory
+				// did not answer in time
+				if (registered != null)
+					keptToolchains.put(registered.getPath(), registered);
+			} else if (registered != null
+					&& registered.hasSameConfiguration(toolchain)) {
+				keptToolchains.put(registered.getPath(), registered);
+			} else if (toolchain.isCCompilerAvailable()) {
+				addedToolchains.add(toolchain);
+			}
+		}
+		List<BuildrootToolchain> removedToolchains = new ArrayList<BuildrootToolchain>();
+		for (BuildrootToolchain registered : registeredToolchains.values()) {
+			if (keptToolchains.get(registered.getPath()) != registered)
+				removedToolchains.add(registered);
+		}
+		if (addedToolchains.isEmpty() && removedToolchains.isEmpty())
+			return;
+
+		for (BuildrootToolchain toolchain : removedToolchains) {
+			ManagedBuildManager.removeDynamicConfigElements(toArray(toolchain
+					.getConfigElements()));
+			toolchain.unregister();
+		}
+
+		List<BuildrootToolchain> createdToolchains = createToolchains(addedToolchains);
+		BuildrootExtensionRegistrar registrar = new BuildrootExtensionRegistrar();
+		for (BuildrootToolchain toolchain : createdToolchains) {
+			toolchain.register(registrar);
+			keptToolchains.put(toolchain.getPath(), toolchain);
+		}
+		registrar.register();
+		for (BuildrootToolchain toolchain : createdToolchains) {
+			ManagedBuildManager.addDynamicConfigElements(
+					toArray(toolchain.getConfigElements()),
+					MANAGED_BUILD_REVISION);
+		}
+		registeredToolchains = keptToolchains;
+
+		BuildrootToolchainsCache cache = new BuildrootToolchainsCache(file,
+				getCacheFile());
+		cache.store(cache.computeFingerprint(availableToolchains),
+				new ArrayList<BuildrootToolchain>(registeredToolchains.values()));
+	}
+
+	/**
+	 * Read the toolchains declared in the buildroot configuration file.
+	 * 
+	 * @param file
+	 *            The buildroot configuration file
+	 * @return The toolchains or null if the file does not exist
+	 */
+	private List<BuildrootToolchain> readToolchains(File file) {
+		List<BuildrootToolchain> toolchains = new ArrayList<BuildrootToolchain>();
 		try {
-			input = new Scanner(file);
+			Scanner input = new Scanner(file);
 
 			while (input.hasNext()) {
-				String nextLine = input.nextLine();
-				String[] config = nextLine.split(":");
-				String path = config[0];
-				String prefix = config[1];
-				String architecture = config[2].toUpperCase();
-
-				// If gcc compiler is not defined for the current toolchain
-				// ignore it
-				if (!BuildrootUtils.isCompilerAvailable(path, prefix, "gcc"))
-					continue;
-
-				configElements.addAll(registerBuildrootToolchains(path, prefix,
-						architecture));
-
-				// Create launch configuration
-				BuildrootLaunchConfiguration launchConfiguration = new BuildrootLaunchConfiguration(
-						path, prefix, architecture);
-				launchConfiguration.createLaunchConfiguration();
+				BuildrootToolchain toolchain = BuildrootToolchain.parse(input
+						.nextLine());
+				if (toolchain != null)
+					toolchains.add(toolchain);
 			}
 
 			input.close();
 		} catch (FileNotFoundException e) {
-			BuildrootActivator.getDefault().error(
-					"Buildroot configuration file does not exist : "
-							+ buildrootConfigFilePath, e);
+			return null;
 		}
-		return (IManagedConfigElement[]) configElements
-				.toArray(new IManagedConfigElement[configElements.size()]);
+		return toolchains;
+	}
+
+	/**
+	 * Look for the compilers of each toolchain.
+	 * 
+	 * @param toolchains
+	 *            The toolchains
+	 * @return The toolchains whose output directory answered in time
+	 */
+	private List<BuildrootToolchain> probeToolchains(
+			List<BuildrootToolchain> toolchains) {
+		List<Boolean> probed = executor.run(toolchains,
+				new BuildrootToolchainsExecutor.ToolchainTask<Boolean>() {
+					@Override
+					public Boolean run(BuildrootToolchain toolchain) {
+						toolchain.probe();
+						return Boolean.TRUE;
+					}
+				}, "Toolchain probing");
+		List<BuildrootToolchain> availableToolchains = new ArrayList<BuildrootToolchain>();
+		for (int i = 0; i < toolchains.size(); i++) {
+			if (probed.get(i) != null)
+				availableToolchains.add(toolchains.get(i));
+		}
+		return availableToolchains;
+	}
+
+	/**
+	 * Create the configuration elements and the dynamic extensions of each
+	 * toolchain.
+	 * 
+	 * @param toolchains
+	 *            The probed toolchains
+	 * @return The created toolchains
+	 */
+	private List<BuildrootToolchain> createToolchains(
+			List<BuildrootToolchain> toolchains) {
+		List<BuildrootToolchain> created = executor.run(toolchains,
+				new BuildrootToolchainsExecutor.ToolchainTask<BuildrootToolchain>() {
+					@Override
+					public BuildrootToolchain run(BuildrootToolchain toolchain) {
+						// If gcc compiler is not defined for the current
+						// toolchain ignore it
+						if (!toolchain.isCCompilerAvailable())
+							return null;
+
+						registerBuildrootToolchains(toolchain);
+						return toolchain;
+					}
+				}, "Toolchain creation");
+		List<BuildrootToolchain> createdToolchains = new ArrayList<BuildrootToolchain>();
+		for (BuildrootToolchain toolchain : created) {
+			if (toolchain != null)
+				createdToolchains.add(toolchain);
+		}
+		return createdToolchains;
 	}
 
-	private List<IManagedConfigElement> registerBuildrootToolchains(
-			String path, String prefix, String architecture) {
+	private IManagedConfigElement[] toArray(
+			List<IManagedConfigElement> configElements) {
+		return configElements.toArray(new IManagedConfigElement[configElements
+				.size()]);
+	}
+
+	private File getCacheFile() {
+		return BuildrootActivator.getDefault().getStateLocation()
+				.append(TOOLCHAINS_CACHE_FILE).toFile();
+	}
+
+	private void registerBuildrootToolchains(BuildrootToolchain buildrootToolchain) {
+		String path = buildrootToolchain.getPath();
+		String prefix = buildrootToolchain.getPrefix();
+		String architecture = buildrootToolchain.getArchitecture();
+		boolean isCppAvailable = buildrootToolchain.isCppCompilerAvailable();
 		List<IManagedConfigElement> configElements = new ArrayList<IManagedConfigElement>();
 
 		// Create toolchain
-		configElements.add(createToolchain(path, prefix, architecture));
+		configElements.add(createToolchain(path, prefix, architecture,
+				isCppAvailable));
 
 		// Create executable, static lib and shared lib project types
 		for (BuildArtefactType buildArtefactType : BuildArtefactType.values()) {
@@ -128,7 +324,23 @@ public class BuildrootToolchainsProvider implements
 		configElements.add(createAutotoolsProjectType(path, prefix,
 				architecture));
 
-		return configElements;
+		buildrootToolchain.addConfigElements(configElements);
+
+		// Create the scanner configuration discovery profiles
+		buildrootToolchain.addContribution(createScannerConfigurationDiscoveryProfile(
+				path, architecture, BuildrootToolType.C_COMPILER,
+				BuildrootUtils.getPrefixedToolPath(prefix, path, "gcc")));
+		if (isCppAvailable) {
+			buildrootToolchain.addContribution(createScannerConfigurationDiscoveryProfile(
+					path, architecture, BuildrootToolType.CC_COMPILER,
+					BuildrootUtils.getPrefixedToolPath(prefix, path, "g++")));
+		}
+
+		// Create launch configuration
+		BuildrootLaunchConfiguration launchConfiguration = new BuildrootLaunchConfiguration(
+				path, prefix, architecture);
+		buildrootToolchain.addContribution(launchConfiguration
+				.createLaunchConfigurationExtension());
 	}
 
 	private IManagedConfigElement createAutotoolsToolchain(String path,
@@ -370,7 +582,7 @@ public class BuildrootToolchainsProvider implements
 	}
 
 	private IManagedConfigElement createToolchain(String path, String prefix,
-			String architecture) {
+			String architecture, boolean isCppAvailable) {
 
 		BuildrootConfigElement toolchain = new BuildrootConfigElement(
 				ManagedConfigElement.TOOLCHAIN);
@@ -408,7 +620,7 @@ public class BuildrootToolchainsProvider implements
 				BuildrootToolType.C_LINKER));
 
 		// Create C++ compiler if necessary
-		if (BuildrootUtils.isCompilerAvailable(path, prefix, "g++")) {
+		if (isCppAvailable) {
 			toolchain.addChild(createTool(path, prefix, architecture,
 					BuildrootToolType.CC_COMPILER));
 			toolchain.addChild(createTool(path, prefix, architecture,
@@ -599,15 +811,14 @@ public class BuildrootToolchainsProvider implements
 
 		if (toolType == BuildrootToolType.C_COMPILER
 				|| toolType == BuildrootToolType.CC_COMPILER) {
-			tool.addChild((createInputType(path, architecture, toolType,
-					toolPath)));
+			tool.addChild((createInputType(path, architecture, toolType)));
 		}
 
 		return tool;
 	}
 
 	private IManagedConfigElement createInputType(String path,
-			String architecture, BuildrootToolType toolType, String toolPath) {
+			String architecture, BuildrootToolType toolType) {
 		String scannerConfigProfileId = null;
 		String superClass = null;
 		String id = null;
@@ -639,13 +850,6 @@ public class BuildrootToolchainsProvider implements
 				ManagedConfigElementAttribute.scannerConfigDiscoveryProfileId,
 				scannerConfigProfileId);
 
-		// Get the scanner configuration discovery profile
-		StringBuffer buffer = createScannerConfigurationDiscoveryProfile(path,
-				architecture, toolType, toolPath);
-
-		// Register this extension dynamically
-		BuildrootUtils.registerExtensionPoint(buffer);
-
 		return inputType;
 	}
 
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Melanie Bats <melanie.bats@obeo.fr> - Initial contribution
+ *******************************************************************************/
+package org.buildroot.cdt.toolchain;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Watch the buildroot configuration file and reload the toolchains when it
+ * changes.
+ */
+public class BuildrootToolchainsWatcher {
+	/**
+	 * Delay in milliseconds before reloading, so that a burst of changes
+	 * triggers a single reload.
+	 */
+	private static final long RELOAD_DELAY = 500L;
+
+	private File file;
+	private WatchService watchService;
+	private Thread thread;
+	private Job reloadJob;
+
+	/**
+	 * @param file
+	 *            The buildroot configuration file
+	 * @param provider
+	 *            The provider to reload when the file changes
+	 */
+	public BuildrootToolchainsWatcher(File file,
+			final BuildrootToolchainsProvider provider) {
+		this.file = file;
+		reloadJob = new Job("Reload Buildroot toolchains") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				provider.reload();
+				return Status.OK_STATUS;
+			}
+		};
+		reloadJob.setSystem(true);
+	}
+
+	/**
+	 * Start watching the buildroot configuration file.
+	 */
+	public void start() {
+		// Watch the parent directory as the file may be created or replaced
+		final Path directory = file.getAbsoluteFile().getParentFile().toPath();
+		final Path fileName = file.toPath().getFileName();
+		try {
+			watchService = FileSystems.getDefault().newWatchService();
+			directory.register(watchService,
+					StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY,
+					StandardWatchEventKinds.ENTRY_DELETE);
+		} catch (IOException e) {
+			BuildrootActivator.getDefault().warning(
+					"Buildroot configuration file can not be watched : "
+							+ file, e);
+			return;
+		}
+
+		thread = new Thread("Buildroot configuration file watcher") {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						WatchKey key = watchService.take();
+						for (WatchEvent<?> event : key.pollEvents()) {
+							if (fileName.equals(event.context())
+									|| event.kind() == StandardWatchEventKinds.OVERFLOW) {
+								reloadJob.schedule(RELOAD_DELAY);
+							}
+						}
+						if (!key.reset())
+							break;
+					}
+				} catch (InterruptedException e) {
+					// Stopped
+				} catch (ClosedWatchServiceException e) {
+					// Stopped
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop watching the buildroot configuration file.
+	 */
+	public void stop() {
+		reloadJob.cancel();
+		if (watchService != null) {
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				BuildrootActivator.getDefault().warning(
+						"Buildroot configuration file watcher can not be stopped",
+						e);
+			}
+		}
+	}
+}
@@ -11,10 +11,12 @@ package org.buildroot.cdt.toolchain;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.util.Collection;
 
 import org.eclipse.core.internal.registry.ExtensionRegistry;
 import org.eclipse.core.runtime.ContributorFactoryOSGi;
 import org.eclipse.core.runtime.IContributor;
+import org.eclipse.core.runtime.IExtension;
 import org.eclipse.core.runtime.IExtensionRegistry;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.RegistryFactory;
@@ -33,18 +35,60 @@ public class BuildrootUtils {
 	 *            StringBuffer defining the extension point content
 	 */
 	public static void registerExtensionPoint(StringBuffer buffer) {
-		ByteArrayInputStream is = new ByteArrayInputStream(buffer.toString()
-				.getBytes());
+		registerExtensionPoint(buffer.toString());
+	}
+
+	/**
+	 * Register dynamically an extension point.
+	 * 
+	 * @param contribution
+	 *            plugin.xml document defining the extension point content
+	 */
+	public static void registerExtensionPoint(String contribution) {
+		if (!addContribution(contribution)) {
+			BuildrootActivator.getDefault().warning(
+					"Contribution is not registered : " + contribution,
+					null);
+		}
+	}
+
+	/**
+	 * Add a contribution to the extension registry.
+	 * 
+	 * @param contribution
+	 *            plugin.xml document defining the extension points content
+	 * @return True if the contribution has been registered otherwise false
+	 */
+	public static boolean addContribution(String contribution) {
+		ByteArrayInputStream is = new ByteArrayInputStream(
+				contribution.getBytes());
 		IExtensionRegistry registry = RegistryFactory.getRegistry();
 		@SuppressWarnings("restriction")
 		Object key = ((ExtensionRegistry) registry).getTemporaryUserToken();
 		Bundle bundle = BuildrootActivator.getDefault().getBundle();
 		IContributor contributor = ContributorFactoryOSGi
 				.createContributor(bundle);
-		if (!registry.addContribution(is, contributor, false, null, null, key)) {
-			BuildrootActivator.getDefault().warning(
-					"Contribution is not registered : " + buffer.toString(),
-					null);
+		return registry.addContribution(is, contributor, false, null, null,
+				key);
+	}
+
+	/**
+	 * Remove dynamically registered extensions.
+	 * 
+	 * @param extensionIds
+	 *            Identifiers of the extensions to remove
+	 */
+	public static void removeExtensions(Collection<String> extensionIds) {
+		IExtensionRegistry registry = RegistryFactory.getRegistry();
+		@SuppressWarnings("restriction")
+		Object key = ((ExtensionRegistry) registry).getTemporaryUserToken();
+		Bundle bundle = BuildrootActivator.getDefault().getBundle();
+		IContributor contributor = ContributorFactoryOSGi
+				.createContributor(bundle);
+		for (IExtension extension : registry.getExtensions(contributor)) {
+			if (extensionIds.contains(extension.getUniqueIdentifier())
+					|| extensionIds.contains(extension.getSimpleIdentifier()))
+				registry.removeExtension(extension, key);
 		}
 	}
 
@@ -56,6 +56,7 @@ import org.eclipse.cdt.managedbuilder.core.IManagedBuildInfo;
 import org.eclipse.cdt.managedbuilder.core.IMultiConfiguration;
 import org.eclipse.cdt.managedbuilder.core.ManagedBuildManager;
 import org.eclipse.cdt.managedbuilder.core.ManagedBuilderCorePlugin;
+import org.eclipse.cdt.managedbuilder.internal.buildmodel.JobSlotServer;
 import org.eclipse.cdt.managedbuilder.macros.BuildMacroException;
 import org.eclipse.cdt.managedbuilder.macros.IBuildMacroProvider;
 import org.eclipse.cdt.newmake.core.IMakeCommonBuildInfo;
@@ -881,6 +882,7 @@ public class AutotoolsNewMakeGenerator extends MarkerGenerator {
 		ConsoleOutputStream consoleOutStream = null;
 		ErrorParserManager epm = null;
 		StringBuffer buf = new StringBuffer();
+		JobSlotServer heldJobSlots = null;
 
 		// Launch command - main invocation
 		if (consoleStart)
@@ -927,6 +929,13 @@ public class AutotoolsNewMakeGenerator extends MarkerGenerator {
 			OutputStream stderr = stdout;
 
 			launcher.showCommand(true);
+			// Count the run in the job slots shared with the other builds
+			JobSlotServer jobSlots = JobSlotServer.getDefault();
+			if (jobSlots != null) {
+				if (!jobSlots.acquire(monitor))
+					throw new OperationCanceledException();
+				heldJobSlots = jobSlots;
+			}
 			Process proc = launcher.execute(commandPath, configTargets, env,
 					runPath, new SubProgressMonitor(monitor, IProgressMonitor.UNKNOWN));
 			int exitValue = 0;
@@ -1020,6 +1029,8 @@ public class AutotoolsNewMakeGenerator extends MarkerGenerator {
 			// epm.reportProblems();
 
 		} finally {
+			if (heldJobSlots != null)
+				heldJobSlots.release();
 			if (consoleOutStream != null)
 				consoleOutStream.close();
 			if (epm != null)
@@ -61,6 +61,13 @@ public class BuildDescriptionManager {
 	 * include the dependency file (.d) information in the build model.
 	 */
 	public static final int DEPFILES = 1 << 3;
+
+	/**
+	 * do not rebuild the steps whose command lines and input contents are
+	 * identical to the last successful build, as recorded in the build state.
+	 * Used together with {@link #REBUILD}.
+	 */
+	public static final int FINGERPRINTS = 1 << 4;
 	
 	private Set<IBuildStep> fVisitedSteps = new HashSet<IBuildStep>();
 	private boolean fUp;
@@ -82,12 +89,14 @@ public class BuildDescriptionManager {
 	 * BuildDescriptionManager.REBUILD, 
 	 * BuildDescriptionManager.REMOVED,
 	 * BuildDescriptionManager.DEPS,
-	 * BuildDescriptionManager.DEPFILES 
+	 * BuildDescriptionManager.DEPFILES,
+	 * BuildDescriptionManager.FINGERPRINTS 
 	 * 
 	 * @see BuildDescriptionManager#REBUILD 
 	 * @see BuildDescriptionManager#REMOVED
 	 * @see BuildDescriptionManager#DEPS
 	 * @see BuildDescriptionManager#DEPFILES
+	 * @see BuildDescriptionManager#FINGERPRINTS
 	 * @return IBuildDescription
 	 * @throws CoreException if the build description creation fails
 	 */
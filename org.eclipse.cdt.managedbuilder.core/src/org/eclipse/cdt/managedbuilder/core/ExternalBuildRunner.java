@@ -38,6 +38,7 @@ import org.eclipse.cdt.internal.core.BuildRunnerHelper;
 import org.eclipse.cdt.make.core.scannerconfig.IScannerConfigBuilderInfo2;
 import org.eclipse.cdt.make.core.scannerconfig.IScannerInfoConsoleParser;
 import org.eclipse.cdt.make.internal.core.scannerconfig.ScannerInfoConsoleParserFactory;
+import org.eclipse.cdt.managedbuilder.internal.buildmodel.JobSlotServer;
 import org.eclipse.cdt.managedbuilder.internal.core.ManagedMakeMessages;
 import org.eclipse.cdt.managedbuilder.macros.BuildMacroException;
 import org.eclipse.cdt.managedbuilder.macros.IBuildMacroProvider;
@@ -50,6 +51,7 @@ import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
@@ -105,6 +107,11 @@ public class ExternalBuildRunner extends AbstractBuildRunner {
 				URI workingDirectoryURI = ManagedBuildManager.getBuildLocationURI(configuration, builder);
 
 				Map<String, String> envMap = getEnvironment(builder);
+				JobSlotServer jobSlots = JobSlotServer.getDefault();
+				// An empty environment is inherited, adding MAKEFLAGS to it would replace it.
+				// Other builders, such as ninja, keep their own -j option
+				if (jobSlots != null && !envMap.isEmpty() && JobSlotServer.isMakeCommand(buildCommand))
+					args = jobSlots.prepareMake(args, envMap);
 				String[] envp = BuildRunnerHelper.envMapToEnvp(envMap);
 
 				String[] errorParsers = builder.getErrorParsers();
@@ -125,7 +132,16 @@ public class ExternalBuildRunner extends AbstractBuildRunner {
 				buildRunnerHelper.removeOldMarkers(project, new SubProgressMonitor(monitor, TICKS_DELETE_MARKERS, SubProgressMonitor.PREPEND_MAIN_LABEL_TO_SUBTASK));
 
 				buildRunnerHelper.greeting(kind, cfgName, toolchainName, isSupported);
-				int state = buildRunnerHelper.build(new SubProgressMonitor(monitor, TICKS_EXECUTE_COMMAND, SubProgressMonitor.PREPEND_MAIN_LABEL_TO_SUBTASK));
+				int state;
+				// The make run holds a job slot of its own, its first job does not take a token
+				if (jobSlots != null && !jobSlots.acquire(monitor))
+					throw new OperationCanceledException();
+				try {
+					state = buildRunnerHelper.build(new SubProgressMonitor(monitor, TICKS_EXECUTE_COMMAND, SubProgressMonitor.PREPEND_MAIN_LABEL_TO_SUBTASK));
+				} finally {
+					if (jobSlots != null)
+						jobSlots.release();
+				}
 				buildRunnerHelper.close();
 				buildRunnerHelper.goodbye();
 
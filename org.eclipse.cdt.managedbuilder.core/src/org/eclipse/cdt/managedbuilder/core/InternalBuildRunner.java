@@ -28,9 +28,12 @@ import org.eclipse.cdt.internal.core.BuildRunnerHelper;
 import org.eclipse.cdt.managedbuilder.buildmodel.BuildDescriptionManager;
 import org.eclipse.cdt.managedbuilder.buildmodel.IBuildDescription;
 import org.eclipse.cdt.managedbuilder.internal.buildmodel.BuildStateManager;
+import org.eclipse.cdt.managedbuilder.internal.buildmodel.BuildTimeline;
+import org.eclipse.cdt.managedbuilder.internal.buildmodel.DefaultBuildDescriptionFactory;
 import org.eclipse.cdt.managedbuilder.internal.buildmodel.DescriptionBuilder;
 import org.eclipse.cdt.managedbuilder.internal.buildmodel.IConfigurationBuildState;
 import org.eclipse.cdt.managedbuilder.internal.buildmodel.IProjectBuildState;
+import org.eclipse.cdt.managedbuilder.internal.buildmodel.ObjectCache;
 import org.eclipse.cdt.managedbuilder.internal.buildmodel.ParallelBuilder;
 import org.eclipse.cdt.managedbuilder.internal.core.ManagedMakeMessages;
 import org.eclipse.core.resources.IProject;
@@ -55,6 +58,8 @@ public class InternalBuildRunner extends AbstractBuildRunner {
 	private static final int TICKS_DELETE_MARKERS = 1 * PROGRESS_MONITOR_SCALE;
 	private static final int TICKS_EXECUTE_COMMAND = 1 * PROGRESS_MONITOR_SCALE;
 	private static final int TICKS_REFRESH_PROJECT = 1 * PROGRESS_MONITOR_SCALE;
+	/** System property enabling the content fingerprints of the build steps */
+	private static final String FINGERPRINTS_PROPERTY = "org.eclipse.cdt.managedbuilder.internalBuilder.fingerprints"; //$NON-NLS-1$
 
 	@Override
 	public boolean invokeBuild(int kind, IProject project, IConfiguration configuration,
@@ -80,6 +85,8 @@ public class InternalBuildRunner extends AbstractBuildRunner {
 
 //			if(delta != null){
 			flags = BuildDescriptionManager.REBUILD | BuildDescriptionManager.REMOVED | BuildDescriptionManager.DEPS;
+			if (Boolean.getBoolean(FINGERPRINTS_PROPERTY))
+				flags |= BuildDescriptionManager.FINGERPRINTS;
 //				delta = getDelta(currentProject);
 //			}
 			boolean buildIncrementaly = delta != null;
@@ -101,12 +108,17 @@ public class InternalBuildRunner extends AbstractBuildRunner {
 
 			buildRunnerHelper.prepareStreams(epm, parsers, console, new SubProgressMonitor(monitor, TICKS_STREAM_PROGRESS_MONITOR));
 
-			IBuildDescription des = BuildDescriptionManager.createBuildDescription(configuration, cBS, delta, flags);
+			ObjectCache objectCache = ObjectCache.getDefault();
+			if (objectCache != null)
+				objectCache.resetStatistics();
+			IBuildDescription des = DefaultBuildDescriptionFactory.getInstance().getBuildDescription(configuration, cBS, delta, flags);
 			DescriptionBuilder dBuilder = null;
 			if (!isParallel) {
 				dBuilder = new DescriptionBuilder(des, buildIncrementaly, resumeOnErr, cBS);
+				dBuilder.setDurationHistory(pBS.getDurationHistory(configuration.getId()));
 				if (dBuilder.getNumCommands() <= 0) {
 					buildRunnerHelper.printLine(ManagedMakeMessages.getFormattedString("ManagedMakeBuilder.message.no.build", project.getName())); //$NON-NLS-1$
+					DefaultBuildDescriptionFactory.getInstance().buildSucceeded(des);
 					return false;
 				}
 			}
@@ -124,10 +136,14 @@ public class InternalBuildRunner extends AbstractBuildRunner {
 			OutputStream stderr = buildRunnerHelper.getErrorStream();
 
 			int status;
+			BuildTimeline timeline;
 			if (dBuilder != null) {
 				status = dBuilder.build(stdout, stderr, new SubProgressMonitor(monitor, TICKS_EXECUTE_COMMAND, SubProgressMonitor.PREPEND_MAIN_LABEL_TO_SUBTASK));
+				timeline = dBuilder.getTimeline();
 			} else {
-				status = ParallelBuilder.build(des, null, null, stdout, stderr, new SubProgressMonitor(monitor, TICKS_EXECUTE_COMMAND, SubProgressMonitor.PREPEND_MAIN_LABEL_TO_SUBTASK), resumeOnErr, buildIncrementaly);
+				timeline = new BuildTimeline();
+				status = ParallelBuilder.build(des, null, null, stdout, stderr, new SubProgressMonitor(monitor, TICKS_EXECUTE_COMMAND, SubProgressMonitor.PREPEND_MAIN_LABEL_TO_SUBTASK), resumeOnErr, buildIncrementaly,
+						ParallelBuilder.getDefaultSchedulingPolicy(), pBS.getDurationHistory(configuration.getId()), timeline);
 				// Bug 403670:
 				// Make sure the build configuration's rebuild status is updated with the result of
 				// this successful build.  In the non-parallel case this happens within dBuilder.build
@@ -137,6 +153,17 @@ public class InternalBuildRunner extends AbstractBuildRunner {
 				buildRunnerHelper.printLine(ManagedMakeMessages.getFormattedString("CommonBuilder.7", Integer.toString(ParallelBuilder.lastThreadsUsed))); //$NON-NLS-1$
 			}
 
+			if (objectCache != null)
+				buildRunnerHelper.printLine(ManagedMakeMessages.getFormattedString("InternalBuilder.objectCache", //$NON-NLS-1$
+						new String[] { Long.toString(objectCache.getHits()), Long.toString(objectCache.getMisses()) }));
+
+			boolean succeeded = status == ParallelBuilder.STATUS_OK && !timeline.hasFailures();
+			if (succeeded && (flags & BuildDescriptionManager.FINGERPRINTS) != 0)
+				cBS.getContentFingerprints().update(des);
+
+			if (succeeded)
+				DefaultBuildDescriptionFactory.getInstance().buildSucceeded(des);
+
 			bsMngr.setProjectBuildState(project, pBS);
 
 			buildRunnerHelper.close();
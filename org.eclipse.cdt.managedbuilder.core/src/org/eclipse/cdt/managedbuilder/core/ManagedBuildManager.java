@@ -207,6 +207,8 @@ public class ManagedBuildManager extends AbstractCExtension {
 	private static final Version version = new Version(4, 0, 0);
 	private static boolean projectTypesLoaded = false;
 	private static boolean projectTypesLoading = false;
+	// Changes of the dynamic build definitions requested while loading, applied once loaded
+	private static List<Runnable> pendingDynamicChanges;
 	// Project types defined in the manifest files
 	public static SortedMap<String, IProjectType> projectTypeMap;
 	private static List<IProjectType> projectTypes;
@@ -2434,6 +2436,7 @@ public class ManagedBuildManager extends AbstractCExtension {
 		finally {
 			configElementMap = null;
 		}
+		applyPendingDynamicChanges();
 	}
 
 	private static void performAdjustments(){
@@ -2540,6 +2543,168 @@ public class ManagedBuildManager extends AbstractCExtension {
 		}
 	}
 
+	/**
+	 * Loads build definitions provided dynamically once the build definitions
+	 * extensions have been loaded, e.g. by an {@link IManagedConfigElementProvider}
+	 * which detects new tool-chains. Only the given elements are loaded and
+	 * resolved, the already loaded build definitions are left untouched.
+	 * When called while the build definitions are being loaded, the elements are
+	 * loaded once the loading is complete.
+	 *
+	 * @param elements - top level build definition elements
+	 * @param revision - managed build revision of the elements
+	 */
+	public synchronized static void addDynamicConfigElements(final IManagedConfigElement[] elements, final String revision) {
+		if (projectTypesLoading) {
+			// Called back while loading, apply the elements once loaded
+			deferDynamicChange(new Runnable() {
+				@Override
+				public void run() {
+					addDynamicConfigElements(elements, revision);
+				}
+			});
+			return;
+		}
+		try {
+			loadExtensions();
+		} catch (BuildException e) {
+			return;
+		}
+
+		projectTypesLoading = true;
+		try {
+			List<IBuildObject> loaded = new ArrayList<IBuildObject>(elements.length);
+			for (IManagedConfigElement element : elements) {
+				try {
+					// Load the top level elements, which in turn load their children
+					String name = element.getName();
+					if (name.equals(IProjectType.PROJECTTYPE_ELEMENT_NAME)) {
+						loaded.add(new ProjectType(element, revision));
+					} else if (name.equals(IConfiguration.CONFIGURATION_ELEMENT_NAME)) {
+						loaded.add(new Configuration((ProjectType)null, element, revision));
+					} else if (name.equals(IToolChain.TOOL_CHAIN_ELEMENT_NAME)) {
+						loaded.add(new ToolChain((IFolderInfo)null, element, revision));
+					} else if (name.equals(ITool.TOOL_ELEMENT_NAME)) {
+						loaded.add(new Tool((ProjectType)null, element, revision));
+					} else if (name.equals(ITargetPlatform.TARGET_PLATFORM_ELEMENT_NAME)) {
+						loaded.add(new TargetPlatform((ToolChain)null, element, revision));
+					} else if (name.equals(IBuilder.BUILDER_ELEMENT_NAME)) {
+						loaded.add(new Builder((ToolChain)null, element, revision));
+					}
+				} catch (Exception ex) {
+					ManagedBuilderCorePlugin.log(ex);
+				}
+			}
+
+			// Resolve the references of the new elements, which in turn resolve their children
+			for (IBuildObject buildObject : loaded) {
+				try {
+					if (buildObject instanceof ProjectType) {
+						((ProjectType) buildObject).resolveReferences();
+					} else if (buildObject instanceof Configuration) {
+						((Configuration) buildObject).resolveReferences();
+					} else if (buildObject instanceof ToolChain) {
+						((ToolChain) buildObject).resolveReferences();
+					} else if (buildObject instanceof Tool) {
+						((Tool) buildObject).resolveReferences();
+					} else if (buildObject instanceof TargetPlatform) {
+						((TargetPlatform) buildObject).resolveReferences();
+					} else if (buildObject instanceof Builder) {
+						((Builder) buildObject).resolveReferences();
+					}
+				} catch (Exception ex) {
+					ManagedBuilderCorePlugin.log(ex);
+				}
+			}
+
+			for (IBuildObject buildObject : loaded) {
+				if (buildObject instanceof ProjectType) {
+					IConfiguration cfgs[] = ((ProjectType) buildObject).getConfigurations();
+					for (IConfiguration cfg : cfgs) {
+						adjustConfig(cfg);
+						performValueHandlerEvent(cfg, IManagedOptionValueHandler.EVENT_LOAD);
+					}
+				}
+			}
+		} finally {
+			projectTypesLoading = false;
+			configElementMap = null;
+		}
+		applyPendingDynamicChanges();
+	}
+
+	/**
+	 * Removes build definitions previously loaded from dynamically provided
+	 * elements. The build definitions are looked up by the identifiers of the
+	 * elements and of their children.
+	 *
+	 * @param elements - top level build definition elements
+	 */
+	public synchronized static void removeDynamicConfigElements(final IManagedConfigElement[] elements) {
+		if (projectTypesLoading) {
+			// Keep the order of the changes requested while loading
+			deferDynamicChange(new Runnable() {
+				@Override
+				public void run() {
+					removeDynamicConfigElements(elements);
+				}
+			});
+			return;
+		}
+		for (IManagedConfigElement element : elements) {
+			removeDynamicConfigElement(element);
+		}
+	}
+
+	private static void deferDynamicChange(Runnable change) {
+		if (pendingDynamicChanges == null)
+			pendingDynamicChanges = new ArrayList<Runnable>();
+		pendingDynamicChanges.add(change);
+	}
+
+	private static void applyPendingDynamicChanges() {
+		while (!projectTypesLoading && pendingDynamicChanges != null) {
+			List<Runnable> changes = pendingDynamicChanges;
+			pendingDynamicChanges = null;
+			for (Runnable change : changes) {
+				change.run();
+			}
+		}
+	}
+
+	private static void removeDynamicConfigElement(IManagedConfigElement element) {
+		String name = element.getName();
+		String id = element.getAttribute(IBuildObject.ID);
+		if (id != null) {
+			if (name.equals(IProjectType.PROJECTTYPE_ELEMENT_NAME)) {
+				IProjectType projectType = getExtensionProjectTypeMap().remove(id);
+				if (projectType != null && projectTypes != null)
+					projectTypes.remove(projectType);
+			} else if (name.equals(IConfiguration.CONFIGURATION_ELEMENT_NAME)) {
+				getExtensionConfigurationMap().remove(id);
+			} else if (name.equals(IToolChain.TOOL_CHAIN_ELEMENT_NAME)) {
+				getExtensionToolChainMapInternal().remove(id);
+			} else if (name.equals(ITool.TOOL_ELEMENT_NAME)) {
+				getExtensionToolMapInternal().remove(id);
+			} else if (name.equals(ITargetPlatform.TARGET_PLATFORM_ELEMENT_NAME)) {
+				getExtensionTargetPlatformMap().remove(id);
+			} else if (name.equals(IBuilder.BUILDER_ELEMENT_NAME)) {
+				getExtensionBuilderMapInternal().remove(id);
+			} else if (name.equals(IHoldsOptions.OPTION)) {
+				getExtensionOptionMap().remove(id);
+			} else if (name.equals(IHoldsOptions.OPTION_CAT)) {
+				getExtensionOptionCategoryMap().remove(id);
+			} else if (name.equals(IInputType.INPUT_TYPE_ELEMENT_NAME)) {
+				getExtensionInputTypeMap().remove(id);
+			} else if (name.equals(IOutputType.OUTPUT_TYPE_ELEMENT_NAME)) {
+				getExtensionOutputTypeMap().remove(id);
+			}
+		}
+		for (IManagedConfigElement child : element.getChildren()) {
+			removeDynamicConfigElement(child);
+		}
+	}
+
 	private static void loadConfigElementsV2(IManagedConfigElement[] elements, String revision) {
 		for (IManagedConfigElement element : elements) {
 			try {
@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -57,6 +58,7 @@ import org.eclipse.cdt.managedbuilder.internal.core.Configuration;
 import org.eclipse.cdt.managedbuilder.internal.macros.FileContextData;
 import org.eclipse.cdt.managedbuilder.internal.macros.OptionContextData;
 import org.eclipse.cdt.managedbuilder.macros.BuildMacroException;
+import org.eclipse.cdt.managedbuilder.macros.IBuildMacro;
 import org.eclipse.cdt.managedbuilder.macros.IBuildMacroProvider;
 import org.eclipse.cdt.managedbuilder.makegen.IManagedBuilderMakefileGenerator;
 import org.eclipse.cdt.managedbuilder.makegen.IManagedBuilderMakefileGenerator2;
@@ -98,6 +100,7 @@ public class BuildDescription implements IBuildDescription {
 	private Configuration fCfg;
 	private IResourceDelta fDelta;
 	private IConfigurationBuildState fBuildState;
+	private ContentFingerprints fFingerprints;
 
 	private Map<ITool, BuildStep> fToolToMultiStepMap = new HashMap<ITool, BuildStep>();
 	private BuildStep fOrderedMultiActions[];
@@ -130,6 +133,11 @@ public class BuildDescription implements IBuildDescription {
 //	private Map fExtToToolAndTypeListMap = new HashMap();
 
 	private Map<String, String> fEnvironment;
+	/**
+	 * Environment and macros the commands of the steps were resolved with, only
+	 * kept when the description may be reused
+	 */
+	private Map<String, Object> fSettings;
 
 	private PDOMDependencyGenerator fPdomDepGen;
 
@@ -256,6 +264,58 @@ public class BuildDescription implements IBuildDescription {
 
 	}
 
+	/**
+	 * Sorts the changes of a resource delta for the update of the description of
+	 * the last build
+	 */
+	private class DeltaPatcher implements IResourceDeltaVisitor {
+		/** New sources, to be added to the description */
+		List<IResource> fAddedSources = new ArrayList<IResource>();
+		/** Sources of the description whose contents changed */
+		List<BuildResource> fChangedSources = new ArrayList<BuildResource>();
+		/** Whether the changes cannot be patched into the description */
+		boolean fStructural;
+
+		@Override
+		public boolean visit(IResourceDelta delta) throws CoreException {
+			if(fStructural)
+				return false;
+
+			IResource rc = delta.getResource();
+			if(rc.getType() != IResource.FILE)
+				return !isGenerated(rc.getFullPath());
+
+			if(rc.getParent() == fProject && isProjectSettings(rc.getName())){
+				fStructural = true;
+				return false;
+			}
+
+			BuildResource bRc = (BuildResource)getBuildResource(calcResourceLocation(rc));
+			boolean source = bRc != null
+					&& bRc.getProducerIOType() != null
+					&& bRc.getProducerIOType().getStep() == fInputStep;
+			switch(delta.getKind()){
+			case IResourceDelta.ADDED:
+				if(bRc == null && !isGenerated(rc.getFullPath()))
+					fAddedSources.add(rc);
+				break;
+			case IResourceDelta.REMOVED:
+				// the steps of a removed source are removed by a new description
+				if(source)
+					fStructural = true;
+				break;
+			default:
+				if(source)
+					fChangedSources.add(bRc);
+			}
+			return false;
+		}
+
+		private boolean isProjectSettings(String name){
+			return ".cproject".equals(name) || ".project".equals(name);	//$NON-NLS-1$	//$NON-NLS-2$
+		}
+	}
+
 	protected IPath calcResourceLocation(IResource rc){
 
 	//return rc.getFullPath();
@@ -344,6 +404,19 @@ public class BuildDescription implements IBuildDescription {
 				}
 			}
 
+			// the inputs produced by steps rebuilt in this build still have their old contents
+			if(!removed && rebuild && fFingerprints != null && action.getTool() != null
+					&& !hasRebuiltProducer(rcs)){
+				if(fFingerprints.isUpToDate(action, getDefaultBuildDirLocation())){
+					if(DbgUtil.DEBUG)
+						DbgUtil.trace("inputs are identical to the last build");	//$NON-NLS-1$
+					action.setUpToDate(true);
+					rebuild = false;
+				} else {
+					fFingerprints.invalidate(action);
+				}
+			}
+
 			if(removed){
 				if(DbgUtil.DEBUG)
 					DbgUtil.trace("action to be removed");	//$NON-NLS-1$
@@ -378,6 +451,15 @@ public class BuildDescription implements IBuildDescription {
 		}
 	}
 
+	private boolean hasRebuiltProducer(BuildResource rcs[]){
+		for (BuildResource rc : rcs) {
+			IBuildIOType type = rc.getProducerIOType();
+			if(type != null && type.getStep() != fInputStep && type.getStep().needsRebuild())
+				return true;
+		}
+		return false;
+	}
+
 	private class ToolOrderEstimation {
 		private ITool fTool;
 		private ITool fDeps[];
@@ -715,6 +797,8 @@ public class BuildDescription implements IBuildDescription {
 		fCfg = (Configuration)cfg;
 		fDelta = delta;
 		fBuildState = bs;
+		if(bs != null && (flags & BuildDescriptionManager.FINGERPRINTS) != 0)
+			fFingerprints = bs.getContentFingerprints();
 		fProject = cfg.getOwner().getProject();
 		fInfo = ManagedBuildManager.getBuildInfo(fProject);
 		fFlags = flags;
@@ -811,9 +895,125 @@ public class BuildDescription implements IBuildDescription {
 	protected void init(IConfiguration cfg, IConfigurationBuildState bs, IResourceDelta delta, int flags) throws CoreException {
 		initBase(cfg, bs, delta, flags);
 
+		if(Boolean.getBoolean(DefaultBuildDescriptionFactory.REUSE_PROPERTY))
+			fSettings = calculateSettings(getEnvironment());
 		initDescription();
 	}
 
+	/**
+	 * Updates the description of the last successful build with the changes of a
+	 * resource delta, instead of walking the project and describing all its steps
+	 * again. The new sources are added to the description, the dependencies of the
+	 * steps using the changed sources or included files are calculated again and the
+	 * rebuild state of the steps is synchronized with the delta as when the description
+	 * is created.
+	 *
+	 * @return false if the changes cannot be patched into the description, in which
+	 *    case a new description must be created. This is also the case when the build
+	 *    environment or macros the commands were resolved with have changed
+	 */
+	boolean update(IConfigurationBuildState bs, IResourceDelta delta, int flags) throws CoreException {
+		if(fSettings == null || delta == null || flags != fFlags || fCfg.needsRebuild() || fCfg.needsFullRebuild())
+			return false;
+
+		for (BuildStep step : fOrderedMultiActions) {
+			// the step was dropped as it had no outputs, only a new description restores it
+			if(step.getBuildDescription() == null)
+				return false;
+		}
+
+		DeltaPatcher patcher = new DeltaPatcher();
+		delta.accept(patcher);
+		if(patcher.fStructural)
+			return false;
+
+		// the commands were resolved with the environment and macros of the last build
+		Map<String, String> env = calculateEnvironment();
+		if(!fSettings.equals(calculateSettings(env)))
+			return false;
+
+		fDelta = delta;
+		fBuildState = bs;
+		fFingerprints = bs != null && (flags & BuildDescriptionManager.FINGERPRINTS) != 0 ? bs.getContentFingerprints() : null;
+		fEnvironment = env;
+
+		// the last build brought every step up to date
+		fInputStep.setRebuildState(false);
+		fOutputStep.setRebuildState(false);
+		for (BuildStep step : fStepList) {
+			step.setRebuildState(false);
+			step.setUpToDate(false);
+		}
+		for (BuildResource rc : fLocationToRcMap.values()) {
+			rc.setRebuildState(false);
+		}
+
+		if(fBuildState != null && fBuildState.getState() == IRebuildState.NEED_REBUILD)
+			fInputStep.setRebuildState(true);
+
+		RcVisitor visitor = new RcVisitor();
+		for (IResource rc : patcher.fAddedSources) {
+			visitor.doVisitFile(rc);
+			BuildResource bRc = (BuildResource)getBuildResource(calcResourceLocation(rc));
+			if(bRc != null)
+				bRc.setRebuildState(true);
+		}
+
+		// the included files may have changed with the contents of the sources and
+		// of the included files themselves
+		Set<BuildStep> depSteps = new LinkedHashSet<BuildStep>();
+		for (BuildResource rc : patcher.fChangedSources) {
+			for (IBuildIOType type : rc.getDependentIOTypes()) {
+				BuildStep step = (BuildStep)type.getStep();
+				if(step.getTool() != null)
+					depSteps.add(step);
+			}
+		}
+		for (BuildStep step : depSteps) {
+			recalculateDeps(step);
+		}
+
+		visitor.setMode(true);
+		fDelta.accept(visitor);
+		if(fBuildState != null)
+			processBuildState();
+
+		completeLinking();
+		synchRebuildState();
+		return true;
+	}
+
+	/**
+	 * Returns whether the description can be updated for the next build, which
+	 * is not the case once steps or resources have been removed
+	 */
+	boolean isReusable(){
+		if(fSettings == null)
+			return false;
+		for (BuildStep step : fStepList) {
+			if(step.isRemoved())
+				return false;
+		}
+		for (BuildResource rc : fLocationToRcMap.values()) {
+			if(rc.isRemoved())
+				return false;
+		}
+		return true;
+	}
+
+	private void recalculateDeps(BuildStep step){
+		if(!checkFlags(BuildDescriptionManager.DEPS))
+			return;
+
+		for (IBuildIOType type : step.getInputIOTypes()) {
+			BuildIOType arg = (BuildIOType)type;
+			// the types added by calculateDeps
+			if(!arg.isPrimary() && arg.getIoType() == null)
+				step.removeIOType(arg);
+		}
+		calculateDeps(step);
+	}
+
 	protected void stepRemoved(BuildStep step){
 		fStepList.remove(step);
 
@@ -1501,6 +1701,36 @@ public class BuildDescription implements IBuildDescription {
 		return fEnvironment;
 	}
 
+	/**
+	 * Returns the environment variables and the resolved values of the macros of the
+	 * configuration, by "env:" and "macro:" prefixed names
+	 */
+	private Map<String, Object> calculateSettings(Map<String, String> env){
+		Map<String, Object> settings = new HashMap<String, Object>();
+		for (Entry<String, String> entry : env.entrySet()) {
+			settings.put("env:" + entry.getKey(), entry.getValue()); //$NON-NLS-1$
+		}
+		IBuildMacro[] macros = ManagedBuildManager.getBuildMacroProvider().getMacros(IBuildMacroProvider.CONTEXT_CONFIGURATION, fCfg, true);
+		for (IBuildMacro macro : macros) {
+			settings.put("macro:" + macro.getName(), getMacroValue(macro)); //$NON-NLS-1$
+		}
+		return settings;
+	}
+
+	private static Object getMacroValue(IBuildMacro macro){
+		try {
+			return macro.getStringValue();
+		} catch (BuildMacroException e) {
+			// a list value
+		}
+		try {
+			String[] values = macro.getStringListValue();
+			return values != null ? Arrays.asList(values) : null;
+		} catch (BuildMacroException e) {
+			return null;
+		}
+	}
+
 	protected Map<String, String> calculateEnvironment(){
 		IBuildEnvironmentVariable variables[] = ManagedBuildManager.getEnvironmentVariableProvider().getVariables(fCfg,true,true);
 		Map<String, String> map = new HashMap<String, String>();
@@ -0,0 +1,360 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Obeo - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.cdt.managedbuilder.internal.buildmodel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+
+import org.eclipse.cdt.managedbuilder.buildmodel.BuildDescriptionManager;
+import org.eclipse.cdt.managedbuilder.buildmodel.IBuildCommand;
+import org.eclipse.cdt.managedbuilder.buildmodel.IBuildDescription;
+import org.eclipse.cdt.managedbuilder.buildmodel.IBuildIOType;
+import org.eclipse.cdt.managedbuilder.buildmodel.IBuildResource;
+import org.eclipse.cdt.managedbuilder.buildmodel.IBuildStep;
+import org.eclipse.cdt.managedbuilder.buildmodel.IStepVisitor;
+import org.eclipse.cdt.managedbuilder.core.ManagedBuilderCorePlugin;
+import org.eclipse.cdt.managedbuilder.internal.core.ManagedMakeMessages;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
+
+/**
+ * Writes a build description as a ninja build file, to be run by ninja from the
+ * default build directory of the description.
+ * <p>
+ * Each step of the description is a build edge running its commands. The steps
+ * producing a dependency file (.d) are given the gcc options writing it, and ninja
+ * reads it into its dependency log (.ninja_deps) once the step has run. Ninja records
+ * the commands it ran in its build log (.ninja_log) next to the build file, so that a
+ * step is run again when its command line changes. The edges are restat'ed: the
+ * dependents of a step whose outputs were left untouched are not rebuilt.
+ * </p>
+ * <p>
+ * The {@value #CLEAN} target removes the outputs of all the edges with the ninja clean tool.
+ * </p>
+ */
+public class BuildDescriptionNinjaGenerator {
+	private static final String RULE_STEP = "step"; //$NON-NLS-1$
+	private static final String RULE_DEP_STEP = "dep_step"; //$NON-NLS-1$
+	private static final String PHONY = "phony"; //$NON-NLS-1$
+	private static final String ALL = "all"; //$NON-NLS-1$
+	public static final String CLEAN = "clean"; //$NON-NLS-1$
+	private static final String RULE_CLEAN = "clean_outputs"; //$NON-NLS-1$
+	private static final String CLEAN_CMD = "ninja -t clean"; //$NON-NLS-1$
+	private static final String IN_STEP_TARGET = "pre_build"; //$NON-NLS-1$
+	private static final String OUT_STEP_TARGET = "post_build"; //$NON-NLS-1$
+	private static final String VAR_CMD = "cmd"; //$NON-NLS-1$
+	private static final String VAR_DESC = "desc"; //$NON-NLS-1$
+	private static final String VAR_DEPFILE = "depfile"; //$NON-NLS-1$
+	/** deps = gcc needs ninja 1.3 */
+	private static final String REQUIRED_VERSION = "1.3"; //$NON-NLS-1$
+	private static final String LINE_SEPARATOR = "\n"; //$NON-NLS-1$
+	private static final String INDENT = "  "; //$NON-NLS-1$
+	private static final String SPACE = " "; //$NON-NLS-1$
+	private static final String CMD_SEPARATOR = " && "; //$NON-NLS-1$
+	private static final String WIN32_SHELL = "cmd /c "; //$NON-NLS-1$
+	/** Characters left unquoted in the arguments of commands run by /bin/sh */
+	private static final String SHELL_SAFE_CHARS = "_-+=./,:@%"; //$NON-NLS-1$
+	private static final String ENCODING = "utf-8"; //$NON-NLS-1$
+
+	private IBuildDescription fDes;
+	private IPath fCWD;
+	private boolean fWin32;
+
+	private class DescriptionVisitor implements IStepVisitor {
+		Writer fWriter;
+		boolean fHasPrebuild;
+		DescriptionVisitor(Writer writer, boolean hasPrebuild){
+			fWriter = writer;
+			fHasPrebuild = hasPrebuild;
+		}
+
+		@Override
+		public int visit(IBuildStep step) throws CoreException {
+			if(step == fDes.getInputStep() || step == fDes.getOutputStep() || step.isRemoved())
+				return VISIT_CONTINUE;
+
+			try {
+				write(fWriter, step, fHasPrebuild);
+			} catch (IOException e) {
+				throw new CoreException(new Status(IStatus.ERROR, ManagedBuilderCorePlugin.getUniqueIdentifier(), ManagedMakeMessages.getString("BuildDescriptionNinjaGenerator.0"), e)); //$NON-NLS-1$
+			}
+			return VISIT_CONTINUE;
+		}
+	}
+
+	public BuildDescriptionNinjaGenerator(IBuildDescription des){
+		fDes = des;
+		fWin32 = Platform.OS_WIN32.equals(Platform.getOS());
+		fCWD = des.getDefaultBuildDirLocation();
+		if(!fCWD.isAbsolute())
+			fCWD = des.getConfiguration().getOwner().getProject().getLocation().append(fCWD);
+	}
+
+	public void store(OutputStream stream) throws CoreException{
+		Writer writer = createWriter(stream);
+
+		try {
+			writer.write("ninja_required_version = "); //$NON-NLS-1$
+			writer.write(REQUIRED_VERSION);
+			writer.write(LINE_SEPARATOR);
+			writer.write(LINE_SEPARATOR);
+
+			writeRule(writer, RULE_STEP, false);
+			writeRule(writer, RULE_DEP_STEP, true);
+
+			writer.write("rule "); //$NON-NLS-1$
+			writer.write(RULE_CLEAN);
+			writer.write(LINE_SEPARATOR);
+			writeVariable(writer, "command", CLEAN_CMD); //$NON-NLS-1$
+			writer.write(LINE_SEPARATOR);
+
+			IBuildCommand[] preCmds = fDes.getInputStep().getCommands(null, null, null, true);
+			boolean hasPrebuild = preCmds.length != 0;
+			if(hasPrebuild){
+				// Never produced, so run by every build before the other steps
+				writeEdge(writer, IN_STEP_TARGET, "", "", preCmds, null, null, IN_STEP_TARGET); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+
+			BuildDescriptionManager.accept(new DescriptionVisitor(writer, hasPrebuild), fDes, true);
+
+			String targets = toString(fDes.getOutputStep().getInputResources());
+			writer.write("build "); //$NON-NLS-1$
+			writer.write(ALL);
+			writer.write(": "); //$NON-NLS-1$
+			writer.write(PHONY);
+			if(targets.length() != 0){
+				writer.write(SPACE);
+				writer.write(targets);
+			}
+			writer.write(LINE_SEPARATOR);
+			writer.write(LINE_SEPARATOR);
+
+			String defaultTarget = ALL;
+			IBuildCommand[] postCmds = fDes.getOutputStep().getCommands(null, null, null, true);
+			if(postCmds.length != 0){
+				writeEdge(writer, OUT_STEP_TARGET, ALL, "", postCmds, null, null, OUT_STEP_TARGET); //$NON-NLS-1$
+				defaultTarget = OUT_STEP_TARGET;
+			}
+
+			writer.write("build "); //$NON-NLS-1$
+			writer.write(CLEAN);
+			writer.write(": "); //$NON-NLS-1$
+			writer.write(RULE_CLEAN);
+			writer.write(LINE_SEPARATOR);
+			writer.write(LINE_SEPARATOR);
+
+			writer.write("default "); //$NON-NLS-1$
+			writer.write(defaultTarget);
+			writer.write(LINE_SEPARATOR);
+
+			writer.flush();
+		} catch (IOException e) {
+			throw new CoreException(new Status(IStatus.ERROR, ManagedBuilderCorePlugin.getUniqueIdentifier(), ManagedMakeMessages.getString("BuildDescriptionNinjaGenerator.0"), e)); //$NON-NLS-1$
+		}
+	}
+
+	protected Writer createWriter(OutputStream stream){
+		try {
+			return new OutputStreamWriter(stream, ENCODING);
+		} catch (UnsupportedEncodingException e1) {
+			ManagedBuilderCorePlugin.log(e1);
+		}
+		return new OutputStreamWriter(stream);
+	}
+
+	protected void writeRule(Writer writer, String name, boolean depfile) throws IOException {
+		writer.write("rule "); //$NON-NLS-1$
+		writer.write(name);
+		writer.write(LINE_SEPARATOR);
+		writeVariable(writer, "command", "$" + VAR_CMD); //$NON-NLS-1$ //$NON-NLS-2$
+		writeVariable(writer, "description", "$" + VAR_DESC); //$NON-NLS-1$ //$NON-NLS-2$
+		if(depfile){
+			writeVariable(writer, "depfile", "$" + VAR_DEPFILE); //$NON-NLS-1$ //$NON-NLS-2$
+			writeVariable(writer, "deps", "gcc"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		writeVariable(writer, "restat", "1"); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.write(LINE_SEPARATOR);
+	}
+
+	protected void write(Writer writer, IBuildStep step, boolean hasPrebuild) throws CoreException, IOException {
+		IBuildResource[] outputs = getPrimaryOutputs(step);
+		if(outputs.length == 0)
+			return;
+
+		IBuildCommand[] cmds = step.getCommands(null, null, null, true);
+		if(cmds.length == 0)
+			return;
+
+		String desc = ManagedMakeMessages.getResourceString("MakefileGenerator.message.start.file") + SPACE + toPath(outputs[0]); //$NON-NLS-1$
+		writeEdge(writer, toString(outputs), toString(step.getInputResources()),
+				hasPrebuild ? IN_STEP_TARGET : "", cmds, getDependencyFile(step), outputs[0], desc); //$NON-NLS-1$
+	}
+
+	/**
+	 * Writes a build edge.
+	 *
+	 * @param depFile Dependency file written by the first command, or null
+	 * @param depTarget Output named as the target of the dependency file
+	 */
+	private void writeEdge(Writer writer, String outputs, String inputs, String orderOnly,
+			IBuildCommand[] cmds, IBuildResource depFile, IBuildResource depTarget, String desc) throws IOException {
+		writer.write("build "); //$NON-NLS-1$
+		writer.write(outputs);
+		writer.write(": "); //$NON-NLS-1$
+		writer.write(depFile != null ? RULE_DEP_STEP : RULE_STEP);
+		if(inputs.length() != 0){
+			writer.write(SPACE);
+			writer.write(inputs);
+		}
+		if(orderOnly.length() != 0){
+			writer.write(" || "); //$NON-NLS-1$
+			writer.write(orderOnly);
+		}
+		writer.write(LINE_SEPARATOR);
+
+		StringBuffer buf = new StringBuffer();
+		for(int i = 0; i < cmds.length; i++){
+			if(i != 0)
+				buf.append(CMD_SEPARATOR);
+			buf.append(toString(cmds[i]));
+			if(i == 0 && depFile != null){
+				// A single target: ninja rejects the phony targets of -MP before 1.10
+				buf.append(" -MMD -MF").append(quote(toPath(depFile))); //$NON-NLS-1$
+				buf.append(" -MT").append(quote(toPath(depTarget))); //$NON-NLS-1$
+			}
+		}
+		String cmd = buf.toString();
+		// Ninja runs the commands without a shell on Windows
+		if(cmds.length > 1 && fWin32)
+			cmd = WIN32_SHELL + cmd;
+		writeVariable(writer, VAR_CMD, escapeValue(cmd));
+		writeVariable(writer, VAR_DESC, escapeValue(desc));
+		if(depFile != null)
+			writeVariable(writer, VAR_DEPFILE, escapeValue(toPath(depFile)));
+		writer.write(LINE_SEPARATOR);
+	}
+
+	private void writeVariable(Writer writer, String name, String value) throws IOException {
+		writer.write(INDENT);
+		writer.write(name);
+		writer.write(" = "); //$NON-NLS-1$
+		writer.write(value);
+		writer.write(LINE_SEPARATOR);
+	}
+
+	private IBuildResource[] getPrimaryOutputs(IBuildStep step){
+		if(step instanceof BuildStep){
+			IBuildIOType[] types = ((BuildStep)step).getPrimaryTypes(false);
+			if(types.length != 0){
+				int count = 0;
+				for(int i = 0; i < types.length; i++)
+					count += types[i].getResources().length;
+				IBuildResource[] rcs = new IBuildResource[count];
+				count = 0;
+				for(int i = 0; i < types.length; i++){
+					IBuildResource[] typeRcs = types[i].getResources();
+					System.arraycopy(typeRcs, 0, rcs, count, typeRcs.length);
+					count += typeRcs.length;
+				}
+				return rcs;
+			}
+		}
+		return step.getOutputResources();
+	}
+
+	/**
+	 * Returns the dependency file written by a step, or null
+	 */
+	private IBuildResource getDependencyFile(IBuildStep step){
+		return step instanceof BuildStep ? ((BuildStep)step).getDependencyFile() : null;
+	}
+
+	protected String toString(IBuildCommand cmd){
+		StringBuffer buf = new StringBuffer();
+		buf.append(quote(cmd.getCommand().toString()));
+		String[] args = cmd.getArgs();
+		for(int i = 0; i < args.length; i++){
+			buf.append(SPACE);
+			buf.append(quote(args[i]));
+		}
+		return buf.toString();
+	}
+
+	protected String toString(IBuildResource[] rcs){
+		StringBuffer buf = new StringBuffer();
+		for(int i = 0; i < rcs.length; i++){
+			if(i != 0)
+				buf.append(SPACE);
+			buf.append(escapePath(toPath(rcs[i])));
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Returns the path of a resource relative to the build directory
+	 */
+	protected String toPath(IBuildResource rc){
+		return BuildDescriptionManager.getRelPath(fCWD, rc.getLocation()).toString();
+	}
+
+	/**
+	 * Quotes a command argument for /bin/sh, or for the Windows command line
+	 * parsing when ninja runs the commands on Windows
+	 */
+	private String quote(String arg){
+		if(fWin32){
+			if(arg.length() != 0 && arg.indexOf(' ') == -1 && arg.indexOf('\t') == -1 && arg.indexOf('"') == -1)
+				return arg;
+			return '"' + arg.replace("\"", "\\\"") + '"'; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		if(arg.length() != 0 && isShellSafe(arg))
+			return arg;
+		// Nothing is special within single quotes, a quote is closed, escaped and reopened
+		return '\'' + arg.replace("'", "'\\''") + '\''; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static boolean isShellSafe(String arg){
+		for(int i = 0; i < arg.length(); i++){
+			char c = arg.charAt(i);
+			if(!(c >= 'a' && c <= 'z') && !(c >= 'A' && c <= 'Z') && !(c >= '0' && c <= '9')
+					&& SHELL_SAFE_CHARS.indexOf(c) == -1)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Escapes a path of a build edge
+	 */
+	private static String escapePath(String path){
+		StringBuffer buf = new StringBuffer(path.length());
+		for(int i = 0; i < path.length(); i++){
+			char c = path.charAt(i);
+			if(c == '$' || c == ' ' || c == ':')
+				buf.append('$');
+			buf.append(c);
+		}
+		return buf.toString();
+	}
+
+	/**
+	 * Escapes the value of a variable
+	 */
+	private static String escapeValue(String value){
+		return value.replace("$", "$$"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
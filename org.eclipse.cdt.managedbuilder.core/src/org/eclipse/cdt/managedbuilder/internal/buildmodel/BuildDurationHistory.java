@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Obeo - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.cdt.managedbuilder.internal.buildmodel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import org.eclipse.cdt.managedbuilder.core.ManagedBuilderCorePlugin;
+
+/**
+ * This class keeps the durations of the last builds of each step of a
+ * configuration, and the timeline of the last build.
+ *
+ * NOTE: This class is subject to change and discuss,
+ * and is currently available in experimental mode only
+ */
+public class BuildDurationHistory {
+	/** Number of durations kept for each step */
+	public static final int MAX_SAMPLES = 5;
+
+	private static final String SEPARATOR = ","; //$NON-NLS-1$
+
+	private Map<String, long[]> fKeyToDurationsMap = new HashMap<String, long[]>();
+	private BuildTimeline fLastTimeline;
+	private boolean fIsDirty;
+
+	/**
+	 * Returns the average duration in microseconds of the last builds of the
+	 * step, or -1 if it has never been built successfully
+	 */
+	public synchronized long getEstimatedDuration(String key) {
+		long[] durations = fKeyToDurationsMap.get(key);
+		if (durations == null || durations.length == 0)
+			return -1;
+		long sum = 0;
+		for (long duration : durations) {
+			sum += duration;
+		}
+		return sum / durations.length;
+	}
+
+	/**
+	 * Adds the durations of the steps successfully built in the given timeline
+	 * and keeps it as the last timeline
+	 */
+	public synchronized void record(BuildTimeline timeline) {
+		for (BuildTimeline.Event event : timeline.getEvents()) {
+			if (BuildTimeline.CATEGORY_STEP.equals(event.getCategory())
+					&& event.getKey() != null && event.getExitCode() == 0) {
+				addDuration(event.getKey(), event.getDuration());
+			}
+		}
+		fLastTimeline = timeline;
+		fIsDirty = true;
+	}
+
+	private void addDuration(String key, long duration) {
+		long[] durations = fKeyToDurationsMap.get(key);
+		long[] updated;
+		if (durations == null) {
+			updated = new long[] { duration };
+		} else if (durations.length < MAX_SAMPLES) {
+			updated = new long[durations.length + 1];
+			System.arraycopy(durations, 0, updated, 0, durations.length);
+			updated[durations.length] = duration;
+		} else {
+			// Drop the oldest duration
+			updated = new long[MAX_SAMPLES];
+			System.arraycopy(durations, 1, updated, 0, MAX_SAMPLES - 1);
+			updated[MAX_SAMPLES - 1] = duration;
+		}
+		fKeyToDurationsMap.put(key, updated);
+	}
+
+	/**
+	 * Returns the timeline of the last build, or null if none was recorded
+	 * since the history was loaded
+	 */
+	public synchronized BuildTimeline getLastTimeline() {
+		return fLastTimeline;
+	}
+
+	public synchronized boolean isDirty() {
+		return fIsDirty;
+	}
+
+	public synchronized void load(InputStream iStream) throws IOException {
+		Properties props = new Properties();
+		props.load(iStream);
+		for (@SuppressWarnings("rawtypes") Entry entry : props.entrySet()) {
+			String[] values = ((String)entry.getValue()).split(SEPARATOR);
+			try {
+				long[] durations = new long[Math.min(values.length, MAX_SAMPLES)];
+				for (int i = 0; i < durations.length; i++) {
+					durations[i] = Long.parseLong(values[values.length - durations.length + i]);
+				}
+				fKeyToDurationsMap.put((String)entry.getKey(), durations);
+			} catch (NumberFormatException e) {
+				ManagedBuilderCorePlugin.log(e);
+			}
+		}
+	}
+
+	public synchronized void store(OutputStream oStream) throws IOException {
+		Properties props = new Properties();
+		for (Entry<String, long[]> entry : fKeyToDurationsMap.entrySet()) {
+			StringBuilder buf = new StringBuilder();
+			for (long duration : entry.getValue()) {
+				if (buf.length() != 0)
+					buf.append(SEPARATOR);
+				buf.append(duration);
+			}
+			props.setProperty(entry.getKey(), buf.toString());
+		}
+		props.store(oStream, ""); //$NON-NLS-1$
+		fIsDirty = false;
+	}
+}
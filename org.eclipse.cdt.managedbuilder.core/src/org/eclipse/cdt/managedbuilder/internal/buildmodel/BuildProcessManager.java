@@ -18,6 +18,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.cdt.managedbuilder.buildmodel.IBuildCommand;
 import org.eclipse.core.runtime.IPath;
@@ -32,6 +35,11 @@ public class BuildProcessManager {
 	protected boolean show;
 	protected Vector<ProcessLauncher> processes;
 	protected int maxProcesses;
+	protected BlockingQueue<ProcessLauncher> completed = new LinkedBlockingQueue<ProcessLauncher>();
+	/** Server of the job slots shared with the other builds, or null */
+	protected JobSlotServer jobSlots = JobSlotServer.getDefault();
+	/** Whether the last launch failed because no job slot could be acquired */
+	protected boolean jobSlotMissed;
 	
 	/**
 	 * Initializes process manager
@@ -58,31 +66,86 @@ public class BuildProcessManager {
 	/**
 	 * Performs an attempt to launch new process. Returns BuildProcessLauncher 
 	 * if it was successfully launched, null if there is no room for it yet in 
-	 * the process pool.
+	 * the process pool or if the monitor was canceled while waiting for a slot 
+	 * of the workspace-wide job slot server.
 	 * 
 	 * @param cmd Command to launch
 	 * @param cwd Command working directory
 	 * @param monitor Progress monitor for this task 
 	 */
 	public ProcessLauncher launchProcess(IBuildCommand cmd, IPath cwd, IProgressMonitor monitor) {
+		jobSlotMissed = false;
 		for (int i = 0; i < maxProcesses; i++) {
 			if (i >= processes.size()) {
-				ProcessLauncher process = new ProcessLauncher(cmd.getCommand(), cmd.getArgs(), mapToStringArray(cmd.getEnvironment()), cwd, out, err, monitor, show);
-				processes.add(process);
-				process.launch();
+				ProcessLauncher process = launch(cmd, cwd, monitor);
+				if (process != null)
+					processes.add(process);
 				return process;
 				
 			}
 			if (processes.get(i).queryState() == ProcessLauncher.STATE_DONE) {
-				ProcessLauncher process = new ProcessLauncher(cmd.getCommand(), cmd.getArgs(), mapToStringArray(cmd.getEnvironment()), cwd, out, err, monitor, show);
-				processes.set(i, process);
-				process.launch();
+				ProcessLauncher process = launch(cmd, cwd, monitor);
+				if (process != null)
+					processes.set(i, process);
 				return process;
 			}
 		}
 		return null;
 	}
 	
+	/**
+	 * Launches a process in a free slot of the pool. Waits for a slot of the 
+	 * workspace-wide job slot server (if any) first, returns null if the 
+	 * monitor is canceled or the thread interrupted in the meantime.
+	 */
+	private ProcessLauncher launch(IBuildCommand cmd, IPath cwd, IProgressMonitor monitor) {
+		jobSlotMissed = jobSlots != null && !jobSlots.acquire(monitor);
+		if (jobSlotMissed)
+			return null;
+		ProcessLauncher process = createLauncher(cmd, cwd, monitor);
+		process.setJobSlot(jobSlots);
+		process.launch();
+		return process;
+	}
+	
+	/**
+	 * Returns whether the last call to {@link #launchProcess(IBuildCommand, IPath, IProgressMonitor)}
+	 * returned null because no job slot could be acquired, the monitor being canceled or
+	 * the thread interrupted while waiting. The command must then be considered as failed.
+	 */
+	public boolean isJobSlotMissed() {
+		return jobSlotMissed;
+	}
+	
+	/**
+	 * Creates a launcher which signals this manager when it completes
+	 */
+	protected ProcessLauncher createLauncher(IBuildCommand cmd, IPath cwd, IProgressMonitor monitor) {
+		ProcessLauncher process = new ProcessLauncher(cmd.getCommand(), cmd.getArgs(), mapToStringArray(cmd.getEnvironment()), cwd, out, err, monitor, show);
+		process.setCompletionQueue(completed);
+		return process;
+	}
+	
+	/**
+	 * Waits until at least one process has completed since the previous call,
+	 * or until the timeout expires. Returns immediately if a process has 
+	 * already completed in the meantime.
+	 * 
+	 * @param timeout Maximum time to wait in milliseconds
+	 * @return true if a process has completed, false on timeout
+	 */
+	public boolean waitForCompletion(long timeout) {
+		try {
+			if (completed.poll(timeout, TimeUnit.MILLISECONDS) == null)
+				return false;
+		} catch (InterruptedException e) {
+			return false;
+		}
+		// All completed processes are handled by the caller at once
+		completed.clear();
+		return true;
+	}
+
 	/**
 	 * Checks states of all currently running processes. If it finds 
 	 * one with state other than STATE_DONE or STATE_RUNNING, it is
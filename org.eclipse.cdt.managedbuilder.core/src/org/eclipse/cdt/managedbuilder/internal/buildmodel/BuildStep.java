@@ -40,6 +40,7 @@ import org.eclipse.cdt.managedbuilder.internal.macros.FileContextData;
 import org.eclipse.cdt.managedbuilder.internal.macros.IMacroContextInfo;
 import org.eclipse.cdt.managedbuilder.macros.IBuildMacroProvider;
 import org.eclipse.cdt.managedbuilder.macros.IFileContextData;
+import org.eclipse.cdt.managedbuilder.makegen.IManagedBuilderMakefileGenerator;
 import org.eclipse.cdt.utils.cdtvariables.CdtVariableResolver;
 import org.eclipse.cdt.utils.cdtvariables.SupplierBasedCdtVariableSubstitutor;
 import org.eclipse.core.runtime.IPath;
@@ -51,6 +52,7 @@ public class BuildStep implements IBuildStep {
 	private ITool fTool;
 	private BuildGroup fBuildGroup;
 	private boolean fNeedsRebuild;
+	private boolean fIsUpToDate;
 	private boolean fIsRemoved;
 	private BuildDescription fBuildDescription;
 	private IInputType fInputType;
@@ -89,6 +91,9 @@ public class BuildStep implements IBuildStep {
 	 */
 	@Override
 	public boolean needsRebuild() {
+		if(fIsUpToDate)
+			return false;
+
 		if(fNeedsRebuild
 				|| (fTool != null && fTool.needsRebuild())
 				|| (fLibTool != null && fLibTool.needsRebuild()))
@@ -104,6 +109,14 @@ public class BuildStep implements IBuildStep {
 		fNeedsRebuild = rebuild;
 	}
 
+	/**
+	 * Marks the step as up to date whatever its rebuild state, because its
+	 * inputs and commands are identical to the last successful build
+	 */
+	public void setUpToDate(boolean upToDate){
+		fIsUpToDate = upToDate;
+	}
+
 	public BuildResource[] removeIOType(BuildIOType type) {
 
 		BuildResource rcs[] = type.remove();
@@ -180,6 +193,24 @@ public class BuildStep implements IBuildStep {
 		return fTool;
 	}
 
+	/**
+	 * Returns the dependency file written by the tool of the step, or null
+	 */
+	public IBuildResource getDependencyFile(){
+		if(fTool == null)
+			return null;
+		for (BuildIOType arg : fOutputTypes) {
+			if(arg.isPrimary())
+				continue;
+			for (IBuildResource rc : arg.getResources()) {
+				IPath location = rc.getLocation();
+				if(location != null && IManagedBuilderMakefileGenerator.DEP_EXT.equals(location.getFileExtension()))
+					return rc;
+			}
+		}
+		return null;
+	}
+
 	public BuildIOType[] getPrimaryTypes(boolean input){
 		List<BuildIOType> types = input ? fInputTypes : fOutputTypes;
 
@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Obeo - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.cdt.managedbuilder.internal.buildmodel;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class records when the steps and commands of an internal builder run
+ * were executed, and exports them in the Chrome trace event format
+ * (chrome://tracing).
+ *
+ * NOTE: This class is subject to change and discuss,
+ * and is currently available in experimental mode only
+ */
+public class BuildTimeline {
+	public static final String CATEGORY_STEP = "step"; //$NON-NLS-1$
+	public static final String CATEGORY_COMMAND = "command"; //$NON-NLS-1$
+	/** Step whose outputs were restored from the {@link ObjectCache} */
+	public static final String CATEGORY_CACHED = "cached"; //$NON-NLS-1$
+
+	/**
+	 * This class stores a step or command execution
+	 */
+	public static class Event {
+		protected String category;
+		protected String name;
+		protected String key;
+		protected String detail;
+		protected long start;
+		protected long end;
+		protected int exitCode;
+		protected int slot;
+
+		public Event(String _category, String _name, String _key, String _detail, long _start, long _end, int _exitCode, int _slot) {
+			category = _category;
+			name = _name;
+			key = _key;
+			detail = _detail;
+			start = _start;
+			end = _end;
+			exitCode = _exitCode;
+			slot = _slot;
+		}
+
+		/**
+		 * Returns {@link BuildTimeline#CATEGORY_STEP}, {@link BuildTimeline#CATEGORY_COMMAND}
+		 * or {@link BuildTimeline#CATEGORY_CACHED}
+		 */
+		public String getCategory() {
+			return category;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns an identifier of the step which is stable across builds
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		/**
+		 * Returns the command line of a command, null for a step
+		 */
+		public String getDetail() {
+			return detail;
+		}
+
+		/**
+		 * Returns start time in microseconds since the beginning of the build
+		 */
+		public long getStart() {
+			return start;
+		}
+
+		/**
+		 * Returns end time in microseconds since the beginning of the build
+		 */
+		public long getEnd() {
+			return end;
+		}
+
+		public long getDuration() {
+			return end - start;
+		}
+
+		public int getExitCode() {
+			return exitCode;
+		}
+
+		/**
+		 * Returns index of the process slot used
+		 */
+		public int getSlot() {
+			return slot;
+		}
+	}
+
+	protected long origin;
+	protected long startTime;
+	protected List<Event> events = new ArrayList<Event>();
+
+	public BuildTimeline() {
+		origin = System.nanoTime();
+		startTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns current time in microseconds since the beginning of the build
+	 */
+	public long now() {
+		return (System.nanoTime() - origin) / 1000;
+	}
+
+	/**
+	 * Returns wall clock time at the beginning of the build
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	public synchronized void addEvent(Event event) {
+		events.add(event);
+	}
+
+	public synchronized Event[] getEvents() {
+		return events.toArray(new Event[events.size()]);
+	}
+
+	/**
+	 * Returns true if a command failed, which the build status does not
+	 * report when the build resumes on errors
+	 */
+	public synchronized boolean hasFailures() {
+		for (Event event : events) {
+			if (event.getExitCode() != 0)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Writes the timeline as a Chrome trace event JSON document. Each process
+	 * slot is shown as a thread, steps and their commands as nested slices.
+	 */
+	public void writeChromeTrace(Writer writer) throws IOException {
+		Event[] all = getEvents();
+		writer.write("{\"traceEvents\":["); //$NON-NLS-1$
+		for (int i = 0; i < all.length; i++) {
+			Event event = all[i];
+			if (i > 0)
+				writer.write(',');
+			writer.write("\n{\"name\":"); //$NON-NLS-1$
+			writeString(writer, event.getName());
+			writer.write(",\"cat\":"); //$NON-NLS-1$
+			writeString(writer, event.getCategory());
+			writer.write(",\"ph\":\"X\",\"pid\":1,\"tid\":"); //$NON-NLS-1$
+			writer.write(Integer.toString(event.getSlot()));
+			writer.write(",\"ts\":"); //$NON-NLS-1$
+			writer.write(Long.toString(event.getStart()));
+			writer.write(",\"dur\":"); //$NON-NLS-1$
+			writer.write(Long.toString(event.getDuration()));
+			writer.write(",\"args\":{\"exitCode\":"); //$NON-NLS-1$
+			writer.write(Integer.toString(event.getExitCode()));
+			if (event.getKey() != null) {
+				writer.write(",\"key\":"); //$NON-NLS-1$
+				writeString(writer, event.getKey());
+			}
+			if (event.getDetail() != null) {
+				writer.write(",\"command\":"); //$NON-NLS-1$
+				writeString(writer, event.getDetail());
+			}
+			writer.write("}}"); //$NON-NLS-1$
+		}
+		writer.write("\n],\"displayTimeUnit\":\"ms\",\"otherData\":{\"startTime\":"); //$NON-NLS-1$
+		writer.write(Long.toString(startTime));
+		writer.write("}}\n"); //$NON-NLS-1$
+		writer.flush();
+	}
+
+	private static void writeString(Writer writer, String value) throws IOException {
+		writer.write('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				writer.write("\\\""); //$NON-NLS-1$
+				break;
+			case '\\':
+				writer.write("\\\\"); //$NON-NLS-1$
+				break;
+			case '\n':
+				writer.write("\\n"); //$NON-NLS-1$
+				break;
+			case '\r':
+				writer.write("\\r"); //$NON-NLS-1$
+				break;
+			case '\t':
+				writer.write("\\t"); //$NON-NLS-1$
+				break;
+			default:
+				if (c < 0x20) {
+					writer.write(String.format("\\u%04x", Integer.valueOf(c))); //$NON-NLS-1$
+				} else {
+					writer.write(c);
+				}
+			}
+		}
+		writer.write('"');
+	}
+}
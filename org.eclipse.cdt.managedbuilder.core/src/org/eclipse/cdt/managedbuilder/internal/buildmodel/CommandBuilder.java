@@ -45,6 +45,7 @@ public class CommandBuilder implements IBuildModelBuilder {
 
 	private IBuildCommand fCmd;
 	private Process fProcess;
+	private int fExitCode = -1;
 	private String fErrMsg;
 
 	protected class OutputStreamWrapper extends OutputStream {
@@ -91,6 +92,7 @@ public class CommandBuilder implements IBuildModelBuilder {
 	@Override
 	public int build(OutputStream out, OutputStream err, IProgressMonitor monitor) {
 		int status = STATUS_ERROR_LAUNCH;
+		JobSlotServer jobSlots = null;
 
 		try {
 			if (monitor == null) {
@@ -99,6 +101,13 @@ public class CommandBuilder implements IBuildModelBuilder {
 			monitor.beginTask("", getNumCommands()); //$NON-NLS-1$
 			monitor.subTask(ManagedMakeMessages.getResourceString("MakeBuilder.Invoking_Command") + getCommandLine()); //$NON-NLS-1$
 
+			JobSlotServer slots = JobSlotServer.getDefault();
+			if (slots != null) {
+				if (!slots.acquire(monitor))
+					return STATUS_CANCELLED;
+				jobSlots = slots;
+			}
+
 			ICommandLauncher launcher = createLauncher();
 			launcher.showCommand(true);
 
@@ -115,7 +124,8 @@ public class CommandBuilder implements IBuildModelBuilder {
 				switch (st) {
 				case ICommandLauncher.OK:
 					// assuming that compiler returns error code after compilation errors
-					status = fProcess.exitValue() == 0 ? STATUS_OK : STATUS_ERROR_BUILD;
+					fExitCode = fProcess.exitValue();
+					status = fExitCode == 0 ? STATUS_OK : STATUS_ERROR_BUILD;
 					break;
 				case ICommandLauncher.COMMAND_CANCELED:
 					status = STATUS_CANCELLED;
@@ -136,6 +146,8 @@ public class CommandBuilder implements IBuildModelBuilder {
 					"Error launching command [" + fCmd.getCommand() + "]", e)); //$NON-NLS-1$ //$NON-NLS-2$
 			status = STATUS_ERROR_LAUNCH;
 		} finally {
+			if (jobSlots != null)
+				jobSlots.release();
 			monitor.done();
 		}
 
@@ -146,6 +158,17 @@ public class CommandBuilder implements IBuildModelBuilder {
 		return new CommandLauncher();
 	}
 
+	public IBuildCommand getCommand() {
+		return fCmd;
+	}
+
+	/**
+	 * Returns the exit code of the command, -1 if it was not launched or did not complete
+	 */
+	public int getExitCode() {
+		return fExitCode;
+	}
+
 	public String getErrMsg() {
 		return fErrMsg;
 	}
@@ -10,29 +10,76 @@
  *******************************************************************************/
 package org.eclipse.cdt.managedbuilder.internal.buildmodel;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
-import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.eclipse.cdt.managedbuilder.core.ManagedBuilderCorePlugin;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.IPath;
 
+/**
+ * The state is stored in a compact binary file made of a table of the project
+ * relative paths sorted by name, each followed by its state byte, and of the
+ * records appended by the following builds:
+ * <pre>
+ * int magic, int version, int count, int tableEnd
+ * int offset[count]
+ * record[count]      (sorted table)
+ * record*            (appended records, the last one of a path wins)
+ * record: unsigned short length, UTF-8 path, byte state
+ * </pre>
+ * The file is read in a single buffer on load and the paths are looked up in
+ * the table without being decoded. It is not memory-mapped, so that it can be
+ * replaced while the state is in use. The changes are appended to the file,
+ * which is rewritten once the appended records grow too large. Files in the
+ * former properties format are read and rewritten in the binary format.
+ */
 public class ConfigurationBuildState implements IConfigurationBuildState {
 	private final static Integer REBUILD_STATE = new Integer(NEED_REBUILD);
 	private final static Integer REMOVED_STATE = new Integer(REMOVED);
 	private final static Integer NONE_STATE = new Integer(0);
 
-	private HashMap<Integer, Set<String>> fStateToPathListMap;
-	private Properties fPathToStateProps;
+	private static final int MAGIC = 0x43444253;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	private static final int MAX_PATH_LENGTH = 0xffff;
+	/** The file is rewritten when the appended records exceed this number and half of the table */
+	private static final int MIN_COMPACT_RECORDS = 256;
+	private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	/** The contents of the file, null if no binary file was loaded */
+	private ByteBuffer fTable;
+	private int fTableSize;
+	/** States changed since the table was written, 0 for paths removed from the table */
+	private Map<String, Integer> fChanges;
+	/** States changed since the state was last stored */
+	private Map<String, Integer> fPending;
+	private File fFile;
+	private long fFileLength;
+	private int fAppendedRecords;
+	private boolean fNeedsRewrite;
 	private String fCfgId;
 	private IProject fProject;
 	private int fState;
+	private ContentFingerprints fFingerprints = new ContentFingerprints();
 
 	ConfigurationBuildState(IProject project, String cfgId){
 		fCfgId = cfgId;
@@ -46,21 +93,31 @@ public class ConfigurationBuildState implements IConfigurationBuildState {
 
 	@Override
 	public IPath[] getFullPathsForState(int state) {
-		if(fStateToPathListMap == null)
-			return new IPath[0];
-
-		Set<String> set = fStateToPathListMap.get(new Integer(state));
-		if(set == null)
-			return new IPath[0];
-
-		return setToFullPaths(set);
+		List<String> list = new ArrayList<String>();
+		if(fTable != null){
+			for(int i = 0; i < fTableSize; i++){
+				int offset = getRecordOffset(i);
+				if(getRecordState(offset) != state)
+					continue;
+				String str = getRecordPath(offset);
+				if(fChanges == null || !fChanges.containsKey(str))
+					list.add(str);
+			}
+		}
+		if(fChanges != null){
+			for (Entry<String, Integer> entry : fChanges.entrySet()) {
+				if(entry.getValue().intValue() == state)
+					list.add(entry.getKey());
+			}
+		}
+		return listToFullPaths(list);
 	}
 
-	private IPath[] setToFullPaths(Set<String> set){
-		IPath paths[] = new IPath[set.size()];
+	private IPath[] listToFullPaths(List<String> list){
+		IPath paths[] = new IPath[list.size()];
 		IPath path = fProject.getFullPath();
 		int num = 0;
-		for (String projRel : set) {
+		for (String projRel : list) {
 			paths[num++] = path.append(projRel);
 		}
 		return paths;
@@ -68,58 +125,171 @@ public class ConfigurationBuildState implements IConfigurationBuildState {
 
 	@Override
 	public int getStateForFullPath(IPath fullPath) {
-		if(fPathToStateProps == null)
-			return 0;
-		String str = fullPathToString(fullPath);
-		String v = fPathToStateProps.getProperty(str);
-		if(v != null){
-			Integer i = stateToInt(v);
+		return getState(fullPathToString(fullPath));
+	}
+
+	private int getState(String str){
+		if(fChanges != null){
+			Integer i = fChanges.get(str);
 			if(i != null)
 				return i.intValue();
 		}
+		if(fTable == null)
+			return 0;
+
+		int low = 0;
+		int high = fTableSize - 1;
+		while(low <= high){
+			int mid = (low + high) >>> 1;
+			int offset = getRecordOffset(mid);
+			int cmp = getRecordPath(offset).compareTo(str);
+			if(cmp < 0)
+				low = mid + 1;
+			else if(cmp > 0)
+				high = mid - 1;
+			else
+				return getRecordState(offset);
+		}
 		return 0;
 	}
 
 	@Override
 	public void setStateForFullPath(IPath fullPath, int state) {
 		String str = fullPathToString(fullPath);
-		int cur = getStateForFullPath(fullPath);
+		int cur = getState(str);
 		if(cur == state)
 			return;
 
-		if(fPathToStateProps == null){
-			fPathToStateProps = new Properties();
-			fStateToPathListMap = new HashMap<Integer, Set<String>>();
-		}
-		String strState = stateToString(new Integer(state));
-		Integer iState = stateToInt(strState);
+		Integer iState = stateToInt(stateToString(new Integer(state)));
 		if(iState == null)
 			throw new IllegalArgumentException();
 
-		if(cur != 0){
-			Set<String> set = fStateToPathListMap.get(new Integer(cur));
-			set.remove(str);
-			if(set.size() == 0)
-				fStateToPathListMap.remove(iState);
+		if(fChanges == null){
+			fChanges = new HashMap<String, Integer>();
+			fPending = new HashMap<String, Integer>();
 		}
+		fChanges.put(str, iState);
+		fPending.put(str, iState);
+	}
 
-		if(state != 0){
-			fPathToStateProps.setProperty(str, strState);
-			Set<String> set = fStateToPathListMap.get(iState);
-			if(set == null){
-				set = new HashSet<String>();
-				fStateToPathListMap.put(iState, set);
+	private String fullPathToString(IPath fullPath){
+		return fullPath.removeFirstSegments(1).toString();
+	}
+
+	private int getRecordOffset(int index){
+		return fTable.getInt(HEADER_SIZE + index * 4);
+	}
+
+	private String getRecordPath(int offset){
+		return readPath(fTable, offset);
+	}
+
+	private int getRecordState(int offset){
+		return fTable.get(offset + 2 + (fTable.getShort(offset) & MAX_PATH_LENGTH));
+	}
+
+	private static String readPath(ByteBuffer buffer, int offset){
+		byte bytes[] = new byte[buffer.getShort(offset) & MAX_PATH_LENGTH];
+		ByteBuffer dup = buffer.duplicate();
+		dup.position(offset + 2);
+		dup.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * Loads the state from a binary file, or from a file in the former
+	 * properties format
+	 */
+	public void load(File file) throws IOException{
+		ByteBuffer buffer;
+		RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if(size < HEADER_SIZE || size > Integer.MAX_VALUE){
+				buffer = null;
+			} else {
+				buffer = ByteBuffer.allocate((int)size);
+				while(buffer.hasRemaining()){
+					if(channel.read(buffer) < 0)
+						throw new IOException("truncated build state: " + file); //$NON-NLS-1$
+				}
+				buffer.flip();
+				if(buffer.getInt(0) != MAGIC)
+					buffer = null;
+			}
+		} finally {
+			raf.close();
+		}
+
+		if(buffer == null){
+			InputStream iStream = new FileInputStream(file);
+			try {
+				load(iStream);
+			} finally {
+				iStream.close();
 			}
-			set.add(str);
-		} else {
-			fPathToStateProps.remove(str);
+			return;
 		}
+
+		if(buffer.getInt(4) != VERSION)
+			throw new IOException("unsupported build state version: " + file); //$NON-NLS-1$
+		int tableSize = buffer.getInt(8);
+		int tableEnd = buffer.getInt(12);
+		if(!isTableValid(buffer, tableSize, tableEnd))
+			throw new IOException("corrupted build state: " + file); //$NON-NLS-1$
+
+		Map<String, Integer> changes = null;
+		int appendedRecords = 0;
+		int pos = tableEnd;
+		int limit = buffer.limit();
+		while(pos + 2 <= limit){
+			int end = pos + 2 + (buffer.getShort(pos) & MAX_PATH_LENGTH) + 1;
+			if(end > limit)
+				break;
+			if(changes == null)
+				changes = new HashMap<String, Integer>();
+			changes.put(readPath(buffer, pos), new Integer(buffer.get(end - 1)));
+			appendedRecords++;
+			pos = end;
+		}
+
+		clear();
+		fTable = buffer;
+		fTableSize = tableSize;
+		if(changes != null){
+			fChanges = changes;
+			fPending = new HashMap<String, Integer>();
+		}
+		fAppendedRecords = appendedRecords;
+		// A truncated record left by an interrupted append is dropped on the next rewrite
+		fNeedsRewrite = pos != limit;
+		fFile = file;
+		fFileLength = pos;
+		fState = 0;
 	}
 
-	private String fullPathToString(IPath fullPath){
-		return fullPath.removeFirstSegments(1).toString();
+	/**
+	 * Checks that the offsets of the header and of the table point to records
+	 * within the table
+	 */
+	private static boolean isTableValid(ByteBuffer buffer, int tableSize, int tableEnd){
+		long recordsStart = HEADER_SIZE + 4L * tableSize;
+		if(tableSize < 0 || recordsStart > tableEnd || tableEnd > buffer.limit())
+			return false;
+		for(int i = 0; i < tableSize; i++){
+			int offset = buffer.getInt(HEADER_SIZE + i * 4);
+			if(offset < recordsStart || offset > tableEnd - 3)
+				return false;
+			if(offset + 2 + (buffer.getShort(offset) & MAX_PATH_LENGTH) + 1 > tableEnd)
+				return false;
+		}
+		return true;
 	}
 
+	/**
+	 * Loads the state from the former properties format
+	 */
 	public void load(InputStream iStream) throws IOException{
 		Properties props = new Properties();
 		props.load(iStream);
@@ -127,46 +297,120 @@ public class ConfigurationBuildState implements IConfigurationBuildState {
 	}
 
 	private void load(Properties props){
-		HashMap<Integer, Set<String>> map = new HashMap<Integer, Set<String>>();
+		clear();
 		for (@SuppressWarnings("rawtypes") Entry entry : props.entrySet()) {
 			Integer i = stateToInt((String)entry.getValue());
-			Set<String> list = map.get(i);
-			if(list == null){
-				list = new HashSet<String>();
-				map.put(i, list);
+			if(i == null || i.equals(NONE_STATE))
+				continue;
+			if(fChanges == null){
+				fChanges = new HashMap<String, Integer>();
+				fPending = new HashMap<String, Integer>();
 			}
-			list.add((String)entry.getKey());
+			fChanges.put((String)entry.getKey(), i);
+		}
+		fState = 0;
+	}
+
+	/**
+	 * Stores the state to the file. The changes are appended to the file the
+	 * state was loaded from, which is rewritten if needed.
+	 */
+	public void store(File file) throws IOException{
+		boolean append = !fNeedsRewrite && file.equals(fFile) && file.length() == fFileLength
+				&& fAppendedRecords + (fPending != null ? fPending.size() : 0) <= Math.max(MIN_COMPACT_RECORDS, fTableSize / 2);
+		if(append){
+			if(fPending == null || fPending.isEmpty())
+				return;
+			DataOutputStream oStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+			try {
+				for (Entry<String, Integer> entry : fPending.entrySet()) {
+					writeRecord(oStream, entry.getKey(), entry.getValue().intValue());
+				}
+			} finally {
+				oStream.close();
+			}
+			fAppendedRecords += fPending.size();
+			fFileLength = file.length();
+			fPending.clear();
+			return;
 		}
 
-		//TODO: trim lists
-		if(map.size() != 0){
-			fStateToPathListMap = map;
-			fPathToStateProps = props;
+		File tmp = new File(file.getPath() + ".tmp"); //$NON-NLS-1$
+		OutputStream oStream = new FileOutputStream(tmp);
+		try {
+			store(oStream);
+		} finally {
+			oStream.close();
 		}
-		fState = 0;
+		// The state is kept in memory until the file is replaced
+		if(!tmp.renameTo(file)){
+			file.delete();
+			if(!tmp.renameTo(file)){
+				tmp.delete();
+				throw new IOException("failed to write build state: " + file); //$NON-NLS-1$
+			}
+		}
+		load(file);
 	}
 
-	public void store(OutputStream oStream) throws IOException{
-		if(fPathToStateProps != null)
-			fPathToStateProps.store(oStream, ""); //$NON-NLS-1$
-//		Properties props = new Properties();
-//		store(props);
-//		props.store(oStream, "");
-	}
-
-//	public void store(Properties props){
-//		if(fStateToPathListMap == null)
-//			return;
-//
-//		for(Iterator iter = fStateToPathListMap.entrySet().iterator(); iter.hasNext();){
-//			Map.Entry entry = (Map.Entry)iter.next();
-//			String propValue = stateToString((Integer)entry.getKey());
-//			List list = (List)entry.getValue();
-//			for(int i = 0; i < list.size(); i++){
-//				props.setProperty((String)list.get(i), propValue);
-//			}
-//		}
-//	}
+	/**
+	 * Writes the state in the binary format
+	 */
+	public void store(OutputStream stream) throws IOException{
+		SortedMap<String, Integer> map = new TreeMap<String, Integer>();
+		if(fTable != null){
+			for(int i = 0; i < fTableSize; i++){
+				int offset = getRecordOffset(i);
+				map.put(getRecordPath(offset), new Integer(getRecordState(offset)));
+			}
+		}
+		if(fChanges != null){
+			for (Entry<String, Integer> entry : fChanges.entrySet()) {
+				if(entry.getValue().equals(NONE_STATE))
+					map.remove(entry.getKey());
+				else
+					map.put(entry.getKey(), entry.getValue());
+			}
+		}
+
+		List<byte[]> paths = new ArrayList<byte[]>(map.size());
+		int offset = HEADER_SIZE + map.size() * 4;
+		int offsets[] = new int[map.size()];
+		for (String str : map.keySet()) {
+			byte bytes[] = str.getBytes(UTF8);
+			if(bytes.length > MAX_PATH_LENGTH)
+				throw new IOException("path too long: " + str); //$NON-NLS-1$
+			offsets[paths.size()] = offset;
+			paths.add(bytes);
+			offset += 2 + bytes.length + 1;
+		}
+
+		DataOutputStream oStream = new DataOutputStream(new BufferedOutputStream(stream));
+		oStream.writeInt(MAGIC);
+		oStream.writeInt(VERSION);
+		oStream.writeInt(paths.size());
+		oStream.writeInt(offset);
+		for (int o : offsets) {
+			oStream.writeInt(o);
+		}
+		int i = 0;
+		for (Integer state : map.values()) {
+			byte bytes[] = paths.get(i++);
+			oStream.writeShort(bytes.length);
+			oStream.write(bytes);
+			oStream.writeByte(state.intValue());
+		}
+		oStream.flush();
+	}
+
+	private static void writeRecord(DataOutputStream oStream, String str, int state) throws IOException{
+		byte bytes[] = str.getBytes(UTF8);
+		if(bytes.length > MAX_PATH_LENGTH)
+			throw new IOException("path too long: " + str); //$NON-NLS-1$
+		oStream.writeShort(bytes.length);
+		oStream.write(bytes);
+		oStream.writeByte(state);
+	}
 
 	private Integer stateToInt(String state){
 		try {
@@ -199,8 +443,14 @@ public class ConfigurationBuildState implements IConfigurationBuildState {
 	}
 
 	private void clear(){
-		fPathToStateProps = null;
-		fStateToPathListMap = null;
+		fTable = null;
+		fTableSize = 0;
+		fChanges = null;
+		fPending = null;
+		fFile = null;
+		fFileLength = 0;
+		fAppendedRecords = 0;
+		fNeedsRewrite = true;
 	}
 
 	@Override
@@ -213,6 +463,11 @@ public class ConfigurationBuildState implements IConfigurationBuildState {
 		return fProject;
 	}
 
+	@Override
+	public ContentFingerprints getContentFingerprints() {
+		return fFingerprints;
+	}
+
 	public boolean exists(){
 		return fState == 0;
 	}
@@ -0,0 +1,331 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Obeo - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.cdt.managedbuilder.internal.buildmodel;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.cdt.managedbuilder.buildmodel.IBuildCommand;
+import org.eclipse.cdt.managedbuilder.buildmodel.IBuildDescription;
+import org.eclipse.cdt.managedbuilder.buildmodel.IBuildResource;
+import org.eclipse.cdt.managedbuilder.buildmodel.IBuildStep;
+import org.eclipse.cdt.managedbuilder.core.ManagedBuilderCorePlugin;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * This class keeps a fingerprint of the inputs and command lines of each step
+ * as of the last successful build, so that steps whose inputs are byte-identical
+ * are not rebuilt even if their resources were touched.
+ *
+ * The content hash of each file is cached together with its size and
+ * modification time, so that unchanged files are not read again. The hash of a
+ * file modified within the timestamp resolution of the file system is not cached,
+ * as the file could be rewritten with the same size and time.
+ *
+ * NOTE: This class is subject to change and discuss,
+ * and is currently available in experimental mode only
+ */
+public class ContentFingerprints {
+	private static final String FILE_PREFIX = "file:"; //$NON-NLS-1$
+	private static final String STEP_PREFIX = "step:"; //$NON-NLS-1$
+	private static final String SEPARATOR = ","; //$NON-NLS-1$
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String BASE_DIR = "<base>"; //$NON-NLS-1$
+	/** Coarsest modification time resolution of the file systems, the one of FAT */
+	private static final long TIMESTAMP_RESOLUTION = 2000;
+
+	private static class FileStamp {
+		long fModified;
+		long fSize;
+		String fHash;
+
+		FileStamp(long modified, long size, String hash){
+			fModified = modified;
+			fSize = size;
+			fHash = hash;
+		}
+	}
+
+	private Map<String, FileStamp> fLocationToStampMap = new HashMap<String, FileStamp>();
+	private Map<String, String> fKeyToFingerprintMap = new HashMap<String, String>();
+	private boolean fIsDirty;
+
+	public ContentFingerprints() {
+		this(0);
+	}
+
+	/**
+	 * @param maxStamps maximum number of file hashes kept, the least recently used
+	 *    ones are dropped beyond it. 0 for no limit.
+	 */
+	public ContentFingerprints(final int maxStamps) {
+		if(maxStamps > 0){
+			fLocationToStampMap = new LinkedHashMap<String, FileStamp>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Entry<String, FileStamp> eldest) {
+					return size() > maxStamps;
+				}
+			};
+		}
+	}
+
+	/**
+	 * Returns true if the step was built successfully with the same command
+	 * lines and the same input contents, and its outputs still exist
+	 */
+	public synchronized boolean isUpToDate(IBuildStep step, IPath cwd) {
+		String key = ParallelBuilder.getStepKey(step);
+		if(key == null)
+			return false;
+		String stored = fKeyToFingerprintMap.get(key);
+		if(stored == null)
+			return false;
+		for (IBuildResource rc : step.getOutputResources()) {
+			IPath location = rc.getLocation();
+			if(location == null || !location.toFile().exists())
+				return false;
+		}
+		return stored.equals(computeFingerprint(step, cwd, null));
+	}
+
+	/**
+	 * Forgets the fingerprint of a step which is going to be rebuilt, so that
+	 * it is not considered up to date if the build fails
+	 */
+	public synchronized void invalidate(IBuildStep step) {
+		String key = ParallelBuilder.getStepKey(step);
+		if(key != null && fKeyToFingerprintMap.remove(key) != null)
+			fIsDirty = true;
+	}
+
+	/**
+	 * Records the fingerprints of all the steps of a successfully built description.
+	 * The cached hashes of files which are not inputs of these steps are dropped.
+	 */
+	public synchronized void update(IBuildDescription des) {
+		IPath cwd = des.getDefaultBuildDirLocation();
+		Set<String> usedLocations = new HashSet<String>();
+		for (IBuildStep step : des.getSteps()) {
+			if(step == des.getInputStep() || step == des.getOutputStep() || step.isRemoved())
+				continue;
+			String key = ParallelBuilder.getStepKey(step);
+			if(key == null)
+				continue;
+			String fingerprint = computeFingerprint(step, cwd, usedLocations);
+			if(fingerprint != null)
+				fKeyToFingerprintMap.put(key, fingerprint);
+			else
+				fKeyToFingerprintMap.remove(key);
+		}
+		fLocationToStampMap.keySet().retainAll(usedLocations);
+		fIsDirty = true;
+	}
+
+	/**
+	 * Forgets all fingerprints
+	 */
+	public synchronized void clear() {
+		if(!fKeyToFingerprintMap.isEmpty() || !fLocationToStampMap.isEmpty())
+			fIsDirty = true;
+		fKeyToFingerprintMap.clear();
+		fLocationToStampMap.clear();
+	}
+
+	/**
+	 * Returns the hash of the command lines, environment and input contents of
+	 * the step, or null if an input can not be read
+	 * 
+	 * @param usedLocations if not null, the input locations are added to it
+	 */
+	protected String computeFingerprint(IBuildStep step, IPath cwd, Set<String> usedLocations) {
+		return computeFingerprint(step, cwd, usedLocations, null);
+	}
+
+	/**
+	 * Returns the hash of the command lines, environment and input contents of
+	 * the step, or null if an input can not be read
+	 *
+	 * @param usedLocations if not null, the input locations are added to it
+	 * @param baseDir if not null, the paths under this directory are hashed as relative
+	 *    paths, so that the copies of a tree at different locations have the same hash
+	 */
+	protected String computeFingerprint(IBuildStep step, IPath cwd, Set<String> usedLocations, String baseDir) {
+		MessageDigest digest = createDigest();
+		for (IBuildCommand cmd : step.getCommands(cwd, null, null, true)) {
+			update(digest, relativize(cmd.getCommand().toString(), baseDir));
+			for (String arg : cmd.getArgs()) {
+				update(digest, relativize(arg, baseDir));
+			}
+			Map<String, String> env = cmd.getEnvironment();
+			if(env != null){
+				for (Entry<String, String> entry : new TreeMap<String, String>(env).entrySet()) {
+					update(digest, entry.getKey() + '=' + relativize(entry.getValue(), baseDir));
+				}
+			}
+		}
+
+		IBuildResource[] inputs = step.getInputResources();
+		String[] locations = new String[inputs.length];
+		for (int i = 0; i < inputs.length; i++) {
+			IPath location = inputs[i].getLocation();
+			if(location == null)
+				return null;
+			locations[i] = location.toOSString();
+		}
+		Arrays.sort(locations);
+		if(usedLocations != null)
+			usedLocations.addAll(Arrays.asList(locations));
+		for (String location : locations) {
+			String hash = getFileHash(location);
+			if(hash == null)
+				return null;
+			update(digest, relativize(location, baseDir));
+			update(digest, hash);
+		}
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Returns the content hash of a file, or null if it can not be read
+	 */
+	protected String getFileHash(String location) {
+		File file = new File(location);
+		long modified = file.lastModified();
+		long size = file.length();
+		if(modified == 0)
+			return null;
+		FileStamp stamp = fLocationToStampMap.get(location);
+		if(stamp != null && stamp.fModified == modified && stamp.fSize == size)
+			return stamp.fHash;
+
+		MessageDigest digest = createDigest();
+		try {
+			InputStream iStream = new FileInputStream(file);
+			try {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int read;
+				while((read = iStream.read(buffer)) > 0){
+					digest.update(buffer, 0, read);
+				}
+			} finally {
+				iStream.close();
+			}
+		} catch (IOException e) {
+			return null;
+		}
+		String hash = toHex(digest.digest());
+		if(System.currentTimeMillis() - modified > TIMESTAMP_RESOLUTION){
+			fLocationToStampMap.put(location, new FileStamp(modified, size, hash));
+			fIsDirty = true;
+		} else if(fLocationToStampMap.remove(location) != null){
+			fIsDirty = true;
+		}
+		return hash;
+	}
+
+	public synchronized boolean isDirty() {
+		return fIsDirty;
+	}
+
+	public synchronized void load(InputStream iStream) throws IOException {
+		Properties props = new Properties();
+		props.load(iStream);
+		for (@SuppressWarnings("rawtypes") Entry entry : props.entrySet()) {
+			String key = (String)entry.getKey();
+			String value = (String)entry.getValue();
+			if(key.startsWith(STEP_PREFIX)){
+				fKeyToFingerprintMap.put(key.substring(STEP_PREFIX.length()), value);
+			} else if(key.startsWith(FILE_PREFIX)){
+				String[] values = value.split(SEPARATOR);
+				if(values.length != 3)
+					continue;
+				try {
+					fLocationToStampMap.put(key.substring(FILE_PREFIX.length()),
+							new FileStamp(Long.parseLong(values[0]), Long.parseLong(values[1]), values[2]));
+				} catch (NumberFormatException e) {
+					ManagedBuilderCorePlugin.log(e);
+				}
+			}
+		}
+	}
+
+	public synchronized void store(OutputStream oStream) throws IOException {
+		Properties props = new Properties();
+		for (Entry<String, String> entry : fKeyToFingerprintMap.entrySet()) {
+			props.setProperty(STEP_PREFIX + entry.getKey(), entry.getValue());
+		}
+		for (Entry<String, FileStamp> entry : fLocationToStampMap.entrySet()) {
+			FileStamp stamp = entry.getValue();
+			props.setProperty(FILE_PREFIX + entry.getKey(),
+					stamp.fModified + SEPARATOR + stamp.fSize + SEPARATOR + stamp.fHash);
+		}
+		props.store(oStream, ""); //$NON-NLS-1$
+		fIsDirty = false;
+	}
+
+	static String relativize(String value, String baseDir) {
+		if(baseDir == null || value.indexOf(baseDir) == -1)
+			return value;
+		return value.replace(baseDir, BASE_DIR);
+	}
+
+	/**
+	 * Replaces the base directory placeholder of a relativized path
+	 */
+	static String resolve(String value, String baseDir) {
+		if(baseDir == null || !value.startsWith(BASE_DIR))
+			return value;
+		return baseDir + value.substring(BASE_DIR.length());
+	}
+
+	static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("MD5"); //$NON-NLS-1$
+		} catch (NoSuchAlgorithmException e) {
+			// MD5 is available on every Java platform
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static void update(MessageDigest digest, String value) {
+		try {
+			digest.update(value.getBytes("UTF-8")); //$NON-NLS-1$
+		} catch (IOException e) {
+			// UTF-8 is available on every Java platform
+		}
+		digest.update((byte)0);
+	}
+
+	static String toHex(byte[] bytes) {
+		StringBuilder buf = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			buf.append(Character.forDigit((b >> 4) & 0xf, 16));
+			buf.append(Character.forDigit(b & 0xf, 16));
+		}
+		return buf.toString();
+	}
+}
@@ -10,6 +10,9 @@
  *******************************************************************************/
 package org.eclipse.cdt.managedbuilder.internal.buildmodel;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.eclipse.cdt.managedbuilder.buildmodel.BuildDescriptionManager;
 import org.eclipse.cdt.managedbuilder.buildmodel.IBuildDescription;
 import org.eclipse.cdt.managedbuilder.buildmodel.IBuildDescriptionFactory;
@@ -18,7 +21,12 @@ import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.runtime.CoreException;
 
 public class DefaultBuildDescriptionFactory implements IBuildDescriptionFactory {
+	/** System property enabling the reuse of the build descriptions between the internal builds */
+	public static final String REUSE_PROPERTY = "org.eclipse.cdt.managedbuilder.internalBuilder.reuseDescription"; //$NON-NLS-1$
+
 	static private DefaultBuildDescriptionFactory fInstance;
+	/** Descriptions of the last successful builds, by project name and configuration id */
+	private Map<String, BuildDescription> fLastDescriptions = new ConcurrentHashMap<String, BuildDescription>();
 	protected DefaultBuildDescriptionFactory(){
 
 	}
@@ -46,6 +54,34 @@ public class DefaultBuildDescriptionFactory implements IBuildDescriptionFactory
 		return info;
 	}
 
+	/**
+	 * Returns the description of a build, updating the description of the last successful
+	 * build of the configuration with the delta if possible. The description is taken back
+	 * from the factory until it is given back by {@link #buildSucceeded(IBuildDescription)}.
+	 */
+	public IBuildDescription getBuildDescription(IConfiguration cfg, IConfigurationBuildState bs, IResourceDelta delta, int flags) throws CoreException {
+		if(Boolean.getBoolean(REUSE_PROPERTY)){
+			BuildDescription des = fLastDescriptions.remove(getKey(cfg));
+			if(des != null && des.getConfiguration() == cfg && des.update(bs, delta, flags))
+				return des;
+		}
+		return createBuildDescription(cfg, bs, delta, flags);
+	}
+
+	/**
+	 * Keeps the description of a successful build, to be updated for the next build
+	 * of its configuration
+	 */
+	public void buildSucceeded(IBuildDescription des){
+		if(Boolean.getBoolean(REUSE_PROPERTY) && des instanceof BuildDescription
+				&& ((BuildDescription)des).isReusable())
+			fLastDescriptions.put(getKey(des.getConfiguration()), (BuildDescription)des);
+	}
+
+	private static String getKey(IConfiguration cfg){
+		return cfg.getOwner().getProject().getName() + '/' + cfg.getId();
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.cdt.managedbuilder.builddescription.IBuildDescriptionFactory#getSupportedMethods()
 	 */
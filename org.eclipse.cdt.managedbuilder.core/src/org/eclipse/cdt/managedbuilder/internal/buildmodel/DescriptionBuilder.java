@@ -52,6 +52,8 @@ public class DescriptionBuilder implements IBuildModelBuilder {
 	private int fNumCommands = -1;
 	private GenDirInfo fDir;
 	private IResourceRebuildStateContainer fRebuildStateContainer;
+	private BuildTimeline fTimeline = new BuildTimeline();
+	private BuildDurationHistory fHistory;
 
 	private class BuildStepVisitor implements IStepVisitor{
 		private OutputStream fOut;
@@ -174,12 +176,29 @@ public class DescriptionBuilder implements IBuildModelBuilder {
 
 		monitor.done();
 
+		if(fHistory != null)
+			fHistory.record(fTimeline);
+
 		if(status == STATUS_OK)
 			clearRebuildStates();
 
 		return status;
 	}
 
+	/**
+	 * Sets the history of the step durations updated with the build. May be null.
+	 */
+	public void setDurationHistory(BuildDurationHistory history){
+		fHistory = history;
+	}
+
+	/**
+	 * Returns the timeline of the steps and commands executed by the build
+	 */
+	public BuildTimeline getTimeline(){
+		return fTimeline;
+	}
+
 	public int getNumCommands() {
 		if(fNumCommands == -1){
 			fNumCommands = 0;
@@ -200,6 +219,7 @@ public class DescriptionBuilder implements IBuildModelBuilder {
 		StepBuilder b = fStepToStepBuilderMap.get(step);
 		if(b == null){
 			b = new StepBuilder(step, fCWD, fResumeOnErrs, fDir, fRebuildStateContainer);
+			b.setTimeline(fTimeline);
 			fStepToStepBuilderMap.put(step, b);
 		}
 		return b;
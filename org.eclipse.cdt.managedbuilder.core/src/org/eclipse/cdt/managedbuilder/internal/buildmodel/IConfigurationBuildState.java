@@ -17,4 +17,9 @@ public interface IConfigurationBuildState extends IResourceRebuildStateContainer
 	String getConfigurationId();
 	
 	IProject getProject();
+	
+	/**
+	 * Returns the fingerprints of the steps as of the last successful build
+	 */
+	ContentFingerprints getContentFingerprints();
 }
@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.eclipse.cdt.managedbuilder.internal.buildmodel;
 
+import java.io.File;
+
 import org.eclipse.core.resources.IProject;
 
 public interface IProjectBuildState extends IRebuildState {
@@ -20,4 +22,15 @@ public interface IProjectBuildState extends IRebuildState {
 	void removeConfigurationBuildState(String id);
 	
 	IProject getProject();
+	
+	/**
+	 * Returns the step durations recorded for the given configuration
+	 */
+	BuildDurationHistory getDurationHistory(String id);
+
+	/**
+	 * Returns the file keeping the model of the makefiles generated for the given
+	 * configuration, or null if it has no build state and create is false
+	 */
+	File getMakefileModelFile(String id, boolean create);
 }
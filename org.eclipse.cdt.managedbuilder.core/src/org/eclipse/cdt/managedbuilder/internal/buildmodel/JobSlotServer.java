@@ -0,0 +1,390 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Obeo - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.cdt.managedbuilder.internal.buildmodel;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.cdt.managedbuilder.core.ManagedBuilderCorePlugin;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.Platform;
+
+/**
+ * Workspace-wide pool of job slots bounding the number of build processes run at
+ * the same time by all the builds: the processes of the internal builder, the
+ * external make runs and the autotools configure runs each hold a slot while they run.
+ * <p>
+ * The pool is enabled by setting the system property {@value #JOB_SLOTS_PROPERTY}
+ * to the number of slots. By default each build only bounds its own processes.
+ * </p>
+ * <p>
+ * If the system property {@value #FIFO_PROPERTY} is {@code true}, the slots are the
+ * tokens of a GNU make jobserver FIFO, which is passed to the external make runs
+ * through {@code MAKEFLAGS} so that their jobs take slots from the same pool.
+ * This requires GNU make 4.4 or later, older versions reject the FIFO jobserver.
+ * </p>
+ * <p>
+ * A jobserver FIFO can also be shared by several processes: one of them creates it with
+ * {@link #createJobserver(int)} and the others take their slots from it once they
+ * called {@link #join(String, int)}.
+ * </p>
+ */
+public final class JobSlotServer {
+	/** System property giving the number of job slots shared by all the builds */
+	public static final String JOB_SLOTS_PROPERTY = "org.eclipse.cdt.managedbuilder.jobSlots"; //$NON-NLS-1$
+	/** System property enabling the GNU make jobserver FIFO */
+	public static final String FIFO_PROPERTY = "org.eclipse.cdt.managedbuilder.jobSlots.fifo"; //$NON-NLS-1$
+
+	private static final String MAKEFLAGS = "MAKEFLAGS"; //$NON-NLS-1$
+	/** Token written to the FIFO, the one used by GNU make */
+	private static final int TOKEN = '+';
+	/** Delay between two checks of the cancellation while waiting for a slot */
+	private static final long ACQUIRE_RETRY_MILLIS = 50;
+	/** Delay after which a token read from the FIFO and not taken is given back to the make runs */
+	private static final long UNCLAIMED_TOKEN_MILLIS = 4 * ACQUIRE_RETRY_MILLIS;
+
+	private static JobSlotServer fDefault;
+	private static boolean fInitialized;
+
+	private final int fSlots;
+	private final Semaphore fSemaphore;
+	private final File fFifo;
+	private final RandomAccessFile fFifoFile;
+	private final FileInputStream fFifoInput;
+	private final Object fReadLock = new Object();
+	/** Tokens read from the FIFO and not taken yet, guarded by fReadLock */
+	private int fReadTokens;
+	/** Whether a slot is wanted, the reader then reads a token from the FIFO, guarded by fReadLock */
+	private boolean fTokenWanted;
+
+	private JobSlotServer(int slots, File fifo, RandomAccessFile fifoFile, boolean writeTokens) throws IOException {
+		fSlots = slots;
+		fFifo = fifo;
+		fFifoFile = fifoFile;
+		if (fifoFile != null) {
+			fSemaphore = null;
+			fFifoInput = new FileInputStream(fifoFile.getFD());
+			for (int i = 0; writeTokens && i < slots; i++) {
+				fifoFile.write(TOKEN);
+			}
+			Thread reader = new Thread("CDT job slots reader") { //$NON-NLS-1$
+				@Override
+				public void run() {
+					readTokens();
+				}
+			};
+			reader.setDaemon(true);
+			reader.start();
+		} else {
+			fSemaphore = new Semaphore(slots);
+			fFifoInput = null;
+		}
+	}
+
+	/**
+	 * Returns the job slot server shared by all the builds, or {@code null} if the
+	 * number of concurrent build processes is not bounded across the builds.
+	 */
+	public static synchronized JobSlotServer getDefault() {
+		if (!fInitialized) {
+			fInitialized = true;
+			fDefault = create();
+		}
+		return fDefault;
+	}
+
+	private static JobSlotServer create() {
+		int slots;
+		try {
+			slots = Integer.parseInt(System.getProperty(JOB_SLOTS_PROPERTY, "0").trim()); //$NON-NLS-1$
+		} catch (NumberFormatException e) {
+			ManagedBuilderCorePlugin.log(e);
+			return null;
+		}
+		if (slots <= 0)
+			return null;
+
+		if (Boolean.getBoolean(FIFO_PROPERTY)) {
+			JobSlotServer jobserver = createJobserver(slots);
+			if (jobserver != null)
+				return jobserver;
+		}
+		try {
+			return new JobSlotServer(slots, null, null, false);
+		} catch (IOException e) {
+			// not thrown without a FIFO
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a GNU make jobserver FIFO holding the given number of slots. The FIFO
+	 * is deleted when this process exits.
+	 *
+	 * @return the jobserver, or {@code null} if the FIFO could not be created
+	 */
+	public static JobSlotServer createJobserver(int slots) {
+		if (Platform.OS_WIN32.equals(Platform.getOS()))
+			return null;
+		try {
+			File fifo = createFifo();
+			if (fifo != null) {
+				// Opened for reading and writing so that the open neither blocks nor
+				// ends the input of the FIFO when the last make run exits
+				return new JobSlotServer(slots, fifo, new RandomAccessFile(fifo, "rw"), true); //$NON-NLS-1$
+			}
+		} catch (IOException e) {
+			ManagedBuilderCorePlugin.log(e);
+		}
+		return null;
+	}
+
+	/**
+	 * Makes the builds of this process take their job slots from the jobserver FIFO
+	 * created by another process with {@link #createJobserver(int)}, in place of the
+	 * pool configured by the system properties.
+	 *
+	 * @param fifo Path of the jobserver FIFO, see {@link #getJobserverPath()}
+	 * @param slots Number of slots of the jobserver
+	 * @return whether the FIFO could be opened
+	 */
+	public static synchronized boolean join(String fifo, int slots) {
+		File file = new File(fifo);
+		try {
+			fDefault = new JobSlotServer(slots, file, new RandomAccessFile(file, "rw"), false); //$NON-NLS-1$
+			fInitialized = true;
+			return true;
+		} catch (IOException e) {
+			ManagedBuilderCorePlugin.log(e);
+			return false;
+		}
+	}
+
+	/**
+	 * Creates the jobserver FIFO in the temporary directory.
+	 *
+	 * @return the FIFO, or {@code null} if it could not be created
+	 */
+	private static File createFifo() throws IOException {
+		File fifo = File.createTempFile("cdtjobs", ".fifo"); //$NON-NLS-1$ //$NON-NLS-2$
+		fifo.delete();
+		try {
+			Process mkfifo = new ProcessBuilder("mkfifo", "-m", "600", fifo.getAbsolutePath()).start(); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			mkfifo.getOutputStream().close();
+			if (mkfifo.waitFor() != 0)
+				return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		fifo.deleteOnExit();
+		return fifo;
+	}
+
+	/**
+	 * Returns the number of job slots
+	 */
+	public int getSlots() {
+		return fSlots;
+	}
+
+	/**
+	 * Reads the tokens of the FIFO when slots are wanted. A read blocks until a make run
+	 * gives back a token, so it is done by this thread only, without holding the lock.
+	 */
+	private void readTokens() {
+		try {
+			while (true) {
+				synchronized (fReadLock) {
+					while (!fTokenWanted)
+						fReadLock.wait();
+				}
+				if (fFifoInput.read() == -1)
+					return;
+				boolean unclaimed;
+				synchronized (fReadLock) {
+					fReadTokens++;
+					fTokenWanted = false;
+					fReadLock.notifyAll();
+					// Give the token back if nobody takes it, the make runs would miss it
+					fReadLock.wait(UNCLAIMED_TOKEN_MILLIS);
+					unclaimed = fReadTokens > 0 && !fTokenWanted;
+					if (unclaimed)
+						fReadTokens--;
+				}
+				if (unclaimed)
+					fFifoFile.write(TOKEN);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			ManagedBuilderCorePlugin.log(e);
+		}
+	}
+
+	/**
+	 * Takes a job slot if one is free. This never blocks.
+	 *
+	 * @return true if a slot was taken, which must be given back with {@link #release()}
+	 */
+	public boolean tryAcquire() {
+		if (fSemaphore != null)
+			return fSemaphore.tryAcquire();
+
+		synchronized (fReadLock) {
+			if (fReadTokens > 0) {
+				fReadTokens--;
+				return true;
+			}
+			fTokenWanted = true;
+			fReadLock.notifyAll();
+			return false;
+		}
+	}
+
+	/**
+	 * Takes a job slot, waiting for one to be free.
+	 *
+	 * @param monitor Progress monitor checked for cancellation while waiting, or null
+	 * @return true if a slot was taken, which must be given back with {@link #release()},
+	 *    false if the monitor was canceled
+	 */
+	public boolean acquire(IProgressMonitor monitor) {
+		while (monitor == null || !monitor.isCanceled()) {
+			try {
+				if (fSemaphore != null) {
+					if (fSemaphore.tryAcquire(ACQUIRE_RETRY_MILLIS, TimeUnit.MILLISECONDS))
+						return true;
+				} else {
+					synchronized (fReadLock) {
+						if (tryAcquire())
+							return true;
+						fReadLock.wait(ACQUIRE_RETRY_MILLIS);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gives back a job slot taken by {@link #tryAcquire()} or {@link #acquire(IProgressMonitor)}
+	 */
+	public void release() {
+		if (fSemaphore != null) {
+			fSemaphore.release();
+			return;
+		}
+
+		try {
+			// Writes of a single byte to a FIFO are atomic, no need to lock
+			fFifoFile.write(TOKEN);
+		} catch (IOException e) {
+			ManagedBuilderCorePlugin.log(e);
+		}
+	}
+
+	/**
+	 * Returns the path of the jobserver FIFO, or {@code null} if the slots are not the
+	 * tokens of a FIFO
+	 */
+	public String getJobserverPath() {
+		return fFifo != null ? fFifo.getAbsolutePath() : null;
+	}
+
+	/**
+	 * Returns whether make runs can take their job slots from this server
+	 */
+	public boolean isMakeJobserver() {
+		return fFifo != null;
+	}
+
+	/**
+	 * Returns whether a build command runs GNU make, the only builder reading the
+	 * jobserver from {@code MAKEFLAGS}
+	 */
+	public static boolean isMakeCommand(IPath command) {
+		String name = command.lastSegment();
+		if (name == null)
+			return false;
+		if (name.toLowerCase().endsWith(".exe")) //$NON-NLS-1$
+			name = name.substring(0, name.length() - 4);
+		return name.equals("make") || name.equals("gmake") || name.equals("gnumake") || name.endsWith("-make"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+
+	/**
+	 * Prepares a parallel make run to take its jobs from this server: the {@code -j}
+	 * options are removed from the arguments and the jobserver is added to {@code MAKEFLAGS}.
+	 * The make run itself must hold a job slot, as GNU make runs its first job without
+	 * taking a token.
+	 *
+	 * @param args Arguments of the make run
+	 * @param env Environment of the make run, updated if the arguments are changed
+	 * @return the arguments to run make with, unchanged if the make run is not parallel
+	 *    or the server is not a make jobserver
+	 */
+	public String[] prepareMake(String[] args, Map<String, String> env) {
+		if (fFifo == null)
+			return args;
+
+		List<String> result = new ArrayList<String>(args.length);
+		boolean parallel = false;
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (isJobsOption(arg)) {
+				parallel = true;
+				// "-j N" or "--jobs N"
+				if ((arg.equals("-j") || arg.equals("--jobs")) && i + 1 < args.length && isNumber(args[i + 1])) //$NON-NLS-1$ //$NON-NLS-2$
+					i++;
+				continue;
+			}
+			result.add(arg);
+		}
+		if (!parallel)
+			return args;
+
+		String makeFlags = env.get(MAKEFLAGS);
+		String jobserver = "-j --jobserver-auth=fifo:" + fFifo.getAbsolutePath(); //$NON-NLS-1$
+		env.put(MAKEFLAGS, makeFlags == null || makeFlags.length() == 0 ? jobserver : makeFlags + ' ' + jobserver);
+		return result.toArray(new String[result.size()]);
+	}
+
+	private static boolean isJobsOption(String arg) {
+		if (arg.startsWith("-j")) //$NON-NLS-1$
+			return isNumber(arg.substring(2)) || arg.length() == 2;
+		if (arg.equals("--jobs")) //$NON-NLS-1$
+			return true;
+		if (arg.startsWith("--jobs=")) //$NON-NLS-1$
+			return isNumber(arg.substring(7));
+		return false;
+	}
+
+	private static boolean isNumber(String str) {
+		if (str.length() == 0)
+			return false;
+		for (int i = 0; i < str.length(); i++) {
+			if (!Character.isDigit(str.charAt(i)))
+				return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,483 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Obeo - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.cdt.managedbuilder.internal.buildmodel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.cdt.managedbuilder.buildmodel.IBuildCommand;
+import org.eclipse.cdt.managedbuilder.buildmodel.IBuildResource;
+import org.eclipse.cdt.managedbuilder.buildmodel.IBuildStep;
+import org.eclipse.cdt.managedbuilder.core.ManagedBuilderCorePlugin;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+/**
+ * This class implements a content-addressed cache of the outputs of the build
+ * steps, shared by all the projects and workspaces using the same directory.
+ *
+ * The key of a step combines its command lines, environment, the contents of
+ * its inputs and the size and modification time of the tools it runs. The
+ * paths under the project directory are hashed relative to it, so that the
+ * checkouts of a project at different locations share their entries.
+ *
+ * The inputs known to the build description do not include all the headers a
+ * source includes, so the entry of a step writing a dependency file is also
+ * keyed on the contents of the headers listed in the dependency file of the
+ * build that stored it. These headers are kept in a manifest stored under the
+ * key of the step, which is replaced by the last stored build.
+ *
+ * On a hit the outputs are copied back from the cache instead of running the
+ * tools. The least recently used entries are evicted when the cache exceeds
+ * its maximum size.
+ *
+ * The cache is enabled by setting the {@link #DIRECTORY_PROPERTY} system property.
+ *
+ * NOTE: This class is subject to change and discuss,
+ * and is currently available in experimental mode only
+ */
+public class ObjectCache {
+	/** System property giving the cache directory. The cache is disabled if not set. */
+	public static final String DIRECTORY_PROPERTY = "org.eclipse.cdt.managedbuilder.internalBuilder.objectCache"; //$NON-NLS-1$
+	/** System property giving the maximum size of the cache in megabytes */
+	public static final String MAX_SIZE_PROPERTY = "org.eclipse.cdt.managedbuilder.internalBuilder.objectCache.maxSize"; //$NON-NLS-1$
+	public static final long DEFAULT_MAX_SIZE = 1024L * 1024 * 1024;
+
+	private static final String TMP_DIR = "tmp"; //$NON-NLS-1$
+	private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+	private static final String PATH_VARIABLE = "PATH"; //$NON-NLS-1$
+	private static final String HEADERS_FILE = "headers"; //$NON-NLS-1$
+	/** Maximum number of file hashes kept between the lookups */
+	private static final int MAX_FILE_HASHES = 100000;
+	/** Eviction removes entries until the cache is below this ratio of its maximum size */
+	private static final double EVICTION_RATIO = 0.9;
+
+	private static ObjectCache fDefault;
+	private static boolean fDefaultInitialized;
+
+	private File fDirectory;
+	private long fMaxSize;
+	private long fSize = -1;
+	private ContentFingerprints fHashes = new ContentFingerprints(MAX_FILE_HASHES);
+	private AtomicLong fHits = new AtomicLong();
+	private AtomicLong fMisses = new AtomicLong();
+
+	public ObjectCache(File directory, long maxSize) {
+		fDirectory = directory;
+		fMaxSize = maxSize;
+	}
+
+	/**
+	 * Returns the cache configured by the system properties, or null if the
+	 * cache is disabled
+	 */
+	public static synchronized ObjectCache getDefault() {
+		if(!fDefaultInitialized){
+			fDefaultInitialized = true;
+			String directory = System.getProperty(DIRECTORY_PROPERTY);
+			if(directory != null && directory.length() != 0){
+				long maxSize = DEFAULT_MAX_SIZE;
+				String size = System.getProperty(MAX_SIZE_PROPERTY);
+				if(size != null){
+					try {
+						maxSize = Long.parseLong(size) * 1024 * 1024;
+					} catch (NumberFormatException e) {
+						ManagedBuilderCorePlugin.log(e);
+					}
+				}
+				fDefault = new ObjectCache(new File(directory), maxSize);
+			}
+		}
+		return fDefault;
+	}
+
+	/**
+	 * Returns the key of the step, or null if the step can not be cached
+	 */
+	public String computeKey(IBuildStep step, IPath cwd) {
+		if(step == step.getBuildDescription().getInputStep()
+				|| step == step.getBuildDescription().getOutputStep())
+			return null;
+		IBuildResource[] outputs = step.getOutputResources();
+		if(outputs.length == 0)
+			return null;
+		for (IBuildResource output : outputs) {
+			if(output.getLocation() == null)
+				return null;
+		}
+
+		IPath baseDir = step.getBuildDescription().getConfiguration().getOwner().getProject().getLocation();
+		String fingerprint;
+		synchronized (fHashes) {
+			fingerprint = fHashes.computeFingerprint(step, cwd, null, baseDir != null ? baseDir.toOSString() : null);
+		}
+		if(fingerprint == null)
+			return null;
+
+		MessageDigest digest = ContentFingerprints.createDigest();
+		ContentFingerprints.update(digest, fingerprint);
+		for (IBuildCommand cmd : step.getCommands(cwd, null, null, true)) {
+			File tool = findTool(cmd);
+			if(tool == null)
+				return null;
+			ContentFingerprints.update(digest, tool.getAbsolutePath());
+			ContentFingerprints.update(digest, Long.toString(tool.length()));
+			ContentFingerprints.update(digest, Long.toString(tool.lastModified()));
+		}
+		return ContentFingerprints.toHex(digest.digest());
+	}
+
+	/**
+	 * Copies the cached outputs of the step to their locations
+	 *
+	 * @return true on a cache hit
+	 */
+	public boolean restore(String key, IBuildStep step) {
+		String entryKey = getEntryKey(key, step, readHeaders(key, step));
+		if(entryKey == null){
+			fMisses.incrementAndGet();
+			return false;
+		}
+		File entry = getEntry(entryKey);
+		IBuildResource[] outputs = step.getOutputResources();
+		try {
+			for (int i = 0; i < outputs.length; i++) {
+				if(!new File(entry, Integer.toString(i)).isFile()){
+					fMisses.incrementAndGet();
+					return false;
+				}
+			}
+			for (int i = 0; i < outputs.length; i++) {
+				File target = outputs[i].getLocation().toFile();
+				target.getParentFile().mkdirs();
+				File tmp = new File(target.getPath() + ".tmp"); //$NON-NLS-1$
+				Files.copy(new File(entry, Integer.toString(i)).toPath(), tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			// The entry may have been evicted meanwhile
+			fMisses.incrementAndGet();
+			return false;
+		}
+		// Keep the entry and its manifest as recently used
+		long now = System.currentTimeMillis();
+		entry.setLastModified(now);
+		if(!entryKey.equals(key))
+			getEntry(key).setLastModified(now);
+		fHits.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Copies the outputs of a successfully built step to the cache
+	 */
+	public void store(String key, IBuildStep step) {
+		long size = 0;
+		String entryKey = key;
+		IBuildResource depFile = getDependencyFile(step);
+		if(depFile != null){
+			try {
+				String[] headers = readDependencies(step, depFile.getLocation().toFile());
+				entryKey = getEntryKey(key, step, headers);
+				if(entryKey == null)
+					return;
+				size += writeHeaders(key, headers);
+			} catch (IOException e) {
+				if(DbgUtil.DEBUG)
+					DbgUtil.trace("failed to store the headers of cache entry " + key + ", error: " + e.getLocalizedMessage());	//$NON-NLS-1$	//$NON-NLS-2$
+				return;
+			}
+		}
+
+		File entry = getEntry(entryKey);
+		if(entry.exists())
+			return;
+
+		File tmp = new File(new File(fDirectory, TMP_DIR), entryKey + '.' + System.nanoTime());
+		IBuildResource[] outputs = step.getOutputResources();
+		try {
+			if(!tmp.mkdirs())
+				throw new IOException(tmp.toString());
+			for (int i = 0; i < outputs.length; i++) {
+				File output = outputs[i].getLocation().toFile();
+				Files.copy(output.toPath(), new File(tmp, Integer.toString(i)).toPath());
+				size += output.length();
+			}
+			entry.getParentFile().mkdirs();
+			if(!tmp.renameTo(entry)){
+				// Stored concurrently by another build
+				delete(tmp);
+				return;
+			}
+		} catch (IOException e) {
+			delete(tmp);
+			if(DbgUtil.DEBUG)
+				DbgUtil.trace("failed to store cache entry " + entryKey + ", error: " + e.getLocalizedMessage());	//$NON-NLS-1$	//$NON-NLS-2$
+			return;
+		}
+
+		synchronized (this) {
+			if(fSize < 0)
+				fSize = computeSize();
+			else
+				fSize += size;
+			if(fSize > fMaxSize)
+				evict();
+		}
+	}
+
+	/**
+	 * Returns the number of steps restored from the cache
+	 */
+	public long getHits() {
+		return fHits.get();
+	}
+
+	/**
+	 * Returns the number of cacheable steps which were not found in the cache
+	 */
+	public long getMisses() {
+		return fMisses.get();
+	}
+
+	public void resetStatistics() {
+		fHits.set(0);
+		fMisses.set(0);
+	}
+
+	private File getEntry(String key) {
+		return new File(new File(fDirectory, key.substring(0, 2)), key);
+	}
+
+	private static IBuildResource getDependencyFile(IBuildStep step) {
+		if(!(step instanceof BuildStep))
+			return null;
+		IBuildResource depFile = ((BuildStep)step).getDependencyFile();
+		return depFile != null && depFile.getLocation() != null ? depFile : null;
+	}
+
+	private static String getBaseDir(IBuildStep step) {
+		IPath baseDir = step.getBuildDescription().getConfiguration().getOwner().getProject().getLocation();
+		return baseDir != null ? baseDir.toOSString() : null;
+	}
+
+	/**
+	 * Returns the key of the entry of a step: the key of the step itself, combined
+	 * with the contents of the headers of the step if it writes a dependency file.
+	 *
+	 * @param headers headers of the step, relative to the project directory
+	 * @return the key of the entry, or null if the headers are unknown or can not be read
+	 */
+	private String getEntryKey(String key, IBuildStep step, String[] headers) {
+		if(getDependencyFile(step) == null)
+			return key;
+		if(headers == null)
+			return null;
+
+		String baseDir = getBaseDir(step);
+		MessageDigest digest = ContentFingerprints.createDigest();
+		ContentFingerprints.update(digest, key);
+		for (String header : headers) {
+			String hash;
+			synchronized (fHashes) {
+				hash = fHashes.getFileHash(ContentFingerprints.resolve(header, baseDir));
+			}
+			if(hash == null)
+				return null;
+			ContentFingerprints.update(digest, header);
+			ContentFingerprints.update(digest, hash);
+		}
+		return ContentFingerprints.toHex(digest.digest());
+	}
+
+	/**
+	 * Returns the headers of the manifest stored under the key of a step, or null
+	 */
+	private String[] readHeaders(String key, IBuildStep step) {
+		if(getDependencyFile(step) == null)
+			return null;
+		File file = new File(getEntry(key), HEADERS_FILE);
+		try {
+			List<String> lines = Files.readAllLines(file.toPath(), UTF8);
+			return lines.toArray(new String[lines.size()]);
+		} catch (IOException e) {
+			// no build of the step was stored
+			return null;
+		}
+	}
+
+	/**
+	 * Replaces the manifest stored under the key of a step
+	 *
+	 * @return the size of the manifest
+	 */
+	private long writeHeaders(String key, String[] headers) throws IOException {
+		File dir = getEntry(key);
+		dir.mkdirs();
+		File file = new File(dir, HEADERS_FILE);
+		File tmp = new File(dir, HEADERS_FILE + '.' + System.nanoTime());
+		Files.write(tmp.toPath(), Arrays.asList(headers), UTF8);
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return file.length();
+	}
+
+	/**
+	 * Returns the prerequisites of the first rule of the dependency file written
+	 * by a step, relative to the project directory when they are under it
+	 */
+	static String[] readDependencies(IBuildStep step, File depFile) throws IOException {
+		String content = new String(Files.readAllBytes(depFile.toPath()));
+		// Join the continuation lines and keep the first rule
+		content = content.replace("\\\r\n", " ").replace("\\\n", " "); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		int eol = content.indexOf('\n');
+		String rule = eol != -1 ? content.substring(0, eol) : content;
+		int colon = rule.indexOf(": "); //$NON-NLS-1$
+		if(colon == -1){
+			if(!rule.trim().endsWith(":")) //$NON-NLS-1$
+				throw new IOException("invalid dependency file: " + depFile); //$NON-NLS-1$
+			return new String[0];
+		}
+
+		IPath cwd = step.getBuildDescription().getDefaultBuildDirLocation();
+		String baseDir = getBaseDir(step);
+		Set<String> headers = new TreeSet<String>();
+		StringBuilder token = new StringBuilder();
+		for (int i = colon + 1; i <= rule.length(); i++) {
+			char c = i < rule.length() ? rule.charAt(i) : ' ';
+			if(c == '\\' && i + 1 < rule.length() && rule.charAt(i + 1) == ' '){
+				token.append(' ');
+				i++;
+			} else if(c == '$' && i + 1 < rule.length() && rule.charAt(i + 1) == '$'){
+				token.append('$');
+				i++;
+			} else if(Character.isWhitespace(c)){
+				if(token.length() != 0){
+					IPath path = new Path(token.toString());
+					if(!path.isAbsolute() && cwd != null)
+						path = cwd.append(path);
+					headers.add(ContentFingerprints.relativize(path.toOSString(), baseDir));
+					token.setLength(0);
+				}
+			} else {
+				token.append(c);
+			}
+		}
+		return headers.toArray(new String[headers.size()]);
+	}
+
+	private File[] getEntries() {
+		List<File> entries = new ArrayList<File>();
+		File[] buckets = fDirectory.listFiles();
+		if(buckets != null){
+			for (File bucket : buckets) {
+				if(bucket.getName().equals(TMP_DIR))
+					continue;
+				File[] children = bucket.listFiles();
+				if(children != null)
+					entries.addAll(Arrays.asList(children));
+			}
+		}
+		return entries.toArray(new File[entries.size()]);
+	}
+
+	private long computeSize() {
+		long size = 0;
+		for (File entry : getEntries()) {
+			size += sizeOf(entry);
+		}
+		return size;
+	}
+
+	private void evict() {
+		File[] entries = getEntries();
+		final long[] modified = new long[entries.length];
+		Integer[] order = new Integer[entries.length];
+		for (int i = 0; i < entries.length; i++) {
+			modified[i] = entries[i].lastModified();
+			order[i] = Integer.valueOf(i);
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				long m1 = modified[i1.intValue()];
+				long m2 = modified[i2.intValue()];
+				return m1 < m2 ? -1 : (m1 > m2 ? 1 : 0);
+			}
+		});
+
+		long target = (long)(fMaxSize * EVICTION_RATIO);
+		for (int i = 0; i < order.length && fSize > target; i++) {
+			File entry = entries[order[i].intValue()];
+			fSize -= sizeOf(entry);
+			delete(entry);
+		}
+	}
+
+	private static long sizeOf(File entry) {
+		long size = 0;
+		File[] files = entry.listFiles();
+		if(files != null){
+			for (File file : files) {
+				size += file.length();
+			}
+		}
+		return size;
+	}
+
+	private static void delete(File dir) {
+		File[] files = dir.listFiles();
+		if(files != null){
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		dir.delete();
+	}
+
+	/**
+	 * Returns the executable run by the command, looked up in the PATH of the
+	 * command environment if needed
+	 */
+	private static File findTool(IBuildCommand cmd) {
+		IPath command = cmd.getCommand();
+		File file = command.toFile();
+		if(command.isAbsolute())
+			return file.isFile() ? file : null;
+
+		Map<String, String> env = cmd.getEnvironment();
+		String path = env != null ? env.get(PATH_VARIABLE) : null;
+		if(path == null)
+			path = System.getenv(PATH_VARIABLE);
+		if(path == null)
+			return null;
+		for (String dir : path.split(File.pathSeparator)) {
+			File candidate = new File(dir, command.toOSString());
+			if(candidate.isFile())
+				return candidate;
+			candidate = new File(dir, command.toOSString() + ".exe"); //$NON-NLS-1$
+			if(candidate.isFile())
+				return candidate;
+		}
+		return null;
+	}
+}
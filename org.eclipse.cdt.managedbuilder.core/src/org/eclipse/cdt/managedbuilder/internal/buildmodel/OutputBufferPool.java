@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Obeo - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.cdt.managedbuilder.internal.buildmodel;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of the buffers used to read the output of the build processes, so that
+ * a build running thousands of short compiler processes does not allocate
+ * new buffers for each of them.
+ */
+final class OutputBufferPool {
+	/** Size of the pooled buffers */
+	static final int BUFFER_SIZE = 8192;
+	/** Maximum number of idle buffers kept in the pool */
+	private static final int MAX_POOLED = 64;
+
+	private static final Queue<byte[]> fBuffers = new ConcurrentLinkedQueue<byte[]>();
+	private static final AtomicInteger fSize = new AtomicInteger();
+
+	private OutputBufferPool() {
+	}
+
+	/**
+	 * Returns a buffer of {@link #BUFFER_SIZE} bytes
+	 */
+	static byte[] acquire() {
+		byte[] buffer = fBuffers.poll();
+		if (buffer == null)
+			return new byte[BUFFER_SIZE];
+		fSize.decrementAndGet();
+		return buffer;
+	}
+
+	/**
+	 * Gives back a buffer which is not used anymore. Buffers of another size
+	 * than {@link #BUFFER_SIZE} are dropped.
+	 */
+	static void release(byte[] buffer) {
+		if (buffer.length != BUFFER_SIZE || fSize.incrementAndGet() > MAX_POOLED) {
+			if (buffer.length == BUFFER_SIZE)
+				fSize.decrementAndGet();
+			return;
+		}
+		fBuffers.offer(buffer);
+	}
+}
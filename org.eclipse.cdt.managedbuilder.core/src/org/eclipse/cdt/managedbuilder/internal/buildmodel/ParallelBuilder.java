@@ -12,11 +12,13 @@ package org.eclipse.cdt.managedbuilder.internal.buildmodel;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Vector;
 
 import org.eclipse.cdt.core.CCorePlugin;
@@ -45,8 +47,17 @@ public class ParallelBuilder {
 	public static final int STATUS_ERROR = 1;
 	public static final int STATUS_CANCELED = 2;
 	public static final int STATUS_INVALID = -1;
+	/** Maximum time to wait for a process completion before checking cancellation again */
 	public static final long MAIN_LOOP_DELAY = 50L;
 	
+	/** Steps are launched by increasing level */
+	public static final int SCHEDULING_LEVEL = 0;
+	/** Steps with the longest remaining path to the end of the build are launched first */
+	public static final int SCHEDULING_CRITICAL_PATH = 1;
+	/** System property selecting the default scheduling policy ("level" or "criticalPath") */
+	public static final String SCHEDULING_PROPERTY = "org.eclipse.cdt.managedbuilder.internalBuilder.scheduling"; //$NON-NLS-1$
+	private static final String SCHEDULING_CRITICAL_PATH_VALUE = "criticalPath"; //$NON-NLS-1$
+	
 	private static final String BUILDER_MSG_HEADER = "InternalBuilder.msg.header"; //$NON-NLS-1$ 
 	private static final String LINE_SEPARATOR = System.getProperty("line.separator", "\n"); //$NON-NLS-1$ //$NON-NLS-2$
 	
@@ -62,6 +73,11 @@ public class ParallelBuilder {
 	protected HashSet<BuildQueueElement> unsorted = new HashSet<BuildQueueElement>();
 	protected HashMap<IBuildStep, BuildQueueElement> queueHash = new HashMap<IBuildStep, BuildQueueElement>();
 	protected LinkedList<BuildQueueElement> queue = new LinkedList<BuildQueueElement>();
+	protected PriorityQueue<BuildQueueElement> ready = new PriorityQueue<BuildQueueElement>();
+	protected int schedulingPolicy = SCHEDULING_LEVEL;
+	protected BuildTimeline timeline = new BuildTimeline();
+	protected BuildDurationHistory history;
+	protected ObjectCache objectCache = ObjectCache.getDefault();
 
 	/**
 	 * This class implements queue element
@@ -69,6 +85,9 @@ public class ParallelBuilder {
 	protected class BuildQueueElement implements Comparable<BuildQueueElement> {
 		protected IBuildStep step;
 		protected int level;
+		protected long priority;
+		protected int unbuiltProducers;
+		protected List<BuildQueueElement> dependents = new ArrayList<BuildQueueElement>(1);
 		
 		public BuildQueueElement(IBuildStep _step, int _level) {
 			step = _step;
@@ -87,6 +106,36 @@ public class ParallelBuilder {
 			level = _level;
 		}
 		
+		/**
+		 * Returns estimated cost of this step and of all the steps depending on it
+		 * along the most expensive path (used by critical path scheduling)
+		 */
+		public long getPriority() {
+			return priority;
+		}
+		
+		public void setPriority(long _priority) {
+			priority = _priority;
+		}
+		
+		/**
+		 * Registers an enqueued step which consumes an output of this one
+		 */
+		public void addDependent(BuildQueueElement elem) {
+			if (!dependents.contains(elem)) {
+				dependents.add(elem);
+				elem.unbuiltProducers++;
+			}
+		}
+		
+		/**
+		 * Notifies this element that one of its producers is built.
+		 * Returns true if this element is now ready to be built.
+		 */
+		public boolean producerBuilt() {
+			return --unbuiltProducers == 0;
+		}
+		
 		@Override
 		public int hashCode() {
 			return step.hashCode();
@@ -97,6 +146,12 @@ public class ParallelBuilder {
 			if (elem == null)
 				throw new NullPointerException();
 			
+			if (schedulingPolicy == SCHEDULING_CRITICAL_PATH) {
+				if (elem.getPriority() > priority)
+					return 1;
+				if (elem.getPriority() < priority)
+					return -1;
+			}
 			if (elem.getLevel() > level)
 				return -1;
 			if (elem.getLevel() < level)
@@ -131,9 +186,15 @@ public class ParallelBuilder {
 		protected int activeCmd;
 		protected boolean done;
 		protected ProcessLauncher launcher;
+		protected int slot;
+		protected long stepStart;
+		protected long cmdStart;
+		protected int exitCode;
+		protected String cacheKey;
 		
 		public ActiveBuildStep(IBuildStep _step) {
 			step = _step;
+			stepStart = timeline.now();
 			
 			if(dirs == null)
 				stepDirs = new GenDirInfo(step.getBuildDescription().getConfiguration());
@@ -152,16 +213,20 @@ public class ParallelBuilder {
 		public boolean launchNextCmd(BuildProcessManager mgr) {
 			if (monitor.isCanceled()) {
 				done = true;
+				exitCode = -1; // not recorded in the duration history
 				return false;
 			}
 			if (activeCmd + 1 >= cmds.length)
 				done = true;
 			else {
 				IBuildCommand cmd = cmds[++activeCmd];
+				cmdStart = timeline.now();
 				launcher = mgr.launchProcess(cmd, stepCwd, monitor); 
 				if (launcher != null) return true;
 				activeCmd--;
 				done = true; // temporary
+				if (monitor.isCanceled() || mgr.isJobSlotMissed())
+					exitCode = -1; // no job slot, canceled or interrupted while waiting
 			}
 			return false;
 		}
@@ -177,6 +242,46 @@ public class ParallelBuilder {
 		public ProcessLauncher getLauncher() {
 			return launcher;
 		}
+		
+		public void setSlot(int _slot) {
+			slot = _slot;
+		}
+		
+		public void setCacheKey(String _cacheKey) {
+			cacheKey = _cacheKey;
+		}
+		
+		/**
+		 * Stores the outputs of the step in the object cache if it was built successfully
+		 */
+		public void storeOutputs() {
+			if (cacheKey != null && exitCode == 0)
+				objectCache.store(cacheKey, step);
+		}
+		
+		/**
+		 * Records the execution of the active command in the build timeline
+		 */
+		public void commandDone(int _exitCode) {
+			if (_exitCode != 0)
+				exitCode = _exitCode;
+			IBuildCommand cmd = cmds[activeCmd];
+			StringBuffer buf = new StringBuffer(cmd.getCommand().toOSString());
+			for (String arg : cmd.getArgs()) {
+				buf.append(' ').append(arg);
+			}
+			timeline.addEvent(new BuildTimeline.Event(BuildTimeline.CATEGORY_COMMAND, cmd.getCommand().lastSegment(),
+					null, buf.toString(), cmdStart, timeline.now(), _exitCode, slot));
+		}
+		
+		/**
+		 * Records the execution of the step in the build timeline
+		 */
+		public void stepDone() {
+			String key = getStepKey(step);
+			timeline.addEvent(new BuildTimeline.Event(BuildTimeline.CATEGORY_STEP, key != null ? key : DbgUtil.stepName(step),
+					key, null, stepStart, timeline.now(), exitCode, slot));
+		}
 		protected void createOutDirs(){
 			IBuildResource rcs[] = step.getOutputResources();
 			
@@ -205,6 +310,39 @@ public class ParallelBuilder {
 	 *         ParallelBuilder#STATUS_INVALID}. *
 	 */
 	static public int build(IBuildDescription des, IPath cwd, GenDirInfo dirs, OutputStream out, OutputStream err, IProgressMonitor monitor, boolean resumeOnErrors, boolean buildIncrementally) {
+		return build(des, cwd, dirs, out, err, monitor, resumeOnErrors, buildIncrementally, getDefaultSchedulingPolicy());
+	}
+
+	/**
+	 * Same as {@link #build(IBuildDescription, IPath, GenDirInfo, OutputStream, OutputStream, IProgressMonitor, boolean, boolean)}
+	 * with an explicit scheduling policy.
+	 * 
+	 * @param schedulingPolicy one of {@link ParallelBuilder#SCHEDULING_LEVEL} or
+	 *        {@link ParallelBuilder#SCHEDULING_CRITICAL_PATH}
+	 */
+	static public int build(IBuildDescription des, IPath cwd, GenDirInfo dirs, OutputStream out, OutputStream err, IProgressMonitor monitor, boolean resumeOnErrors, boolean buildIncrementally, int schedulingPolicy) {
+		return build(des, cwd, dirs, out, err, monitor, resumeOnErrors, buildIncrementally, schedulingPolicy, null);
+	}
+
+	/**
+	 * Same as {@link #build(IBuildDescription, IPath, GenDirInfo, OutputStream, OutputStream, IProgressMonitor, boolean, boolean, int)}
+	 * using and updating a history of the step durations.
+	 * 
+	 * @param history Durations of the previous builds, used to estimate the
+	 *        cost of the steps and updated with this build. May be null.
+	 */
+	static public int build(IBuildDescription des, IPath cwd, GenDirInfo dirs, OutputStream out, OutputStream err, IProgressMonitor monitor, boolean resumeOnErrors, boolean buildIncrementally, int schedulingPolicy, BuildDurationHistory history) {
+		return build(des, cwd, dirs, out, err, monitor, resumeOnErrors, buildIncrementally, schedulingPolicy, history, new BuildTimeline());
+	}
+
+	/**
+	 * Same as {@link #build(IBuildDescription, IPath, GenDirInfo, OutputStream, OutputStream, IProgressMonitor, boolean, boolean, int, BuildDurationHistory)}
+	 * recording the executed steps and commands in the given timeline.
+	 * 
+	 * @param timeline Timeline filled with the build, which the build status
+	 *        does not report failures of when the build resumes on errors
+	 */
+	static public int build(IBuildDescription des, IPath cwd, GenDirInfo dirs, OutputStream out, OutputStream err, IProgressMonitor monitor, boolean resumeOnErrors, boolean buildIncrementally, int schedulingPolicy, BuildDurationHistory history, BuildTimeline timeline) {
 		IConfiguration cfg = des.getConfiguration();
 		if(dirs == null) dirs = new GenDirInfo(cfg);
 		if(cwd == null)  cwd = des.getDefaultBuildDirLocation();
@@ -213,16 +351,31 @@ public class ParallelBuilder {
 			threads = ((Configuration)cfg).getParallelNumber();
 		}
 		ParallelBuilder builder = new ParallelBuilder(cwd, dirs, out, err, monitor, resumeOnErrors, buildIncrementally);
+		builder.schedulingPolicy = schedulingPolicy;
+		builder.history = history;
+		builder.timeline = timeline;
 		builder.enqueueAll(des);
 		builder.sortQueue();
 		monitor.beginTask("", builder.queue.size()); //$NON-NLS-1$
 		BuildProcessManager buildProcessManager = new BuildProcessManager(out, err, true, threads);
 		int status = builder.dispatch(buildProcessManager);
 		lastThreadsUsed = buildProcessManager.getThreadsUsed();
+		if (history != null)
+			history.record(builder.timeline);
 		monitor.done();
 		return status;
 	}
 
+	/**
+	 * Returns the scheduling policy selected by the {@link #SCHEDULING_PROPERTY}
+	 * system property, {@link #SCHEDULING_LEVEL} by default
+	 */
+	static public int getDefaultSchedulingPolicy() {
+		if (SCHEDULING_CRITICAL_PATH_VALUE.equals(System.getProperty(SCHEDULING_PROPERTY)))
+			return SCHEDULING_CRITICAL_PATH;
+		return SCHEDULING_LEVEL;
+	}
+
 	/**
 	 * Initializes parallel builder
 	 */
@@ -244,20 +397,95 @@ public class ParallelBuilder {
 	}
 	
 	/**
-	 * Sorts the queue
+	 * Sorts the queue and links each enqueued step to the enqueued steps
+	 * producing its inputs. Steps without such producers are ready to be built.
 	 */
 	protected void sortQueue() {
+		if (schedulingPolicy == SCHEDULING_CRITICAL_PATH) {
+			HashMap<IBuildStep, Long> priorities = new HashMap<IBuildStep, Long>();
+			for (BuildQueueElement elem : unsorted) {
+				elem.setPriority(computePriority(elem.getStep(), priorities));
+			}
+		}
 		for (BuildQueueElement elem : unsorted) {
 			queue.add(elem);
+			for (IBuildResource bldRes : elem.getStep().getInputResources()) {
+				BuildQueueElement producer = queueHash.get(bldRes.getProducerStep());
+				if (producer != null && producer != elem)
+					producer.addDependent(elem);
+			}
+		}
+		for (BuildQueueElement elem : queue) {
+			if (elem.unbuiltProducers == 0)
+				ready.add(elem);
 		}
 		unsorted.clear();
 		unsorted = null;
-		queueHash.clear();
-		queueHash = null;
 
 		Collections.sort(queue);
 	}
 
+	/**
+	 * Computes the estimated cost of the longest path starting at the given step,
+	 * i.e. its own cost plus the highest priority of the steps depending on it.
+	 * Steps which are not enqueued are not built and cost nothing.
+	 */
+	protected long computePriority(IBuildStep step, HashMap<IBuildStep, Long> priorities) {
+		Long known = priorities.get(step);
+		if (known != null)
+			return known.longValue();
+		// Guards against cycles in the step graph
+		priorities.put(step, Long.valueOf(0));
+		
+		long maxDependent = 0;
+		for (IBuildResource rc : step.getOutputResources()) {
+			for (IBuildStep dependent : rc.getDependentSteps()) {
+				if (dependent != null && dependent.getBuildDescription().getOutputStep() != dependent) {
+					maxDependent = Math.max(maxDependent, computePriority(dependent, priorities));
+				}
+			}
+		}
+		long priority = maxDependent;
+		if (queueHash.containsKey(step))
+			priority += estimateCost(step);
+		priorities.put(step, Long.valueOf(priority));
+		return priority;
+	}
+	
+	/**
+	 * Returns the estimated cost of a step in microseconds. The recorded
+	 * durations of the step are used when available, otherwise the size of
+	 * the inputs is used as a rough approximation (one microsecond per byte).
+	 */
+	protected long estimateCost(IBuildStep step) {
+		if (history != null) {
+			String key = getStepKey(step);
+			if (key != null) {
+				long duration = history.getEstimatedDuration(key);
+				if (duration >= 0)
+					return duration + 1;
+			}
+		}
+		long cost = 1;
+		for (IBuildResource rc : step.getInputResources()) {
+			IPath location = rc.getLocation();
+			if (location != null)
+				cost += location.toFile().length();
+		}
+		return cost;
+	}
+
+	/**
+	 * Returns an identifier of the step which is stable across builds: the
+	 * path of its first output, or null if it has no output
+	 */
+	static public String getStepKey(IBuildStep step) {
+		IBuildResource[] outputs = step.getOutputResources();
+		if (outputs.length == 0)
+			return null;
+		return DbgUtil.resourceName(outputs[0]);
+	}
+
 	/**
 	 * Enqueues build steps directly accessed from the given one. Each
 	 * new element will have level 1 if it needs rebuild and 0 otherwise.
@@ -302,7 +530,6 @@ public class ParallelBuilder {
 		Vector<ActiveBuildStep> active = new Vector<ActiveBuildStep>(Math.min(maxProcesses, 10), 10);
 		
 		int activeCount = 0;
-		int maxLevel = 0;
 		int status = STATUS_OK;
 		String errorMsg = null;
 		
@@ -326,127 +553,84 @@ public class ParallelBuilder {
 				break main_loop;
 			}
 			// Everything goes OK.
-			boolean proceed = true;
+			boolean progress = false;
 			
-			// Check if there is room for new process
-			if (!mgr.hasEmpty()) {
-				proceed = false;
-			} else {
-				// Check "active steps" list for completed ones
-				for (ActiveBuildStep buildStep : active) {
-					ProcessLauncher pl = buildStep.getLauncher();
-					if (pl == null) continue; 
-					if (pl.queryState() == ProcessLauncher.STATE_DONE) {
-						// If process has terminated with error, break loop
-						// (except resumeOnErrors == true)
-						
-						if (!resumeOnErrors && pl.getExitCode() != 0) {
-							status = STATUS_ERROR;
-							break main_loop;
-						}
-						// Try to launch next command for the current active step
-						if (buildStep.isDone()) continue;
-						if (buildStep.launchNextCmd(mgr)) {
-							// Command has been launched. Check if process pool is not maximized yet
-							if (!mgr.hasEmpty()) {
-								proceed = false;
-								break;
-							}
-						} else {
-							// Command has not been launched: step complete
-							refreshOutputs(buildStep.getStep());
-							activeCount--;
-							monitor.worked(1);
-						}
-					}
+			// Check "active steps" list for completed commands
+			for (ActiveBuildStep buildStep : active) {
+				if (buildStep.isDone()) continue;
+				ProcessLauncher pl = buildStep.getLauncher();
+				if (pl == null || pl.queryState() != ProcessLauncher.STATE_DONE) continue; 
+				buildStep.commandDone(pl.getExitCode());
+				// If process has terminated with error, break loop
+				// (except resumeOnErrors == true)
+				if (!resumeOnErrors && pl.getExitCode() != 0) {
+					buildStep.stepDone();
+					status = STATUS_ERROR;
+					break main_loop;
 				}
-			}
-			
-			// If nothing to do, then sleep and continue main loop
-			if (!proceed) {
-				try {
-					Thread.sleep(MAIN_LOOP_DELAY);
-				} catch (InterruptedException e) {
-					// do nothing
+				progress = true;
+				// Try to launch next command for the current active step
+				if (!buildStep.launchNextCmd(mgr)) {
+					// Command has not been launched: step complete
+					buildStep.stepDone();
+					buildStep.storeOutputs();
+					stepBuilt(buildStep.getStep());
+					activeCount--;
 				}
-				continue main_loop;
 			}
 			
-			// Check if we need to schedule another process
-			if (queue.size() != 0 && activeCount < maxProcesses) {
-				// Need to schedule another process 
-				Iterator<BuildQueueElement> iter = queue.iterator();
-
-				// Iterate over build queue
-				while (iter.hasNext()) {
-					BuildQueueElement elem = iter.next();
-					
-					// If "active steps" list reaches maximum, then break loop
-					if (activeCount == maxProcesses)
-						break;
-					
-					// If current element's level exceeds maximum level of currently built
-					// resources, then stop iteration (we can not build it anyway)
-					if (elem.getLevel() > maxLevel + 1)
-						break;
-
-					//Check if all prerequisites are built
-					boolean prereqBuilt = true;
-					for (IBuildResource bldRes : elem.getStep().getInputResources()) {
-						IBuildStep step = bldRes.getProducerStep(); // step which produces input for curr
-						boolean built = true;
-						if (step != step.getBuildDescription().getInputStep()) {
-							for (ActiveBuildStep buildStep : active) {
-								if (buildStep != null && buildStep.getStep().equals(step) && !buildStep.isDone()) {
-									built = false;
-									break;
-								}
-							}
-						}
-						if (!built) {
-							prereqBuilt = false;
-							break;
-						}
-					}
-
-					if (prereqBuilt) {
-						// All prereqs are built
-						IBuildStep step = elem.getStep();
-						
-						// Remove element from the build queue and add it to the
-						// "active steps" list.
-						iter.remove();
-						for (int i = 0; i < maxProcesses; i++) {
-							if (i >= active.size()) {
-								// add new item
-								ActiveBuildStep buildStep = new ActiveBuildStep(step);
-								active.add(buildStep);
-								if (buildStep.launchNextCmd(mgr))
-									activeCount++;
-								break;
-							}
-							if (active.get(i).isDone()) {
-								// replace old item
-								ActiveBuildStep buildStep = new ActiveBuildStep(step);
-								active.set(i, buildStep);
-								if (buildStep.launchNextCmd(mgr))
-									activeCount++;
-								break;
-							}
-						}
-						
-						// Update maxLevel
-						if (elem.getLevel() > maxLevel)
-							maxLevel = elem.getLevel();
-						// We don't need to start new process immediately since
-						// it will be done on the next main loop iteration
+			// Launch the steps whose inputs are all built
+			while (activeCount < maxProcesses && !ready.isEmpty()) {
+				IBuildStep step = ready.poll().getStep();
+				progress = true;
+				
+				// Restore the outputs from the object cache if possible
+				String cacheKey = null;
+				if (objectCache != null) {
+					long start = timeline.now();
+					cacheKey = objectCache.computeKey(step, cwd != null ? cwd : step.getBuildDescription().getDefaultBuildDirLocation());
+					if (cacheKey != null && objectCache.restore(cacheKey, step)) {
+						timeline.addEvent(new BuildTimeline.Event(BuildTimeline.CATEGORY_CACHED, DbgUtil.stepName(step),
+								getStepKey(step), null, start, timeline.now(), 0, -1));
+						stepBuilt(step);
+						continue;
 					}
 				}
+				
+				// Add the step to the "active steps" list, reusing the slot of a completed step
+				ActiveBuildStep buildStep = new ActiveBuildStep(step);
+				int slot = 0;
+				while (slot < active.size() && !active.get(slot).isDone())
+					slot++;
+				if (slot < active.size())
+					active.set(slot, buildStep);
+				else
+					active.add(buildStep);
+				buildStep.setSlot(slot);
+				buildStep.setCacheKey(cacheKey);
+				
+				if (buildStep.launchNextCmd(mgr))
+					activeCount++;
+				else {
+					buildStep.stepDone();
+					stepBuilt(step);
+				}
 			}
 			
 			// Now finally, check if we're done
-			if (activeCount <= 0 && queue.size() == 0) 
+			if (activeCount <= 0 && ready.isEmpty()) {
+				// The steps of a dependency cycle never become ready
+				String unbuilt = getUnbuiltSteps();
+				if (unbuilt != null) {
+					status = STATUS_ERROR;
+					errorMsg = ManagedMakeMessages.getFormattedString("InternalBuilder.cycle", unbuilt); //$NON-NLS-1$
+				}
 				break main_loop;
+			}
+			
+			// Nothing could be launched: wait for a process to complete
+			if (!progress)
+				mgr.waitForCompletion(MAIN_LOOP_DELAY);
 		}
 
 		if (status != STATUS_OK && errorMsg != null) 
@@ -454,6 +638,40 @@ public class ParallelBuilder {
 		return status;
 	}
 	
+	/**
+	 * Returns the names of the enqueued steps still waiting for some of their
+	 * producers, or null if there are none
+	 */
+	protected String getUnbuiltSteps() {
+		StringBuffer buf = null;
+		for (BuildQueueElement elem : queue) {
+			if (elem.unbuiltProducers <= 0)
+				continue;
+			if (buf == null)
+				buf = new StringBuffer();
+			else
+				buf.append(", "); //$NON-NLS-1$
+			buf.append(DbgUtil.stepName(elem.getStep()));
+		}
+		return buf != null ? buf.toString() : null;
+	}
+	
+	/**
+	 * Marks a step as built and makes the steps which were only waiting
+	 * for it ready to be built
+	 */
+	protected void stepBuilt(IBuildStep step) {
+		refreshOutputs(step);
+		monitor.worked(1);
+		BuildQueueElement elem = queueHash.get(step);
+		if (elem != null) {
+			for (BuildQueueElement dependent : elem.dependents) {
+				if (dependent.producerBuilt())
+					ready.add(dependent);
+			}
+		}
+	}
+	
 	/**
 	 * Prints output to the console 
 	 */
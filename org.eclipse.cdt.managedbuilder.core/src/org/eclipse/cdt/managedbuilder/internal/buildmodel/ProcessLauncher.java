@@ -11,9 +11,9 @@
 package org.eclipse.cdt.managedbuilder.internal.buildmodel;
 
 import java.io.*;
+import java.util.concurrent.BlockingQueue;
 
 import org.eclipse.cdt.core.CCorePlugin;
-import org.eclipse.cdt.internal.core.ProcessClosure;
 import org.eclipse.cdt.utils.spawner.ProcessFactory;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -40,8 +40,166 @@ public class ProcessLauncher {
 	protected String error;
 	protected String lineSeparator;
 	protected Process process;
-	protected ProcessClosure closure = null;
-	protected int state;
+	protected volatile int state;
+	protected volatile boolean finished;
+	protected int exitCode;
+	protected BlockingQueue<ProcessLauncher> completionQueue;
+	protected JobSlotServer jobSlots;
+
+	/**
+	 * This class copies the output of the process line by line.
+	 * <p>
+	 * The output is split into lines on the bytes read, in a pooled buffer owned
+	 * by the reader, and the complete lines read at once are written to the target 
+	 * in a single locked write, so that the output of the processes run in parallel
+	 * does not interleave in the middle of a line. Line terminators are replaced by 
+	 * the platform line separator when they differ from it.
+	 */
+	protected class OutputReader extends Thread {
+		protected InputStream in;
+		protected OutputStream target;
+		private final byte[] separator;
+
+		public OutputReader(InputStream _in, OutputStream _target) {
+			super("Internal builder output reader"); //$NON-NLS-1$
+			in = _in;
+			target = _target;
+			separator = lineSeparator.getBytes();
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			byte[] buffer = OutputBufferPool.acquire();
+			byte[] pooled = buffer;
+			try {
+				int length = 0;
+				int read;
+				while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+					length += read;
+					int consumed = writeLines(buffer, length, false);
+					if (consumed > 0) {
+						System.arraycopy(buffer, consumed, buffer, 0, length - consumed);
+						length -= consumed;
+					} else if (length == buffer.length) {
+						// Line longer than the buffer
+						byte[] larger = new byte[buffer.length * 2];
+						System.arraycopy(buffer, 0, larger, 0, length);
+						buffer = larger;
+					}
+				}
+				writeLines(buffer, length, true);
+				if (target != null)
+					target.flush();
+			} catch (IOException e) {
+				// do nothing
+			} finally {
+				OutputBufferPool.release(pooled);
+				try {
+					in.close();
+				} catch (IOException e) {
+					// do nothing
+				}
+			}
+		}
+
+		/**
+		 * Writes the complete lines at the beginning of the buffer to the target.
+		 * 
+		 * @param buffer Buffer holding the output read
+		 * @param length Number of bytes in the buffer
+		 * @param eof If true, the last line is written even if it has no terminator
+		 * @return Number of bytes written from the buffer, terminators included
+		 */
+		private int writeLines(byte[] buffer, int length, boolean eof) throws IOException {
+			int start = 0;	// first byte not written yet
+			int end = 0;	// end of the last complete line
+			for (int i = 0; i < length; i++) {
+				byte b = buffer[i];
+				if (b != '\n' && b != '\r')
+					continue;
+				int terminator = 1;
+				if (b == '\r') {
+					if (i + 1 < length) {
+						if (buffer[i + 1] == '\n')
+							terminator = 2;
+					} else if (!eof) {
+						// Cannot tell yet whether it is followed by '\n'
+						break;
+					}
+				}
+				if (!isSeparator(buffer, i, terminator)) {
+					if (target != null) {
+						synchronized (target) {
+							target.write(buffer, start, i - start);
+							target.write(separator);
+						}
+					}
+					start = i + terminator;
+				}
+				i += terminator - 1;
+				end = i + 1;
+			}
+			if (eof && end < length) {
+				// Last line without terminator
+				if (target != null) {
+					synchronized (target) {
+						target.write(buffer, start, length - start);
+						target.write(separator);
+					}
+				}
+				return length;
+			}
+			if (end > start && target != null) {
+				synchronized (target) {
+					target.write(buffer, start, end - start);
+				}
+			}
+			return end;
+		}
+
+		private boolean isSeparator(byte[] buffer, int offset, int length) {
+			if (length != separator.length)
+				return false;
+			for (int i = 0; i < length; i++) {
+				if (buffer[offset + i] != separator[i])
+					return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * This class waits for the process and its output, then signals 
+	 * completion to the completion queue (if any)
+	 */
+	protected class CompletionWatcher extends Thread {
+		public CompletionWatcher() {
+			super("Internal builder process watcher"); //$NON-NLS-1$
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			OutputReader errReader = new OutputReader(process.getErrorStream(), err);
+			errReader.start();
+			// Read the standard output in this thread
+			new OutputReader(process.getInputStream(), out).run();
+			boolean interrupted = false;
+			while (true) {
+				try {
+					errReader.join();
+					exitCode = process.waitFor();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			complete();
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
 
 	/**
 	 * Returns command line as a string array
@@ -91,9 +249,28 @@ public class ProcessLauncher {
 	 * Returns exit code of a process
 	 */
 	public int getExitCode() {
-		if (process == null || closure.isAlive()) return 0;
-		try { return process.waitFor(); }
-		catch (InterruptedException e) { return 0; } 
+		if (process == null || !finished) return 0;
+		return exitCode;
+	}
+	
+	/**
+	 * Sets the queue this launcher adds itself to once its process has 
+	 * terminated and its output has been read, or once it failed to launch
+	 * 
+	 * @param queue Completion queue, or null
+	 */
+	public void setCompletionQueue(BlockingQueue<ProcessLauncher> queue) {
+		completionQueue = queue;
+	}
+	
+	/**
+	 * Sets the server of the job slot held by this launcher. The slot is 
+	 * given back once the process has terminated or failed to launch
+	 * 
+	 * @param server Job slot server, or null
+	 */
+	public void setJobSlot(JobSlotServer server) {
+		jobSlots = server;
 	}
 	
 	/**
@@ -128,18 +305,31 @@ public class ProcessLauncher {
 				printCommandLine();
 			state = STATE_RUNNING;
 			process = ProcessFactory.getFactory().exec(cmd, env, cwd); 
-			closure = new ProcessClosure(process, out, err);
 			// Close the input of the process since we will never write to it
 			try {
 				process.getOutputStream().close();
 			} catch (IOException e) {
 				// do nothing
 			}
-			closure.runNonBlocking();
+			new CompletionWatcher().start();
 		} catch (IOException e) {
 			error = e.getMessage();
-			closure = null;
+			process = null;
+			complete();
+		}
+	}
+	
+	/**
+	 * Marks the process as finished and signals the completion queue
+	 */
+	protected void complete() {
+		finished = true;
+		if (jobSlots != null) {
+			jobSlots.release();
+			jobSlots = null;
 		}
+		if (completionQueue != null)
+			completionQueue.offer(this);
 	}
 	
 	/**
@@ -147,13 +337,13 @@ public class ProcessLauncher {
 	 */
 	public int queryState() {
 		if (state == STATE_RUNNING) {
-			if (closure == null) 
+			if (process == null) 
 				state = STATE_ILLEGAL;
 			else if (monitor.isCanceled()) {
-				closure.terminate();
+				process.destroy();
 				error = CCorePlugin.getResourceString("CommandLauncher.error.commandCanceled"); //$NON-NLS-1$
 				state = STATE_CANCELED;
-			} else if (!closure.isRunning()) {
+			} else if (finished) {
 				state = STATE_DONE;
 			}
 		}
@@ -17,6 +17,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -31,8 +33,14 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.IPath;
 
 public class ProjectBuildState implements IProjectBuildState {
+	private static final String HISTORY_FILE_EXTENSION = ".history"; //$NON-NLS-1$
+	private static final String TRACE_FILE_EXTENSION = ".trace.json"; //$NON-NLS-1$
+	private static final String FINGERPRINTS_FILE_EXTENSION = ".fingerprints"; //$NON-NLS-1$
+	private static final String MAKEFILE_MODEL_FILE_EXTENSION = ".makefiles"; //$NON-NLS-1$
+
 	private Properties fCfgIdToFileNameProps;
 	private Map<String, ConfigurationBuildState> fCfgIdToStateMap = new HashMap<String, ConfigurationBuildState>();
+	private Map<String, BuildDurationHistory> fCfgIdToHistoryMap = new HashMap<String, BuildDurationHistory>();
 	private IProject fProject;
 	private boolean fIsMapInfoDirty;
 
@@ -61,13 +69,56 @@ public class ProjectBuildState implements IProjectBuildState {
 		return state;
 	}
 
+	@Override
+	public BuildDurationHistory getDurationHistory(String id) {
+		BuildDurationHistory history = fCfgIdToHistoryMap.get(id);
+		if(history == null){
+			history = new BuildDurationHistory();
+			File file = getFileForCfg(id, HISTORY_FILE_EXTENSION, false);
+			if(file != null && file.exists()){
+				try {
+					InputStream iStream = new FileInputStream(file);
+					history.load(iStream);
+					iStream.close();
+				} catch (FileNotFoundException e) {
+					ManagedBuilderCorePlugin.log(e);
+				} catch (IOException e) {
+					ManagedBuilderCorePlugin.log(e);
+				}
+			}
+			fCfgIdToHistoryMap.put(id, history);
+		}
+		return history;
+	}
+
+	@Override
+	public File getMakefileModelFile(String id, boolean create) {
+		File file = getFileForCfg(id, MAKEFILE_MODEL_FILE_EXTENSION, create);
+		if(file != null && create){
+			File parent = file.getParentFile();
+			if(!parent.exists())
+				parent.mkdirs();
+		}
+		return file;
+	}
+
 	private ConfigurationBuildState loadState(String id, boolean create){
 		File file = getFileForCfg(id, create);
 		ConfigurationBuildState bs = new ConfigurationBuildState(fProject, id);
 		if(file != null && file.exists()){
 			try {
-				InputStream iStream = new FileInputStream(file);
-				bs.load(iStream);
+				bs.load(file);
+			} catch (FileNotFoundException e) {
+				ManagedBuilderCorePlugin.log(e);
+			} catch (IOException e) {
+				ManagedBuilderCorePlugin.log(e);
+			}
+		}
+		File fingerprintsFile = getFileForCfg(id, FINGERPRINTS_FILE_EXTENSION, false);
+		if(fingerprintsFile != null && fingerprintsFile.exists()){
+			try {
+				InputStream iStream = new FileInputStream(fingerprintsFile);
+				bs.getContentFingerprints().load(iStream);
 				iStream.close();
 			} catch (FileNotFoundException e) {
 				ManagedBuilderCorePlugin.log(e);
@@ -97,6 +148,7 @@ public class ProjectBuildState implements IProjectBuildState {
 		ConfigurationBuildState cbs = (ConfigurationBuildState)getConfigurationBuildState(id, false);
 		if(cbs != null){
 			cbs.setState(IRebuildState.NEED_REBUILD);
+			cbs.getContentFingerprints().clear();
 		}
 	}
 
@@ -140,6 +192,13 @@ public class ProjectBuildState implements IProjectBuildState {
 		return path.toFile();
 	}
 
+	private File getFileForCfg(String id, String extension, boolean create){
+		File file = getFileForCfg(id, create);
+		if(file == null)
+			return null;
+		return new File(file.getParentFile(), file.getName() + extension);
+	}
+
 	private void saveMapFile(){
 		if(fCfgIdToFileNameProps == null)
 			return;
@@ -204,7 +263,15 @@ public class ProjectBuildState implements IProjectBuildState {
 				File file = getFileForCfg(id, false);
 				if(file != null && file.exists()){
 					file.delete();
-					getFileName(id, OP_REMOVE);
+					// Keep the file name while it is used by the duration history,
+					// by the fingerprints or by the makefile model
+					File historyFile = getFileForCfg(id, HISTORY_FILE_EXTENSION, false);
+					File fingerprintsFile = getFileForCfg(id, FINGERPRINTS_FILE_EXTENSION, false);
+					File makefileModelFile = getFileForCfg(id, MAKEFILE_MODEL_FILE_EXTENSION, false);
+					if(!fCfgIdToHistoryMap.containsKey(id) && (historyFile == null || !historyFile.exists())
+							&& !s.getContentFingerprints().isDirty() && (fingerprintsFile == null || !fingerprintsFile.exists())
+							&& (makefileModelFile == null || !makefileModelFile.exists()))
+						getFileName(id, OP_REMOVE);
 				}
 			} else {
 				File file = getFileForCfg(id, true);
@@ -212,9 +279,25 @@ public class ProjectBuildState implements IProjectBuildState {
 				if(!parent.exists())
 					parent.mkdirs();
 
+				try {
+					s.store(file);
+				} catch (FileNotFoundException e) {
+					ManagedBuilderCorePlugin.log(e);
+				} catch (IOException e) {
+					ManagedBuilderCorePlugin.log(e);
+				}
+			}
+
+			ContentFingerprints fingerprints = s.getContentFingerprints();
+			if(fingerprints.isDirty()){
+				File file = getFileForCfg(id, FINGERPRINTS_FILE_EXTENSION, true);
+				File parent = file.getParentFile();
+				if(!parent.exists())
+					parent.mkdirs();
+
 				try {
 					FileOutputStream oStream = new FileOutputStream(file);
-					s.store(oStream);
+					fingerprints.store(oStream);
 					oStream.close();
 				} catch (FileNotFoundException e) {
 					ManagedBuilderCorePlugin.log(e);
@@ -224,6 +307,34 @@ public class ProjectBuildState implements IProjectBuildState {
 			}
 		}
 
+		Set<Map.Entry<String, BuildDurationHistory>> histories = fCfgIdToHistoryMap.entrySet();
+		for (Map.Entry<String, BuildDurationHistory> entry : histories) {
+			BuildDurationHistory history = entry.getValue();
+			if(!history.isDirty())
+				continue;
+			File file = getFileForCfg(entry.getKey(), HISTORY_FILE_EXTENSION, true);
+			File parent = file.getParentFile();
+			if(!parent.exists())
+				parent.mkdirs();
+
+			try {
+				FileOutputStream oStream = new FileOutputStream(file);
+				history.store(oStream);
+				oStream.close();
+
+				BuildTimeline timeline = history.getLastTimeline();
+				if(timeline != null){
+					Writer writer = new OutputStreamWriter(new FileOutputStream(getFileForCfg(entry.getKey(), TRACE_FILE_EXTENSION, true)), "UTF-8"); //$NON-NLS-1$
+					timeline.writeChromeTrace(writer);
+					writer.close();
+				}
+			} catch (FileNotFoundException e) {
+				ManagedBuilderCorePlugin.log(e);
+			} catch (IOException e) {
+				ManagedBuilderCorePlugin.log(e);
+			}
+		}
+
 		if(fIsMapInfoDirty)
 			saveMapFile();
 	}
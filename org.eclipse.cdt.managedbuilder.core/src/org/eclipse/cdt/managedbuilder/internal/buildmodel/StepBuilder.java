@@ -45,6 +45,7 @@ public class StepBuilder implements IBuildModelBuilder {
 	private int fNumCommands = -1;
 	private CommandBuilder fCommandBuilders[];
 	private IResourceRebuildStateContainer fRebuildStateContainer;
+	private BuildTimeline fTimeline;
 
 	public StepBuilder(IBuildStep step, IResourceRebuildStateContainer rs){
 		this(step, null, rs);
@@ -69,6 +70,13 @@ public class StepBuilder implements IBuildModelBuilder {
 		fRebuildStateContainer = rs;
 	}
 
+	/**
+	 * Sets the timeline the executions of the step and of its commands are recorded in
+	 */
+	public void setTimeline(BuildTimeline timeline){
+		fTimeline = timeline;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.cdt.managedbuilder.internal.builddescription.IBuildDescriptionBuilder#build(java.io.OutputStream, java.io.OutputStream, org.eclipse.core.runtime.IProgressMonitor)
 	 */
@@ -82,16 +90,36 @@ public class StepBuilder implements IBuildModelBuilder {
 		int status = STATUS_OK;
 		CommandBuilder bs[] = getCommandBuilders();
 		if(bs.length > 0){
+			long stepStart = fTimeline != null ? fTimeline.now() : 0;
+			ObjectCache cache = ObjectCache.getDefault();
+			String cacheKey = cache != null ? cache.computeKey(fStep, fCWD) : null;
+			if(cacheKey != null && cache.restore(cacheKey, fStep)){
+				if(fTimeline != null)
+					fTimeline.addEvent(new BuildTimeline.Event(BuildTimeline.CATEGORY_CACHED, DbgUtil.stepName(fStep),
+							ParallelBuilder.getStepKey(fStep), null, stepStart, fTimeline.now(), 0, 0));
+				status = postProcess(status, new NullProgressMonitor());
+				monitor.done();
+				return status;
+			}
+
 			//TODO: monitor
 			createOutDirs(new NullProgressMonitor());
 
+			int exitCode = 0;
 			for(int i = 0;
 					i < bs.length
 						&& status != STATUS_CANCELLED
 						&& (fResumeOnErrs || status == STATUS_OK);
 					i++){
 				CommandBuilder builder = bs[i];
-				switch(builder.build(out, err, new SubProgressMonitor(monitor, builder.getNumCommands()))){
+				long cmdStart = fTimeline != null ? fTimeline.now() : 0;
+				int cmdStatus = builder.build(out, err, new SubProgressMonitor(monitor, builder.getNumCommands()));
+				if(cmdStatus != STATUS_OK)
+					exitCode = builder.getExitCode();
+				if(fTimeline != null)
+					fTimeline.addEvent(new BuildTimeline.Event(BuildTimeline.CATEGORY_COMMAND, builder.getCommand().getCommand().lastSegment(),
+							null, builder.getCommandLine(), cmdStart, fTimeline.now(), builder.getExitCode(), 0));
+				switch(cmdStatus){
 				case STATUS_OK:
 					break;
 				case STATUS_CANCELLED:
@@ -106,6 +134,13 @@ public class StepBuilder implements IBuildModelBuilder {
 					break;
 				}
 			}
+			if(fTimeline != null){
+				String key = ParallelBuilder.getStepKey(fStep);
+				fTimeline.addEvent(new BuildTimeline.Event(BuildTimeline.CATEGORY_STEP, key != null ? key : DbgUtil.stepName(fStep),
+						key, null, stepStart, fTimeline.now(), exitCode, 0));
+			}
+			if(cacheKey != null && status == STATUS_OK)
+				cache.store(cacheKey, fStep);
 			//TODO: monitor
 			status = postProcess(status, new NullProgressMonitor());
 		}
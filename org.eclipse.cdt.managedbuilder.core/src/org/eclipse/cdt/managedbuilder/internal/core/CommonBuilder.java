@@ -94,6 +94,8 @@ public class CommonBuilder extends ACBuilder {
 	private static final int TICKS_DELETE_OUTPUTS = 1 * PROGRESS_MONITOR_SCALE;
 
 	private static CfgBuildSet fBuildSet = new CfgBuildSet();
+	/** Whether the configurations referenced by the built ones are built first */
+	private static volatile boolean fBuildReferencedConfigs = true;
 
 	private boolean fBuildErrOccured;
 
@@ -586,7 +588,18 @@ public class CommonBuilder extends ACBuilder {
 
 	}
 
+	/**
+	 * Sets whether the configurations referenced by the built ones are built first. The
+	 * headless builder turns this off in the processes building a single configuration,
+	 * as the referenced configurations are built by other processes.
+	 */
+	static void setBuildReferencedConfigs(boolean build){
+		fBuildReferencedConfigs = build;
+	}
+
 	private IConfiguration[] getReferencedConfigs(IBuilder[] builders){
+		if(!fBuildReferencedConfigs)
+			return new IConfiguration[0];
 		Set<IConfiguration> set = new HashSet<IConfiguration>();
 		for (IBuilder builder : builders) {
 			IConfiguration cfg = builder.getParent().getParent();
@@ -18,9 +18,14 @@ public class HeadlessBuildMessages extends NLS {
 	public static String HeadlessBuilder_build_failed;
 	public static String HeadlessBuilder_building_all;
 	public static String HeadlessBuilder_cant_be_found;
+	public static String HeadlessBuilder_ChildBuildCycle;
+	public static String HeadlessBuilder_ChildBuildFailed;
+	public static String HeadlessBuilder_ChildBuildOutput;
+	public static String HeadlessBuilder_ChildBuildSkipped;
 	public static String HeadlessBuilder_clean_failed;
 	public static String HeadlessBuilder_cleaning_all_projects;
 	public static String HeadlessBuilder_CouldntLockWorkspace;
+	public static String HeadlessBuilder_CouldntOpenJobserver;
 	public static String HeadlessBuilder_Directory;
 	public static String HeadlessBuilder_EnvVar_Append;
 	public static String HeadlessBuilder_EnvVar_Prepend;
@@ -56,6 +61,7 @@ public class HeadlessBuildMessages extends NLS {
 	public static String HeadlessBuilder_invalid_uri;
 	public static String HeadlessBuilder_PreprocessorDefine;
 	public static String HeadlessBuilder_usage_import;
+	public static String HeadlessBuilder_usage_parallel;
 	public static String HeadlessBuilder_Workspace;
 	public static String HeadlessBuilder_WorkspaceInUse;
 	static {
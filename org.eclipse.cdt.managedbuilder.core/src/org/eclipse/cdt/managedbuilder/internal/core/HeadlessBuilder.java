@@ -16,13 +16,19 @@
 
 package org.eclipse.cdt.managedbuilder.internal.core;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -38,6 +44,7 @@ import org.eclipse.cdt.core.settings.model.ICProjectDescription;
 import org.eclipse.cdt.core.settings.model.util.CDataUtil;
 import org.eclipse.cdt.internal.core.envvar.EnvironmentVariableManager;
 import org.eclipse.cdt.managedbuilder.core.BuildException;
+import org.eclipse.cdt.managedbuilder.core.IBuilder;
 import org.eclipse.cdt.managedbuilder.core.IConfiguration;
 import org.eclipse.cdt.managedbuilder.core.IManagedBuildInfo;
 import org.eclipse.cdt.managedbuilder.core.IManagedProject;
@@ -45,6 +52,7 @@ import org.eclipse.cdt.managedbuilder.core.IOption;
 import org.eclipse.cdt.managedbuilder.core.ITool;
 import org.eclipse.cdt.managedbuilder.core.ManagedBuildManager;
 import org.eclipse.cdt.managedbuilder.core.ManagedBuilderCorePlugin;
+import org.eclipse.cdt.managedbuilder.internal.buildmodel.JobSlotServer;
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileStore;
 import org.eclipse.core.filesystem.URIUtil;
@@ -70,6 +78,7 @@ import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.equinox.app.IApplication;
 import org.eclipse.equinox.app.IApplicationContext;
 import org.eclipse.osgi.service.datalocation.Location;
+import org.eclipse.osgi.util.NLS;
 
 /**
  * A headless builder for CDT with additional features.
@@ -80,6 +89,7 @@ import org.eclipse.osgi.service.datalocation.Location;
  *   - Import all projects in the tree :       -importAll  {[uri:/]/path/to/projectTreeURI}
  *   - Build projects / the workspace :        -build      {project_name_reg_ex/config_name_reg_ex | all}
  *   - Clean build projects / the workspace :  -cleanBuild {project_name_reg_ex/config_name_reg_ex | all}
+ *   - Build configurations concurrently :     -parallel   {jobs}
  *   - Add Include path to build :             -I          {include_path}
  *   - Add Include file to build :             -include    {include_file}
  *   - Add preprocessor define to build :      -D          {prepoc_define}
@@ -170,6 +180,14 @@ public class HeadlessBuilder implements IApplication {
 	private final Set<String> projectRegExToClean = new HashSet<String>();
 	private boolean buildAll = false;
 	private boolean cleanAll = false;
+	/** Number of build processes run at the same time, 0 to keep the configured parallel builds */
+	private int parallelJobs = 0;
+	/** Whether the configurations referenced by the built ones are left to other processes */
+	private boolean skipReferences = false;
+	/** Jobserver FIFO of the headless build running this one, to take the job slots from */
+	private String jobserver = null;
+	/** Settings and environment arguments, passed on to the processes building a configuration */
+	private final List<String> childArguments = new ArrayList<String>();
 
 	/** List of Tool Option values being set */
 	private List<ToolOption> toolOptions = new ArrayList<ToolOption>();
@@ -177,6 +195,29 @@ public class HeadlessBuilder implements IApplication {
 	private Map<String, Set<SavedToolOption>> savedToolOptions = new HashMap<String, Set<SavedToolOption>>();
 
 	private static final String MATCH_ALL_CONFIGS = ".*"; //$NON-NLS-1$
+	/** Delay between two checks of the processes building configurations */
+	private static final long CHILD_POLL_MILLIS = 100;
+
+	/**
+	 * A configuration built by a child process, once the configurations it references are built
+	 */
+	private static class ChildBuild {
+		final IConfiguration configuration;
+		/** Whether the configuration is cleaned before being built */
+		boolean clean;
+		/** Builds of the configurations referenced by this one */
+		final Set<ChildBuild> references = new HashSet<ChildBuild>();
+		Process process;
+		File log;
+
+		ChildBuild(IConfiguration configuration) {
+			this.configuration = configuration;
+		}
+
+		String getProjectName() {
+			return configuration.getOwner().getProject().getName();
+		}
+	}
 
 	/*
 	 *  Find all project build configurations that match the regular expression ("project/config")
@@ -253,16 +294,25 @@ public class HeadlessBuilder implements IApplication {
 			int i = 0;
 			for (ICConfigurationDescription cfgDesc : cfgDescs)
 				configs[i++] = ManagedBuildManager.getConfigurationForDescription(cfgDesc);
-			final Map<String, String> map = BuilderFactory.createBuildArgs(configs);
+			// The number of parallel jobs is given by a builder passed in the arguments of
+			// each configuration, so that it is not saved in the project
+			final List<Map<String, String>> maps = new ArrayList<Map<String, String>>();
+			if (parallelJobs > 0 && buildType != IncrementalProjectBuilder.CLEAN_BUILD) {
+				for (IConfiguration config : configs)
+					maps.add(BuilderFactory.createBuildArgs(new IConfiguration[] { config }, createParallelBuilder(config)));
+			} else {
+				maps.add(BuilderFactory.createBuildArgs(configs));
+			}
 
 			IWorkspaceRunnable op = new IWorkspaceRunnable() {
 				@Override
 				public void run(IProgressMonitor monitor) throws CoreException {
 					ICommand[] commands = proj.getDescription().getBuildSpec();
-					monitor.beginTask("", commands.length); //$NON-NLS-1$
+					monitor.beginTask("", commands.length * maps.size()); //$NON-NLS-1$
 					for (int i = 0; i < commands.length; i++) {
 						if (commands[i].getBuilderName().equals(CommonBuilder.BUILDER_ID)) {
-							proj.build(buildType, CommonBuilder.BUILDER_ID, map, new SubProgressMonitor(monitor, 1));
+							for (Map<String, String> map : maps)
+								proj.build(buildType, CommonBuilder.BUILDER_ID, map, new SubProgressMonitor(monitor, 1));
 						} else {
 							proj.build(buildType, commands[i].getBuilderName(),
 							commands[i].getArguments(), new SubProgressMonitor(monitor, 1));
@@ -279,6 +329,195 @@ public class HeadlessBuilder implements IApplication {
 		}
 	}
 
+	/*
+	 *  Find all the configurations of the CDT projects
+	 */
+	private Map<IProject, Set<ICConfigurationDescription>> allConfigurations(IProject[] projectList, Map<IProject, Set<ICConfigurationDescription>> cfgMap) {
+		for (IProject project : projectList) {
+			ICProjectDescription desc = CoreModel.getDefault().getProjectDescription(project, false);
+			if (desc == null)
+				continue;
+			Set<ICConfigurationDescription> set = cfgMap.get(project);
+			if (set == null)
+				set = new HashSet<ICConfigurationDescription>();
+			set.addAll(Arrays.asList(desc.getConfigurations()));
+			cfgMap.put(project, set);
+		}
+		return cfgMap;
+	}
+
+	/*
+	 *  Build the given configurations and the configurations they reference, each one in its own
+	 *  process once the configurations it references are built. The processes take their job slots
+	 *  from a jobserver shared by all of them, or run one job each if it can't be created.
+	 */
+	private boolean buildInChildProcesses(Map<IProject, Set<ICConfigurationDescription>> cfgsToClean,
+			Map<IProject, Set<ICConfigurationDescription>> cfgsToBuild) throws IOException, InterruptedException {
+		// Compute the reference graph of the configurations
+		Map<IConfiguration, ChildBuild> builds = new LinkedHashMap<IConfiguration, ChildBuild>();
+		for (Set<ICConfigurationDescription> cfgDescs : cfgsToClean.values()) {
+			for (ICConfigurationDescription cfgDesc : cfgDescs) {
+				IConfiguration cfg = ManagedBuildManager.getConfigurationForDescription(cfgDesc);
+				if (cfg != null) {
+					ChildBuild build = new ChildBuild(cfg);
+					build.clean = true;
+					builds.put(cfg, build);
+				}
+			}
+		}
+		for (Set<ICConfigurationDescription> cfgDescs : cfgsToBuild.values()) {
+			for (ICConfigurationDescription cfgDesc : cfgDescs) {
+				IConfiguration cfg = ManagedBuildManager.getConfigurationForDescription(cfgDesc);
+				if (cfg != null && !builds.containsKey(cfg))
+					builds.put(cfg, new ChildBuild(cfg));
+			}
+		}
+		// The referenced configurations are built too, before the configurations referencing them
+		List<ChildBuild> toVisit = new ArrayList<ChildBuild>(builds.values());
+		while (!toVisit.isEmpty()) {
+			ChildBuild build = toVisit.remove(toVisit.size() - 1);
+			for (IConfiguration ref : ManagedBuildManager.getReferencedConfigurations(build.configuration)) {
+				ChildBuild refBuild = builds.get(ref);
+				if (refBuild == null) {
+					refBuild = new ChildBuild(ref);
+					builds.put(ref, refBuild);
+					toVisit.add(refBuild);
+				}
+				build.references.add(refBuild);
+			}
+		}
+
+		JobSlotServer slots = JobSlotServer.createJobserver(parallelJobs);
+		List<ChildBuild> pending = new ArrayList<ChildBuild>(builds.values());
+		List<ChildBuild> running = new ArrayList<ChildBuild>();
+		Set<ChildBuild> built = new HashSet<ChildBuild>();
+		Set<ChildBuild> failed = new HashSet<ChildBuild>();
+		while (!pending.isEmpty() || !running.isEmpty()) {
+			// Start the builds whose referenced configurations are built
+			boolean progress = false;
+			for (Iterator<ChildBuild> it = pending.iterator(); it.hasNext();) {
+				ChildBuild build = it.next();
+				if (!Collections.disjoint(build.references, failed)) {
+					System.err.println(NLS.bind(HeadlessBuildMessages.HeadlessBuilder_ChildBuildSkipped, build.getProjectName(), build.configuration.getName()));
+					failed.add(build);
+					it.remove();
+					progress = true;
+				} else if (running.size() < parallelJobs && built.containsAll(build.references)) {
+					startChildBuild(build, slots);
+					running.add(build);
+					it.remove();
+					progress = true;
+				}
+			}
+			if (running.isEmpty()) {
+				if (progress)
+					continue;
+				// The remaining configurations reference each other
+				for (ChildBuild build : pending) {
+					System.err.println(NLS.bind(HeadlessBuildMessages.HeadlessBuilder_ChildBuildCycle, build.getProjectName(), build.configuration.getName()));
+					failed.add(build);
+				}
+				break;
+			}
+
+			// Wait for a build to finish, and print its output at once
+			ChildBuild finished = null;
+			int exitCode = 0;
+			while (finished == null) {
+				for (ChildBuild build : running) {
+					try {
+						exitCode = build.process.exitValue();
+						finished = build;
+						break;
+					} catch (IllegalThreadStateException e) {
+						// still running
+					}
+				}
+				if (finished == null)
+					Thread.sleep(CHILD_POLL_MILLIS);
+			}
+			running.remove(finished);
+			System.out.println(NLS.bind(HeadlessBuildMessages.HeadlessBuilder_ChildBuildOutput,
+					new Object[] { finished.getProjectName(), finished.configuration.getName(), finished.log }));
+			Files.copy(finished.log.toPath(), System.out);
+			System.out.flush();
+			if (exitCode == 0) {
+				built.add(finished);
+			} else {
+				System.err.println(NLS.bind(HeadlessBuildMessages.HeadlessBuilder_ChildBuildFailed,
+						new Object[] { finished.getProjectName(), finished.configuration.getName(), exitCode }));
+				failed.add(finished);
+			}
+		}
+		return failed.isEmpty();
+	}
+
+	/**
+	 * Start the process building a configuration. It runs this application in a workspace of its own,
+	 * kept from one build to the next, into which the projects of the configuration and of the
+	 * configurations it references are imported. Its output goes to a log file in that workspace.
+	 */
+	private void startChildBuild(ChildBuild build, JobSlotServer slots) throws IOException {
+		IConfiguration cfg = build.configuration;
+		File workspace = ManagedBuilderCorePlugin.getDefault().getStateLocation()
+				.append("headless").append(build.getProjectName() + '.' + cfg.getId()).toFile(); //$NON-NLS-1$
+		workspace.mkdirs();
+
+		List<String> command = getLauncherCommand();
+		command.add("-data"); //$NON-NLS-1$
+		command.add(workspace.getAbsolutePath());
+		Set<IProject> projects = new LinkedHashSet<IProject>();
+		List<IConfiguration> toVisit = new ArrayList<IConfiguration>();
+		toVisit.add(cfg);
+		while (!toVisit.isEmpty()) {
+			IConfiguration config = toVisit.remove(toVisit.size() - 1);
+			if (projects.add(config.getOwner().getProject()))
+				toVisit.addAll(Arrays.asList(ManagedBuildManager.getReferencedConfigurations(config)));
+		}
+		for (IProject project : projects) {
+			command.add("-import"); //$NON-NLS-1$
+			command.add(project.getLocationURI().toString());
+		}
+		command.add(build.clean ? "-cleanBuild" : "-build"); //$NON-NLS-1$ //$NON-NLS-2$
+		command.add(Pattern.quote(build.getProjectName()) + '/' + Pattern.quote(cfg.getName()));
+		command.add("-skipReferences"); //$NON-NLS-1$
+		command.add("-parallel"); //$NON-NLS-1$
+		if (slots != null) {
+			command.add(Integer.toString(parallelJobs));
+			command.add("-jobserver"); //$NON-NLS-1$
+			command.add(slots.getJobserverPath());
+		} else {
+			command.add("1"); //$NON-NLS-1$
+		}
+		command.addAll(childArguments);
+
+		build.log = new File(workspace, "build.log"); //$NON-NLS-1$
+		ProcessBuilder processBuilder = new ProcessBuilder(command);
+		processBuilder.redirectErrorStream(true);
+		processBuilder.redirectOutput(build.log);
+		build.process = processBuilder.start();
+	}
+
+	/**
+	 * Returns the command running this application: the launcher of the running instance,
+	 * or the Java VM running the Equinox launcher if the instance wasn't started by a launcher
+	 */
+	private List<String> getLauncherCommand() {
+		List<String> command = new ArrayList<String>();
+		String launcher = System.getProperty("eclipse.launcher"); //$NON-NLS-1$
+		if (launcher != null && new File(launcher).isFile()) {
+			command.add(launcher);
+			command.add("-nosplash"); //$NON-NLS-1$
+		} else {
+			command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			command.add("-jar"); //$NON-NLS-1$
+			command.add(System.getProperty("java.class.path")); //$NON-NLS-1$
+		}
+		command.add("-application"); //$NON-NLS-1$
+		command.add(ManagedBuilderCorePlugin.getUniqueIdentifier() + ".headlessbuild"); //$NON-NLS-1$
+		return command;
+	}
+
 	/**
 	 * Import a project into the workspace
 	 * @param projURIStr base URI string
@@ -419,6 +658,14 @@ public class HeadlessBuilder implements IApplication {
 			if (!getArguments((String[])context.getArguments().get(IApplicationContext.APPLICATION_ARGS)))
 				return ERROR;
 
+			// Build a single configuration for the headless build running this one
+			if (skipReferences)
+				CommonBuilder.setBuildReferencedConfigs(false);
+			if (jobserver != null && !JobSlotServer.join(jobserver, parallelJobs)) {
+				System.err.println(HeadlessBuildMessages.HeadlessBuilder_CouldntOpenJobserver + jobserver);
+				return ERROR;
+			}
+
 			// Set the console environment so build output is echo'd to stdout
 			if (System.getProperty("org.eclipse.cdt.core.console") == null) //$NON-NLS-1$
 				System.setProperty("org.eclipse.cdt.core.console", "org.eclipse.cdt.core.systemConsole"); //$NON-NLS-1$ //$NON-NLS-2$
@@ -465,41 +712,68 @@ public class HeadlessBuilder implements IApplication {
 						ManagedBuildManager.saveBuildInfo(project, true);
 					}
 
-				// Clean the projects
-				if (cleanAll) {
-					// Ensure we clean all the configurations
-					ACBuilder.setAllConfigBuild(true);
+				if (parallelJobs > 1 && !skipReferences) {
+					// Build each configuration in its own process, those not referencing each other concurrently
+					Map<IProject, Set<ICConfigurationDescription>> configsToClean = new HashMap<IProject, Set<ICConfigurationDescription>>();
+					if (cleanAll) {
+						allConfigurations(allProjects, configsToClean);
+					} else {
+						for (String regEx : projectRegExToClean)
+							matchConfigurations(regEx, allProjects, configsToClean);
+					}
+					if (buildAll) {
+						allConfigurations(allProjects, configsToBuild);
+						// The projects which aren't CDT projects are built by this process
+						for (IProject p : allProjects) {
+							if (!p.isOpen() || CoreModel.getDefault().getProjectDescription(p, false) != null)
+								continue;
+							if (cleanAll)
+								p.build(IncrementalProjectBuilder.CLEAN_BUILD, monitor);
+							p.build(IncrementalProjectBuilder.FULL_BUILD, monitor);
+							buildSuccessful = buildSuccessful && isProjectSuccesfullyBuild(p);
+						}
+					} else {
+						for (String regEx : projectRegExToBuild)
+							matchConfigurations(regEx, allProjects, configsToBuild);
+					}
+					buildSuccessful = buildInChildProcesses(configsToClean, configsToBuild) && buildSuccessful;
+				} else {
+					// Clean the projects
+					if (cleanAll) {
+						// Ensure we clean all the configurations
+						ACBuilder.setAllConfigBuild(true);
 
-					System.out.println(HeadlessBuildMessages.HeadlessBuilder_cleaning_all_projects);
-					root.getWorkspace().build(IncrementalProjectBuilder.CLEAN_BUILD, monitor);
+						System.out.println(HeadlessBuildMessages.HeadlessBuilder_cleaning_all_projects);
+						root.getWorkspace().build(IncrementalProjectBuilder.CLEAN_BUILD, monitor);
 
-					// Reset the build_all_configs preference value to its previous state
-					ACBuilder.setAllConfigBuild(buildAllConfigs);
-				} else {
-					// Resolve the regular expression project names to build configurations
-					for (String regEx : projectRegExToClean)
-						matchConfigurations(regEx, allProjects, configsToBuild);
-					// Clean the list of configurations
-					buildConfigurations(configsToBuild, monitor, IncrementalProjectBuilder.CLEAN_BUILD);
-				}
+						// Reset the build_all_configs preference value to its previous state
+						ACBuilder.setAllConfigBuild(buildAllConfigs);
+					} else {
+						// Resolve the regular expression project names to build configurations
+						for (String regEx : projectRegExToClean)
+							matchConfigurations(regEx, allProjects, configsToBuild);
+						// Clean the list of configurations
+						buildConfigurations(configsToBuild, monitor, IncrementalProjectBuilder.CLEAN_BUILD);
+					}
 
-				// Build the projects the user wants building
-				if (buildAll) {
-					// Ensure we build all the configurations
-					ACBuilder.setAllConfigBuild(true);
+					// Build the projects the user wants building
+					if (buildAll) {
+						// Ensure we build all the configurations
+						ACBuilder.setAllConfigBuild(true);
 
-					System.out.println(HeadlessBuildMessages.HeadlessBuilder_building_all);
-					root.getWorkspace().build(IncrementalProjectBuilder.FULL_BUILD, monitor);
-					for(IProject p : root.getProjects())
-						buildSuccessful = buildSuccessful && isProjectSuccesfullyBuild(p);
-				} else {
-					// Resolve the regular expression project names to build configurations
-					for (String regEx : projectRegExToBuild)
-						matchConfigurations(regEx, allProjects, configsToBuild);
-					// Build the list of configurations
-					buildConfigurations(configsToBuild, monitor, IncrementalProjectBuilder.FULL_BUILD);
-					for(IProject p : configsToBuild.keySet())
-						buildSuccessful = buildSuccessful && isProjectSuccesfullyBuild(p);
+						System.out.println(HeadlessBuildMessages.HeadlessBuilder_building_all);
+						root.getWorkspace().build(IncrementalProjectBuilder.FULL_BUILD, monitor);
+						for(IProject p : root.getProjects())
+							buildSuccessful = buildSuccessful && isProjectSuccesfullyBuild(p);
+					} else {
+						// Resolve the regular expression project names to build configurations
+						for (String regEx : projectRegExToBuild)
+							matchConfigurations(regEx, allProjects, configsToBuild);
+						// Build the list of configurations
+						buildConfigurations(configsToBuild, monitor, IncrementalProjectBuilder.FULL_BUILD);
+						for(IProject p : configsToBuild.keySet())
+							buildSuccessful = buildSuccessful && isProjectSuccesfullyBuild(p);
+					}
 				}
 			} finally {
 				// Reset the tool options
@@ -573,6 +847,8 @@ public class HeadlessBuilder implements IApplication {
 	 *   -importAll  {[uri:/]/path/to/projectTreeURI} Import all projects in the tree
 	 *   -build      {project_name_reg_ex/config_name_reg_ex | all}
 	 *   -cleanBuild {project_name_reg_ex/config_name_reg_ex | all}
+	 *   -parallel   {jobs} number of build processes run at the same time, each configuration
+	 *                      being built in its own process when more than one
 	 *   -I          {include_path} additional include_path to add to tools
 	 *   -include    {include_file} additional include_file to pass to tools
 	 *   -D          {prepoc_define} addition preprocessor defines to pass to the tools
@@ -585,6 +861,10 @@ public class HeadlessBuilder implements IApplication {
 	 *   -Tp         {toolid} {optionid=value} prepend to a tool option value
 	 *   -Tr         {toolid} {optionid=value} remove a tool option value
 	 *
+	 * Internal arguments, passed to the processes building a single configuration
+	 *   -skipReferences       don't build the referenced configurations, built by other processes
+	 *   -jobserver  {fifo}    take the job slots from the jobserver of the headless build running this one
+	 *
 	 * Each argument may be specified more than once
 	 * @param args String[] of arguments to parse
 	 * @return boolean indicating success
@@ -602,7 +882,17 @@ public class HeadlessBuilder implements IApplication {
 					projectRegExToBuild.add(args[++i]);
 				} else if ("-cleanBuild".equals(args[i])) { //$NON-NLS-1$
 					projectRegExToClean.add(args[++i]);
+				} else if ("-parallel".equals(args[i])) { //$NON-NLS-1$
+					parallelJobs = Integer.parseInt(args[++i]);
+					if (parallelJobs < 1)
+						throw new Exception(HeadlessBuildMessages.HeadlessBuilder_invalid_argument + args[i]);
+				} else if ("-skipReferences".equals(args[i])) { //$NON-NLS-1$
+					skipReferences = true;
+				} else if ("-jobserver".equals(args[i])) { //$NON-NLS-1$
+					jobserver = args[++i];
 				} else if ("-D".equals(args[i])) { //$NON-NLS-1$
+					childArguments.add(args[i]);
+					childArguments.add(args[i + 1]);
 					String macro = args[++i];
 					String macroVal = ""; //$NON-NLS-1$
 					if (macro.indexOf('=') != -1) {
@@ -611,16 +901,28 @@ public class HeadlessBuilder implements IApplication {
 					}
 					HeadlessBuilderExternalSettingsProvider.additionalSettings.add(CDataUtil.createCMacroEntry(macro, macroVal, 0));
 				} else if ("-I".equals(args[i])) { //$NON-NLS-1$
+					childArguments.add(args[i]);
+					childArguments.add(args[i + 1]);
 					HeadlessBuilderExternalSettingsProvider.additionalSettings.add(CDataUtil.createCIncludePathEntry(args[++i], 0));
 				} else if ("-include".equals(args[i])) { //$NON-NLS-1$
+					childArguments.add(args[i]);
+					childArguments.add(args[i + 1]);
 					HeadlessBuilderExternalSettingsProvider.additionalSettings.add(CDataUtil.createCIncludeFileEntry(args[++i], 0));
 				} else if ("-E".equals(args[i])) { //$NON-NLS-1$
+					childArguments.add(args[i]);
+					childArguments.add(args[i + 1]);
 					addEnvironmentVariable(args[++i], IEnvironmentVariable.ENVVAR_REPLACE);
 				} else if ("-Ea".equals(args[i])) { //$NON-NLS-1$
+					childArguments.add(args[i]);
+					childArguments.add(args[i + 1]);
 					addEnvironmentVariable(args[++i], IEnvironmentVariable.ENVVAR_APPEND);
 				} else if ("-Ep".equals(args[i])) { //$NON-NLS-1$
+					childArguments.add(args[i]);
+					childArguments.add(args[i + 1]);
 					addEnvironmentVariable(args[++i], IEnvironmentVariable.ENVVAR_PREPEND);
 				} else if ("-Er".equals(args[i])) { //$NON-NLS-1$
+					childArguments.add(args[i]);
+					childArguments.add(args[i + 1]);
 					addEnvironmentVariable(args[++i], IEnvironmentVariable.ENVVAR_REMOVE);
 				} else if ("-T".equals(args[i])) { //$NON-NLS-1$
 					String toolId = args[++i];
@@ -651,6 +953,7 @@ public class HeadlessBuilder implements IApplication {
 			System.err.println(HeadlessBuildMessages.HeadlessBuilder_importAll);
 			System.err.println(HeadlessBuildMessages.HeadlessBuilder_usage_build);
 			System.err.println(HeadlessBuildMessages.HeadlessBuilder_usage_clean_build);
+			System.err.println(HeadlessBuildMessages.HeadlessBuilder_usage_parallel);
 			System.err.println(HeadlessBuildMessages.HeadlessBuilder_InlucdePath);
 			System.err.println(HeadlessBuildMessages.HeadlessBuilder_IncludeFile);
 			System.err.println(HeadlessBuildMessages.HeadlessBuilder_PreprocessorDefine);
@@ -792,6 +1095,16 @@ public class HeadlessBuilder implements IApplication {
 		}
 	}
 
+	/**
+	 * Create a copy of the builder of a configuration running the given number of parallel jobs,
+	 * to be passed in the build arguments. The configuration itself is left unchanged.
+	 */
+	private IBuilder createParallelBuilder(IConfiguration configuration) throws CoreException {
+		IBuilder builder = BuilderFactory.createCustomBuilder(configuration, configuration.getBuilder());
+		builder.setParallelizationNum(parallelJobs);
+		return builder;
+	}
+
 	@Override
 	public void stop() {
 	}
@@ -248,6 +248,7 @@ public abstract class HoldsOptions extends BuildObject implements IHoldsOptions,
 //			throw new IllegalArgumentException();
 
 		getOptionMap().remove(option.getId());
+		Option.incrementGeneration();
 		setDirty(true);
 		setRebuildState(true);
 
@@ -420,6 +421,7 @@ public abstract class HoldsOptions extends BuildObject implements IHoldsOptions,
 
 	public void addOption(Option option) {
 		getOptionMap().put(option.getId(), option);
+		Option.incrementGeneration();
 	}
 	/**
 	 * Memory-safe way to access the map of category IDs to categories
@@ -655,6 +657,7 @@ public abstract class HoldsOptions extends BuildObject implements IHoldsOptions,
 	public void propertiesChanged() {
 		if(isExtensionElement())
 			return;
+		Option.incrementGeneration();
 		adjustOptions(false);
 	}
 
@@ -19,6 +19,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.cdt.core.settings.model.ICStorageElement;
 import org.eclipse.cdt.internal.core.SafeStringInterner;
@@ -53,6 +54,8 @@ public class Option extends BuildObject implements IOption, IBuildPropertiesRest
 	public static final String EMPTY_STRING = new String().intern();
 	public static final String[] EMPTY_STRING_ARRAY = new String[0];
 	public static final OptionStringValue[] EMPTY_LV_ARRAY = new OptionStringValue[0];
+	// Incremented when the value or the command of an option changes
+	private static final AtomicInteger generation = new AtomicInteger();
 
 	//  Superclass
 	private IOption superClass;
@@ -1774,6 +1777,7 @@ public class Option extends BuildObject implements IOption, IBuildPropertiesRest
 
 	@Override
 	public void setDefaultValue(Object v) {
+		incrementGeneration();
 		if(v instanceof List<?>) {
 			@SuppressWarnings("unchecked")
 			List<OptionStringValue> vList = valueListToListValueList((List<String>)v, false);
@@ -1789,6 +1793,7 @@ public class Option extends BuildObject implements IOption, IBuildPropertiesRest
 
 	@Override
 	public void setCategory(IOptionCategory category) {
+		incrementGeneration();
 		if (this.category != category) {
 			this.category = category;
 			if (category != null) {
@@ -1805,6 +1810,7 @@ public class Option extends BuildObject implements IOption, IBuildPropertiesRest
 
 	@Override
 	public void setCommand(String cmd) {
+		incrementGeneration();
 		if (cmd == null && command == null) {
 			return;
 		}
@@ -1819,6 +1825,7 @@ public class Option extends BuildObject implements IOption, IBuildPropertiesRest
 
 	@Override
 	public void setCommandFalse(String cmd) {
+		incrementGeneration();
 		if (cmd == null && commandFalse == null) {
 			return;
 		}
@@ -1905,6 +1912,7 @@ public class Option extends BuildObject implements IOption, IBuildPropertiesRest
 
 	@Override
 	public void setValue(boolean value) throws BuildException {
+		incrementGeneration();
 		if (/*!isExtensionElement() && */getValueType() == BOOLEAN){
 			this.value = new Boolean(value);
 		} else {
@@ -1919,6 +1927,7 @@ public class Option extends BuildObject implements IOption, IBuildPropertiesRest
 
 	@Override
 	public void setValue(String value) throws BuildException {
+		incrementGeneration();
 		// Note that we can still set the human-readable value here
 		if (/*!isExtensionElement() && */(getValueType() == STRING || getValueType() == ENUMERATED || getValueType() == TREE)) {
 			this.value = value;
@@ -1934,6 +1943,7 @@ public class Option extends BuildObject implements IOption, IBuildPropertiesRest
 
 	@Override
 	public void setValue(String [] value) throws BuildException {
+		incrementGeneration();
 		if (/*!isExtensionElement() && */
 				(getValueType() == STRING_LIST
 				|| getValueType() == INCLUDE_PATH
@@ -1968,6 +1978,7 @@ public class Option extends BuildObject implements IOption, IBuildPropertiesRest
 	}
 
 	public void setValue(OptionStringValue [] value) throws BuildException {
+		incrementGeneration();
 		if (/*!isExtensionElement() && */
 				(getValueType() == STRING_LIST
 				|| getValueType() == INCLUDE_PATH
@@ -2003,6 +2014,7 @@ public class Option extends BuildObject implements IOption, IBuildPropertiesRest
 
 	@Override
 	public void setValue(Object v) {
+		incrementGeneration();
 		if(v instanceof List<?>) {
 			@SuppressWarnings("unchecked")
 			List<OptionStringValue> vList = valueListToListValueList((List<String>)v, false);
@@ -2018,6 +2030,7 @@ public class Option extends BuildObject implements IOption, IBuildPropertiesRest
 
 	@Override
 	public void setValueType(int type) {
+		incrementGeneration();
 		// TODO:  Verify that this is a valid type
 		if (valueType == null || valueType.intValue() != type) {
 			valueType = new Integer(type);
@@ -2156,6 +2169,18 @@ public class Option extends BuildObject implements IOption, IBuildPropertiesRest
 		this.isDirty = isDirty;
 	}
 
+	/**
+	 * Returns a number which changes whenever the value or the command of an
+	 * option changes, or options are added or removed
+	 */
+	public static int getGeneration() {
+		return generation.get();
+	}
+
+	public static void incrementGeneration() {
+		generation.incrementAndGet();
+	}
+
 	public void resolveReferences() {
 		if (!resolved) {
 			resolved = true;
@@ -2433,6 +2458,7 @@ public class Option extends BuildObject implements IOption, IBuildPropertiesRest
 	}
 
 	public void setSuperClass(IOption superClass) {
+		incrementGeneration();
 		if ( this.superClass != superClass ) {
 			this.superClass = superClass;
 			if ( this.superClass == null) {
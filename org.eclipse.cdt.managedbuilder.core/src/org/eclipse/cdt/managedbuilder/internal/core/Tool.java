@@ -170,6 +170,24 @@ public class Tool extends HoldsOptions implements ITool, IOptionCategory, IMatch
 	private List<Tool> identicalList;
 	private HashMap<String, PathInfoCache> discoveredInfoMap = new HashMap<String, PathInfoCache>(2);
 	private String scannerConfigDiscoveryProfileId;
+	private FlagTemplateEntry[] flagTemplate;
+	private int flagTemplateGeneration;
+
+	/**
+	 * Option of the command line template, with its flag if it does not
+	 * depend on the file being built
+	 */
+	private static class FlagTemplateEntry {
+		final IOption option;
+		final String flag;
+		final boolean dynamicApplicability;
+
+		FlagTemplateEntry(IOption option, String flag, boolean dynamicApplicability) {
+			this.option = option;
+			this.flag = flag;
+			this.dynamicApplicability = dynamicApplicability;
+		}
+	}
 
 	/*
 	 *  C O N S T R U C T O R S
@@ -1617,6 +1635,7 @@ public class Tool extends HoldsOptions implements ITool, IOptionCategory, IMatch
 				superClassId = this.superClass.getId();
 			}
 
+			Option.incrementGeneration();
 			if(!isExtensionElement())
 				setDirty(true);
 		}
@@ -2555,170 +2574,272 @@ public class Tool extends HoldsOptions implements ITool, IOptionCategory, IMatch
 	public String[] getToolCommandFlags(IPath inputFileLocation, IPath outputFileLocation,
 				SupplierBasedCdtVariableSubstitutor macroSubstitutor,
 				IMacroContextInfoProvider provider) {
-		IOption[] opts = getOptions();
 		ArrayList<String> flags = new ArrayList<String>();
-		StringBuilder sb = new StringBuilder();
-		for (IOption option : opts) {
+		IBuildObject config = null;
+		for (FlagTemplateEntry entry : getFlagTemplate()) {
+			String flag = entry.flag;
+			if (flag == null) {
+				IOption option = entry.option;
+				if (entry.dynamicApplicability) {
+					if (config == null)
+						config = getCommandConfiguration();
+					if (!isOptionUsedInCommandLine(option, config))
+						continue;
+					option = getOptionToGenerate(option);
+				}
+				flag = generateOptionFlag(option, inputFileLocation, outputFileLocation, macroSubstitutor, provider);
+			}
+			if (flag != null && flag.length() > 0)
+				flags.add(flag);
+		}
+		String[] f = new String[ flags.size() ];
+		return flags.toArray( f );
+	}
+
+	/**
+	 * Returns the command line template of the tool, built again when an option
+	 * changed. The flags of the options which do not use build macros nor
+	 * command generators are computed once, the others are resolved for each file.
+	 */
+	private synchronized FlagTemplateEntry[] getFlagTemplate() {
+		int generation = Option.getGeneration();
+		if (flagTemplate != null && flagTemplateGeneration == generation)
+			return flagTemplate;
+
+		IBuildObject config = getCommandConfiguration();
+		SupplierBasedCdtVariableSubstitutor macroSubstitutor = new BuildfileMacroSubstitutor(null,EMPTY_STRING,WHITE_SPACE);
+		List<FlagTemplateEntry> entries = new ArrayList<FlagTemplateEntry>();
+		for (IOption option : getOptions()) {
 			if (option == null)
 				continue;
-			sb.setLength( 0 );
 
-			// check to see if the option has an applicability calculator
 			IOptionApplicability applicabilityCalculator = option.getApplicabilityCalculator();
-			IOptionCategory cat = option.getCategory();
-			IOptionCategoryApplicability catApplicabilityCalculator = cat.getApplicabilityCalculator();
-
-			IBuildObject config = null;
-			IBuildObject parent = getParent();
-			if ( parent instanceof IResourceConfiguration ) {
-				config = parent;
-			} else if ( parent instanceof IToolChain ){
-				config = ((IToolChain)parent).getParent();
+			IOptionCategoryApplicability catApplicabilityCalculator = option.getCategory().getApplicabilityCalculator();
+			// Only the boolean expressions are known to depend on the option values alone
+			if (catApplicabilityCalculator != null || (applicabilityCalculator != null
+					&& !(applicabilityCalculator instanceof BooleanExpressionApplicabilityCalculator))) {
+				entries.add(new FlagTemplateEntry(option, null, true));
+			} else if (applicabilityCalculator == null || applicabilityCalculator.isOptionUsedInCommandLine(config, this, option)) {
+				String flag = null;
+				if (isConstantFlag(option))
+					flag = generateOptionFlag(option, null, null, macroSubstitutor, BuildMacroProvider.getDefault());
+				entries.add(new FlagTemplateEntry(option, flag, false));
 			}
+		}
+		flagTemplate = entries.toArray(new FlagTemplateEntry[entries.size()]);
+		flagTemplateGeneration = generation;
+		return flagTemplate;
+	}
 
-			if ((catApplicabilityCalculator==null || catApplicabilityCalculator.isOptionCategoryVisible(config, this, cat))
-			 && (applicabilityCalculator == null || applicabilityCalculator.isOptionUsedInCommandLine(config, this, option))) {
-
-				// update option in case when its value changed.
-				// This code is added to fix bug #219684 and
-				// avoid using "getOptionToSet()"
-				if (applicabilityCalculator != null &&
-					!(applicabilityCalculator instanceof BooleanExpressionApplicabilityCalculator)) {
-					if (option.getSuperClass() != null)
-						option = getOptionBySuperClassId(option.getSuperClass().getId());
-					// bug #405904 - if the option is an extension element (first time we build),
-					// use the option id as a superclass id, otherwise we won't find the option we may have just
-					// set and will end up with the default setting
-					else if (option.isExtensionElement())
-						option = getOptionBySuperClassId(option.getId());
-					else
-						option = getOptionById(option.getId());
-				}
-
-				try{
-				boolean generateDefaultCommand = true;
-				IOptionCommandGenerator commandGenerator = option.getCommandGenerator();
-				if(commandGenerator != null) {
-					IMacroContextInfo info = provider.getMacroContextInfo(BuildMacroProvider.CONTEXT_FILE, new FileContextData(inputFileLocation, outputFileLocation, option, this));
-					if(info != null) {
-						macroSubstitutor.setMacroContextInfo(info);
-						String command = commandGenerator.generateCommand(option, macroSubstitutor);
-						if(command != null) {
-							sb.append(command);
-							generateDefaultCommand = false;
-						}
+	/**
+	 * Returns true if the flag of the option does not depend on the file being built
+	 */
+	private static boolean isConstantFlag(IOption option) {
+		if (option.getCommandGenerator() != null)
+			return false;
+		try {
+			switch (option.getValueType()) {
+			case IOption.BOOLEAN :
+			case IOption.ENUMERATED :
+			case IOption.TREE :
+				return true;
+			case IOption.STRING :
+				return option.getStringValue().indexOf('$') < 0;
+			case IOption.STRING_LIST :
+			case IOption.INCLUDE_FILES :
+			case IOption.INCLUDE_PATH :
+			case IOption.LIBRARY_PATHS :
+			case IOption.LIBRARY_FILES :
+			case IOption.MACRO_FILES :
+			case IOption.UNDEF_INCLUDE_FILES :
+			case IOption.UNDEF_INCLUDE_PATH :
+			case IOption.UNDEF_LIBRARY_PATHS :
+			case IOption.UNDEF_LIBRARY_FILES :
+			case IOption.UNDEF_MACRO_FILES :
+			case IOption.PREPROCESSOR_SYMBOLS :
+			case IOption.UNDEF_PREPROCESSOR_SYMBOLS :
+				String[] values = option.getBasicStringListValue();
+				if (values != null) {
+					for (String value : values) {
+						if (value.indexOf('$') >= 0)
+							return false;
 					}
 				}
-				if(generateDefaultCommand) {
-				switch (option.getValueType()) {
-				case IOption.BOOLEAN :
-					String boolCmd;
-					if (option.getBooleanValue()) {
-						boolCmd = option.getCommand();
-					} else {
-						// Note: getCommandFalse is new with CDT 2.0
-						boolCmd = option.getCommandFalse();
-					}
-					if (boolCmd != null && boolCmd.length() > 0) {
-						sb.append(boolCmd);
-					}
-					break;
+				return true;
+			default :
+				return true;
+			}
+		} catch (BuildException e) {
+			// Reported when the flag is generated
+			return false;
+		}
+	}
 
-				case IOption.ENUMERATED :
-					String enumVal = option.getEnumCommand(option.getSelectedEnum());
-					if (enumVal.length() > 0) {
-						sb.append(enumVal);
-					}
-					break;
+	private IBuildObject getCommandConfiguration() {
+		IBuildObject parent = getParent();
+		if ( parent instanceof IResourceConfiguration ) {
+			return parent;
+		} else if ( parent instanceof IToolChain ){
+			return ((IToolChain)parent).getParent();
+		}
+		return null;
+	}
 
-				case IOption.TREE :
-					String treeVal = option.getCommand(option.getStringValue());
-					if (treeVal.length() > 0) {
-						sb.append(treeVal);
-					}
-					break;
+	private boolean isOptionUsedInCommandLine(IOption option, IBuildObject config) {
+		IOptionApplicability applicabilityCalculator = option.getApplicabilityCalculator();
+		IOptionCategory cat = option.getCategory();
+		IOptionCategoryApplicability catApplicabilityCalculator = cat.getApplicabilityCalculator();
+		return (catApplicabilityCalculator==null || catApplicabilityCalculator.isOptionCategoryVisible(config, this, cat))
+			 && (applicabilityCalculator == null || applicabilityCalculator.isOptionUsedInCommandLine(config, this, option));
+	}
+
+	private IOption getOptionToGenerate(IOption option) {
+		// update option in case when its value changed.
+		// This code is added to fix bug #219684 and
+		// avoid using "getOptionToSet()"
+		IOptionApplicability applicabilityCalculator = option.getApplicabilityCalculator();
+		if (applicabilityCalculator != null &&
+			!(applicabilityCalculator instanceof BooleanExpressionApplicabilityCalculator)) {
+			if (option.getSuperClass() != null)
+				option = getOptionBySuperClassId(option.getSuperClass().getId());
+			// bug #405904 - if the option is an extension element (first time we build),
+			// use the option id as a superclass id, otherwise we won't find the option we may have just
+			// set and will end up with the default setting
+			else if (option.isExtensionElement())
+				option = getOptionBySuperClassId(option.getId());
+			else
+				option = getOptionById(option.getId());
+		}
+		return option;
+	}
 
-				case IOption.STRING :{
-						String strCmd = option.getCommand();
-						String val = option.getStringValue();
-						IMacroContextInfo info = provider.getMacroContextInfo(IBuildMacroProvider.CONTEXT_FILE, new FileContextData(inputFileLocation, outputFileLocation, option, this));
-						if(info != null){
-							macroSubstitutor.setMacroContextInfo(info);
-							if (val.length() > 0
-								&& (val = CdtVariableResolver.resolveToString(val, macroSubstitutor)).length() > 0) {
-								sb.append( evaluateCommand( strCmd, val ) );
-							}
-						}
-					}
-					break;
+	/**
+	 * Returns the trimmed flag of the option, or null if it could not be generated
+	 */
+	private String generateOptionFlag(IOption option, IPath inputFileLocation, IPath outputFileLocation,
+				SupplierBasedCdtVariableSubstitutor macroSubstitutor,
+				IMacroContextInfoProvider provider) {
+		StringBuilder sb = new StringBuilder();
+		try{
+		boolean generateDefaultCommand = true;
+		IOptionCommandGenerator commandGenerator = option.getCommandGenerator();
+		if(commandGenerator != null) {
+			IMacroContextInfo info = provider.getMacroContextInfo(BuildMacroProvider.CONTEXT_FILE, new FileContextData(inputFileLocation, outputFileLocation, option, this));
+			if(info != null) {
+				macroSubstitutor.setMacroContextInfo(info);
+				String command = commandGenerator.generateCommand(option, macroSubstitutor);
+				if(command != null) {
+					sb.append(command);
+					generateDefaultCommand = false;
+				}
+			}
+		}
+		if(generateDefaultCommand) {
+		switch (option.getValueType()) {
+		case IOption.BOOLEAN :
+			String boolCmd;
+			if (option.getBooleanValue()) {
+				boolCmd = option.getCommand();
+			} else {
+				// Note: getCommandFalse is new with CDT 2.0
+				boolCmd = option.getCommandFalse();
+			}
+			if (boolCmd != null && boolCmd.length() > 0) {
+				sb.append(boolCmd);
+			}
+			break;
 
-				case IOption.STRING_LIST :
-				case IOption.INCLUDE_FILES :
-				case IOption.INCLUDE_PATH :
-				case IOption.LIBRARY_PATHS :
-				case IOption.LIBRARY_FILES :
-				case IOption.MACRO_FILES :
-				case IOption.UNDEF_INCLUDE_FILES :
-				case IOption.UNDEF_INCLUDE_PATH :
-				case IOption.UNDEF_LIBRARY_PATHS :
-				case IOption.UNDEF_LIBRARY_FILES :
-				case IOption.UNDEF_MACRO_FILES :				{
-						String listCmd = option.getCommand();
-						IMacroContextInfo info = provider.getMacroContextInfo(IBuildMacroProvider.CONTEXT_FILE,
-								new FileContextData(inputFileLocation, outputFileLocation, option, this));
-						if(info != null){
-							macroSubstitutor.setMacroContextInfo(info);
-							String[] list = CdtVariableResolver.resolveStringListValues(option.getBasicStringListValue(), macroSubstitutor, true);
-							if(list != null){
-								for (String temp : list) {
-									if(temp.length() > 0 && !temp.equals(EMPTY_QUOTED_STRING))
-										sb.append( evaluateCommand( listCmd, temp ) + WHITE_SPACE );
-								}
-							}
-						}
-					}
-					break;
+		case IOption.ENUMERATED :
+			String enumVal = option.getEnumCommand(option.getSelectedEnum());
+			if (enumVal.length() > 0) {
+				sb.append(enumVal);
+			}
+			break;
 
-				case IOption.PREPROCESSOR_SYMBOLS :
-				case IOption.UNDEF_PREPROCESSOR_SYMBOLS :{
-					String defCmd = option.getCommand();
-					IMacroContextInfo info = provider.getMacroContextInfo(IBuildMacroProvider.CONTEXT_FILE,
-							new FileContextData(inputFileLocation, outputFileLocation, option, this));
-					if(info != null){
-						macroSubstitutor.setMacroContextInfo(info);
-						String[] symbols = CdtVariableResolver.resolveStringListValues(option.getBasicStringListValue(), macroSubstitutor, true);
-						if(symbols != null){
-							for (String temp : symbols) {
-								if(temp.length() > 0)
-									sb.append( evaluateCommand( defCmd, temp ) + WHITE_SPACE);
-							}
-						}
+		case IOption.TREE :
+			String treeVal = option.getCommand(option.getStringValue());
+			if (treeVal.length() > 0) {
+				sb.append(treeVal);
+			}
+			break;
+
+		case IOption.STRING :{
+				String strCmd = option.getCommand();
+				String val = option.getStringValue();
+				IMacroContextInfo info = provider.getMacroContextInfo(IBuildMacroProvider.CONTEXT_FILE, new FileContextData(inputFileLocation, outputFileLocation, option, this));
+				if(info != null){
+					macroSubstitutor.setMacroContextInfo(info);
+					if (val.length() > 0
+						&& (val = CdtVariableResolver.resolveToString(val, macroSubstitutor)).length() > 0) {
+						sb.append( evaluateCommand( strCmd, val ) );
 					}
 				}
-					break;
-
-				default :
-					break;
+			}
+			break;
+
+		case IOption.STRING_LIST :
+		case IOption.INCLUDE_FILES :
+		case IOption.INCLUDE_PATH :
+		case IOption.LIBRARY_PATHS :
+		case IOption.LIBRARY_FILES :
+		case IOption.MACRO_FILES :
+		case IOption.UNDEF_INCLUDE_FILES :
+		case IOption.UNDEF_INCLUDE_PATH :
+		case IOption.UNDEF_LIBRARY_PATHS :
+		case IOption.UNDEF_LIBRARY_FILES :
+		case IOption.UNDEF_MACRO_FILES :				{
+				String listCmd = option.getCommand();
+				IMacroContextInfo info = provider.getMacroContextInfo(IBuildMacroProvider.CONTEXT_FILE,
+						new FileContextData(inputFileLocation, outputFileLocation, option, this));
+				if(info != null){
+					macroSubstitutor.setMacroContextInfo(info);
+					String[] list = CdtVariableResolver.resolveStringListValues(option.getBasicStringListValue(), macroSubstitutor, true);
+					if(list != null){
+						for (String temp : list) {
+							if(temp.length() > 0 && !temp.equals(EMPTY_QUOTED_STRING))
+								sb.append( evaluateCommand( listCmd, temp ) + WHITE_SPACE );
+						}
+					}
 				}
+			}
+			break;
+
+		case IOption.PREPROCESSOR_SYMBOLS :
+		case IOption.UNDEF_PREPROCESSOR_SYMBOLS :{
+			String defCmd = option.getCommand();
+			IMacroContextInfo info = provider.getMacroContextInfo(IBuildMacroProvider.CONTEXT_FILE,
+					new FileContextData(inputFileLocation, outputFileLocation, option, this));
+			if(info != null){
+				macroSubstitutor.setMacroContextInfo(info);
+				String[] symbols = CdtVariableResolver.resolveStringListValues(option.getBasicStringListValue(), macroSubstitutor, true);
+				if(symbols != null){
+					for (String temp : symbols) {
+						if(temp.length() > 0)
+							sb.append( evaluateCommand( defCmd, temp ) + WHITE_SPACE);
+					}
 				}
+			}
+		}
+			break;
 
-				if (sb.toString().trim().length() > 0)
-					flags.add(sb.toString().trim());
+		default :
+			break;
+		}
+		}
 
-				} catch (BuildException e) {
-					// Bug 315187 one broken option shouldn't cascade to all other options breaking the build...
-					Status s = new Status(IStatus.ERROR, ManagedBuilderCorePlugin.getUniqueIdentifier(), MessageFormat.format(ManagedMakeMessages.getString("Tool_Problem_Discovering_Args_For_Option"), option, //$NON-NLS-1$
-							option.getId()), e);
-					ManagedBuilderCorePlugin.log(new CoreException(s));
-				} catch (CdtVariableException e) {
-					Status s = new Status(IStatus.ERROR, ManagedBuilderCorePlugin.getUniqueIdentifier(), MessageFormat.format(ManagedMakeMessages.getString("Tool_Problem_Discovering_Args_For_Option"), option, //$NON-NLS-1$
-							option.getId()), e);
-					ManagedBuilderCorePlugin.log(new CoreException(s));
-				}
-			}
+		return sb.toString().trim();
+
+		} catch (BuildException e) {
+			// Bug 315187 one broken option shouldn't cascade to all other options breaking the build...
+			Status s = new Status(IStatus.ERROR, ManagedBuilderCorePlugin.getUniqueIdentifier(), MessageFormat.format(ManagedMakeMessages.getString("Tool_Problem_Discovering_Args_For_Option"), option, //$NON-NLS-1$
+					option.getId()), e);
+			ManagedBuilderCorePlugin.log(new CoreException(s));
+		} catch (CdtVariableException e) {
+			Status s = new Status(IStatus.ERROR, ManagedBuilderCorePlugin.getUniqueIdentifier(), MessageFormat.format(ManagedMakeMessages.getString("Tool_Problem_Discovering_Args_For_Option"), option, //$NON-NLS-1$
+					option.getId()), e);
+			ManagedBuilderCorePlugin.log(new CoreException(s));
 		}
-		String[] f = new String[ flags.size() ];
-		return flags.toArray( f );
+		return null;
 	}
 
 	/* (non-Javadoc)
@@ -21,10 +21,13 @@ import org.eclipse.cdt.core.IMarkerGenerator;
 import org.eclipse.cdt.core.errorparsers.RegexErrorParser;
 import org.eclipse.cdt.core.errorparsers.RegexErrorPattern;
 import org.eclipse.cdt.core.language.settings.providers.ILanguageSettingsProvider;
+import org.eclipse.cdt.core.language.settings.providers.IWorkingDirectoryTracker;
 import org.eclipse.cdt.core.language.settings.providers.LanguageSettingsManager;
+import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
 import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
 
 /**
  * Abstract class for providers parsing compiler option from build command when present in build output.
@@ -49,8 +52,6 @@ public abstract class AbstractBuildCommandParser extends AbstractLanguageSetting
 
 
 	private static final String LEADING_PATH_PATTERN = "\\S+[/\\\\]"; //$NON-NLS-1$
-	private static final Pattern OPTIONS_PATTERN = Pattern.compile("-[^\\s\"']*(\\s*((\".*?\")|('.*?')|([^-\\s][^\\s]+)))?"); //$NON-NLS-1$
-	private static final int OPTION_GROUP = 0;
 
 	public enum ResourceScope {
 		FILE,
@@ -67,9 +68,82 @@ public abstract class AbstractBuildCommandParser extends AbstractLanguageSetting
 		"${COMPILER_PATTERN}.*\\s" + "(['\"])(.*\\.${EXTENSIONS_PATTERN})\\${COMPILER_GROUPS+1}(\\s.*)?[\r\n]*" // compiling quoted file
 	};
 	private static final int FILE_GROUP = 2;
+	private static final Pattern QUOTED_EXTENSION_PATTERN = Pattern.compile("\\(\\\\Q(.*?)\\\\E\\)"); //$NON-NLS-1$
 
 	// cached value from properties, do not need to use in equals() and hashCode()
 	private ResourceScope resourceScope = null;
+	// cached patterns, do not need to use in equals() and hashCode()
+	private volatile CompiledPatterns compiledPatterns = null;
+
+	/**
+	 * Compiler command patterns compiled for a compiler pattern and the current file extensions.
+	 */
+	private static class CompiledPatterns {
+		private final String compilerPattern;
+		private final String extensionsPattern;
+		private final Pattern[] patterns;
+		private final int fileGroup;
+		/** literal file extensions of the extensions pattern, or null if it is not a plain alternation */
+		private final String[] extensions;
+
+		private CompiledPatterns(String compilerPattern, String extensionsPattern, Pattern[] patterns, int fileGroup) {
+			this.compilerPattern = compilerPattern;
+			this.extensionsPattern = extensionsPattern;
+			this.patterns = patterns;
+			this.fileGroup = fileGroup;
+			this.extensions = getLiteralExtensions(extensionsPattern);
+		}
+
+		/**
+		 * Get the extensions of a pattern shaped as built by {@link #getPatternFileExtensions()},
+		 * a logical or of quoted extensions, or null if the pattern is shaped differently.
+		 */
+		private static String[] getLiteralExtensions(String extensionsPattern) {
+			List<String> extensions = new ArrayList<String>();
+			Matcher matcher = QUOTED_EXTENSION_PATTERN.matcher(extensionsPattern);
+			StringBuilder rest = new StringBuilder();
+			int end = 0;
+			while (matcher.find()) {
+				rest.append(extensionsPattern, end, matcher.start());
+				extensions.add(matcher.group(1));
+				end = matcher.end();
+			}
+			rest.append(extensionsPattern, end, extensionsPattern.length());
+			for (int i = 0; i < rest.length(); i++) {
+				char c = rest.charAt(i);
+				if (c != '(' && c != ')' && c != '|') {
+					return null;
+				}
+			}
+			return extensions.toArray(new String[extensions.size()]);
+		}
+
+		/**
+		 * Cheap check rejecting lines which do not mention a source file with one of
+		 * the extensions of the compiler command patterns, i.e. an extension following
+		 * a dot and preceding a space, a quote or the end of line.
+		 */
+		private boolean mayContainSourceFile(String line) {
+			if (extensions == null) {
+				return true;
+			}
+			int length = line.length();
+			for (int dot = line.indexOf('.'); dot >= 0; dot = line.indexOf('.', dot + 1)) {
+				for (String ext : extensions) {
+					int end = dot + 1 + ext.length();
+					if (end <= length && line.regionMatches(true, dot + 1, ext, 0, ext.length())
+							&& (end == length || isFileNameDelimiter(line.charAt(end)))) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		private static boolean isFileNameDelimiter(char c) {
+			return Character.isWhitespace(c) || c == '"' || c == '\'';
+		}
+	}
 
 	/**
 	 * The compiler command pattern without specifying compiler options.
@@ -90,6 +164,7 @@ public abstract class AbstractBuildCommandParser extends AbstractLanguageSetting
 	 */
 	public void setCompilerPattern(String commandPattern) {
 		setProperty(ATTR_PARAMETER, commandPattern);
+		compiledPatterns = null;
 	}
 
 	/**
@@ -185,26 +260,72 @@ public abstract class AbstractBuildCommandParser extends AbstractLanguageSetting
 	 * Make search pattern for compiler command based on template.
 	 */
 	private String makePattern(String template) {
+		return makePattern(template, getPatternFileExtensions());
+	}
+
+	/**
+	 * Make search pattern for compiler command based on template, for the given file extensions pattern.
+	 */
+	private String makePattern(String template, String extensionsPattern) {
 		@SuppressWarnings("nls")
 		String pattern = template
 				.replace("${COMPILER_PATTERN}", getCompilerPatternExtended())
-				.replace("${EXTENSIONS_PATTERN}", getPatternFileExtensions())
+				.replace("${EXTENSIONS_PATTERN}", extensionsPattern)
 				.replace("${COMPILER_GROUPS+1}", new Integer(countGroups(getCompilerPatternExtended()) + 1).toString());
 		return pattern;
 	}
 
+	/**
+	 * Get the compiled compiler command patterns, compiling them again if the compiler pattern changed.
+	 * The file extensions are only looked up when compiling, see {@link #startup(ICConfigurationDescription, IWorkingDirectoryTracker)}.
+	 */
+	private CompiledPatterns getCompiledPatterns() {
+		String compilerPattern = getCompilerPattern();
+		CompiledPatterns compiled = compiledPatterns;
+		if (compiled == null || !String.valueOf(compilerPattern).equals(compiled.compilerPattern)) {
+			compiled = compilePatterns(getPatternFileExtensions());
+		}
+		return compiled;
+	}
+
+	private CompiledPatterns compilePatterns(String extensionsPattern) {
+		Pattern[] patterns = new Pattern[COMPILER_COMMAND_PATTERN_TEMPLATES.length];
+		for (int i = 0; i < patterns.length; i++) {
+			patterns[i] = Pattern.compile(makePattern(COMPILER_COMMAND_PATTERN_TEMPLATES[i], extensionsPattern));
+		}
+		CompiledPatterns compiled = new CompiledPatterns(String.valueOf(getCompilerPattern()), extensionsPattern, patterns, adjustFileGroup());
+		compiledPatterns = compiled;
+		return compiled;
+	}
+
+	@Override
+	public void startup(ICConfigurationDescription cfgDescription, IWorkingDirectoryTracker cwdTracker) throws CoreException {
+		// pick up changes of the file extensions of the content types
+		CompiledPatterns compiled = compiledPatterns;
+		if (compiled != null) {
+			String extensionsPattern = getPatternFileExtensions();
+			if (!extensionsPattern.equals(compiled.extensionsPattern)) {
+				compilePatterns(extensionsPattern);
+			}
+		}
+		super.startup(cfgDescription, cwdTracker);
+	}
+
 	@Override
 	protected String parseResourceName(String line) {
 		if (line == null) {
 			return null;
 		}
 
-		for (String template : COMPILER_COMMAND_PATTERN_TEMPLATES) {
-			String pattern = makePattern(template);
-			Matcher fileMatcher = Pattern.compile(pattern).matcher(line);
+		CompiledPatterns compiled = getCompiledPatterns();
+		if (!compiled.mayContainSourceFile(line)) {
+			return null;
+		}
+
+		for (Pattern pattern : compiled.patterns) {
+			Matcher fileMatcher = pattern.matcher(line);
 			if (fileMatcher.matches()) {
-				int fileGroup = adjustFileGroup();
-				String sourceFileName = fileMatcher.group(fileGroup);
+				String sourceFileName = fileMatcher.group(compiled.fileGroup);
 				return sourceFileName;
 			}
 		}
@@ -217,14 +338,7 @@ public abstract class AbstractBuildCommandParser extends AbstractLanguageSetting
 			return null;
 		}
 
-		List<String> options = new ArrayList<String>();
-		Matcher optionMatcher = OPTIONS_PATTERN.matcher(line);
-		while (optionMatcher.find()) {
-			String option = optionMatcher.group(OPTION_GROUP);
-			if (option!=null) {
-				options.add(option);
-			}
-		}
+		List<String> options = GCCOptionLexer.splitOptions(line);
 		return options;
 	}
 
@@ -18,12 +18,17 @@ import java.net.URI;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.regex.Pattern;
 
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.cdt.core.CommandLauncher;
@@ -115,6 +120,14 @@ public abstract class AbstractBuiltinSpecsDetector extends AbstractLanguageSetti
 	private static final String ENV_LC_ALL = "LC_ALL"; //$NON-NLS-1$
 	private static final String ENV_PATH = "PATH"; //$NON-NLS-1$
 
+	/** Environment variables which affect built-in settings printed by the compilers */
+	@SuppressWarnings("nls")
+	private static final String[] COMPILER_ENV_VARS = { ENV_PATH, ENV_LANGUAGE, ENV_LC_ALL,
+		"CPATH", "C_INCLUDE_PATH", "CPLUS_INCLUDE_PATH", "OBJC_INCLUDE_PATH",
+		"GCC_EXEC_PREFIX", "COMPILER_PATH", "LIBRARY_PATH" };
+	/** Options which may take a path relative to the working directory */
+	private static final Pattern PATH_OPTION_PATTERN = Pattern.compile("(^|\\s)-[IiF]"); //$NON-NLS-1$
+
 	private static final int MONITOR_SCALE = 100;
 	private static final int TICKS_REMOVE_MARKERS = 1 * MONITOR_SCALE;
 	private static final int TICKS_RUN_FOR_ONE_LANGUAGE = 10 * MONITOR_SCALE;
@@ -132,6 +145,8 @@ public abstract class AbstractBuiltinSpecsDetector extends AbstractLanguageSetti
 	protected volatile Map<String, String> environmentMap = null;
 
 	protected List<ICLanguageSettingEntry> detectedSettingEntries = null;
+	/** Output of the compiler recorded to be shared through {@link BuiltinSpecsCache}, {@code null} if not recording */
+	private volatile List<String> recordedLines = null;
 	protected int collected = 0;
 	protected volatile boolean isExecuted = false;
 
@@ -234,6 +249,10 @@ public abstract class AbstractBuiltinSpecsDetector extends AbstractLanguageSetti
 		}
 		@Override
 		public boolean processLine(String line) {
+			List<String> lines = recordedLines;
+			if (lines != null) {
+				lines.add(line);
+			}
 			return AbstractBuiltinSpecsDetector.this.processLine(line);
 		}
 		@Override
@@ -384,6 +403,7 @@ public abstract class AbstractBuiltinSpecsDetector extends AbstractLanguageSetti
 	@Override
 	public void handleEvent(IEnvironmentChangeEvent event) {
 		// here comes workspace environment change
+		BuiltinSpecsCache.clear();
 		execute();
 	}
 
@@ -426,18 +446,9 @@ public abstract class AbstractBuiltinSpecsDetector extends AbstractLanguageSetti
 
 				String[] cmdArray = CommandLineUtil.argumentsToArray(command);
 				if (cmdArray != null && cmdArray.length > 0) {
-					IPath location = new Path(cmdArray[0]);
-					if (!location.isAbsolute()) {
-						location = PathUtil.findProgramLocation(cmdArray[0], envPathValue);
-					}
+					IPath location = findProgramLocation(cmdArray[0], envPathValue);
 					if (location != null) {
-						java.io.File file = new java.io.File(location.toString());
-						try {
-							// handles symbolic links as java.io.File.getCanonicalPath() resolves symlinks on UNIX
-							file = file.getCanonicalFile();
-						} catch (IOException e) {
-							ManagedBuilderCorePlugin.log(e);
-						}
+						java.io.File file = toCanonicalFile(location);
 						long lastModified = file.lastModified();
 						envHashNew = 31*envHashNew + location.hashCode();
 						envHashNew = 31*envHashNew + lastModified;
@@ -450,6 +461,71 @@ public abstract class AbstractBuiltinSpecsDetector extends AbstractLanguageSetti
 		return envHashNew;
 	}
 
+	/**
+	 * Find location of a program, looking in PATH if the program is not given by an absolute path.
+	 */
+	private static IPath findProgramLocation(String program, String envPathValue) {
+		IPath location = new Path(program);
+		if (!location.isAbsolute()) {
+			location = PathUtil.findProgramLocation(program, envPathValue);
+		}
+		return location;
+	}
+
+	private static java.io.File toCanonicalFile(IPath location) {
+		java.io.File file = new java.io.File(location.toString());
+		try {
+			// handles symbolic links as java.io.File.getCanonicalPath() resolves symlinks on UNIX
+			file = file.getCanonicalFile();
+		} catch (IOException e) {
+			ManagedBuilderCorePlugin.log(e);
+		}
+		return file;
+	}
+
+	/**
+	 * Calculate the key of the compiler output for the current language in {@link BuiltinSpecsCache}.
+	 * The key identifies the compiler binary by location, size and modification time, the resolved command
+	 * with its flags and the environment of the compiler, so that the providers and configurations of all
+	 * the projects running the same compiler the same way share its output. The output is parsed by each
+	 * provider, which resolves the paths against its own project. The build directory is part of the key
+	 * only if the command has options which may take a path relative to it.
+	 *
+	 * @return the key or {@code null} if the output should not be shared.
+	 */
+	private String getSpecsCacheKey() {
+		if (isConsoleEnabled || currentCommandResolved == null) {
+			// the console is expected to show output of the compiler for each run
+			return null;
+		}
+		String[] cmdArray = CommandLineUtil.argumentsToArray(currentCommandResolved);
+		if (cmdArray == null || cmdArray.length == 0) {
+			return null;
+		}
+		IPath location = findProgramLocation(cmdArray[0], environmentMap.get(ENV_PATH));
+		if (location == null) {
+			return null;
+		}
+		java.io.File compiler = toCanonicalFile(location);
+		if (!compiler.isFile()) {
+			return null;
+		}
+
+		StringBuilder key = new StringBuilder();
+		key.append(currentCommandResolved).append('\n');
+		key.append(compiler.getPath()).append('\n');
+		key.append(compiler.length()).append('\n');
+		key.append(compiler.lastModified()).append('\n');
+		for (String var : COMPILER_ENV_VARS) {
+			key.append(var).append('=').append(environmentMap.get(var)).append('\n');
+		}
+		if (PATH_OPTION_PATTERN.matcher(currentCommandResolved).find()) {
+			// relative paths are resolved against the build directory
+			key.append(buildDirURI).append('\n');
+		}
+		return key.toString();
+	}
+
 	/**
 	 * This method does 2 related things:
 	 * <br>
@@ -555,18 +631,62 @@ public abstract class AbstractBuiltinSpecsDetector extends AbstractLanguageSetti
 
 				monitor.worked(TICKS_REMOVE_MARKERS);
 
-				for (String languageId : languageIds) {
+				final IProgressMonitor cancelMonitor = new CancelForwardingMonitor(monitor);
+				AbstractBuiltinSpecsDetector[] workers = createWorkers(languageIds.size());
+				List<FutureTask<List<ICLanguageSettingEntry>>> tasks = new ArrayList<FutureTask<List<ICLanguageSettingEntry>>>(languageIds.size());
+				for (int i = 0; i < languageIds.size(); i++) {
+					final AbstractBuiltinSpecsDetector worker = workers[i];
+					final String languageId = languageIds.get(i);
+					tasks.add(new FutureTask<List<ICLanguageSettingEntry>>(new Callable<List<ICLanguageSettingEntry>>() {
+						@Override
+						public List<ICLanguageSettingEntry> call() throws Exception {
+							return worker.detectForLanguage(AbstractBuiltinSpecsDetector.this, languageId, cancelMonitor);
+						}
+					}));
+				}
+				// the languages are run concurrently by separate workers, the first one in this job
+				for (int i = 1; i < tasks.size(); i++) {
+					if (workers[i] != this) {
+						final FutureTask<List<ICLanguageSettingEntry>> task = tasks.get(i);
+						Job job = new Job(ManagedMakeMessages.getResourceString("AbstractBuiltinSpecsDetector.DiscoverBuiltInSettingsJobName")) { //$NON-NLS-1$
+							@Override
+							protected IStatus run(IProgressMonitor jobMonitor) {
+								// the result and the errors are reported through the task
+								task.run();
+								return Status.OK_STATUS;
+							}
+							@Override
+							public boolean belongsTo(Object family) {
+								return family == JOB_FAMILY_BUILTIN_SPECS_DETECTOR;
+							}
+						};
+						job.setSystem(true);
+						job.schedule();
+					}
+				}
+
+				for (int i = 0; i < languageIds.size(); i++) {
+					String languageId = languageIds.get(i);
 					List<ICLanguageSettingEntry> oldEntries = getSettingEntries(currentCfgDescription, null, languageId);
+					FutureTask<List<ICLanguageSettingEntry>> task = tasks.get(i);
+					if (i == 0 || workers[i] == this) {
+						task.run();
+					}
 					try {
-						startupForLanguage(languageId);
-						runForLanguage(new SubProgressMonitor(monitor, TICKS_RUN_FOR_ONE_LANGUAGE));
-					} catch (Exception e) {
-						IStatus s = new Status(IStatus.ERROR, ManagedBuilderCorePlugin.PLUGIN_ID, IStatus.ERROR, "Error running Builtin Specs Detector", e); //$NON-NLS-1$
+						List<ICLanguageSettingEntry> entries = task.get();
+						if (entries.size() > 0) {
+							setSettingEntries(currentCfgDescription, null, languageId, entries);
+						}
+					} catch (ExecutionException e) {
+						Throwable cause = e.getCause();
+						if (cause instanceof OperationCanceledException) {
+							throw (OperationCanceledException) cause;
+						}
+						IStatus s = new Status(IStatus.ERROR, ManagedBuilderCorePlugin.PLUGIN_ID, IStatus.ERROR, "Error running Builtin Specs Detector", cause); //$NON-NLS-1$
 						ManagedBuilderCorePlugin.log(s);
 						status.merge(s);
-					} finally {
-						shutdownForLanguage();
 					}
+					monitor.worked(TICKS_RUN_FOR_ONE_LANGUAGE);
 					if (!isChanged) {
 						List<ICLanguageSettingEntry> newEntries = getSettingEntries(currentCfgDescription, null, languageId);
 						isChanged = newEntries != oldEntries;
@@ -596,6 +716,97 @@ public abstract class AbstractBuiltinSpecsDetector extends AbstractLanguageSetti
 		return status;
 	}
 
+	/**
+	 * Create providers to run the languages concurrently, each with its own state of the run.
+	 * If the provider can not be cloned the languages are run one after another by this provider.
+	 *
+	 * @param count - number of languages.
+	 * @return the providers, one per language.
+	 */
+	private AbstractBuiltinSpecsDetector[] createWorkers(int count) {
+		AbstractBuiltinSpecsDetector[] workers = new AbstractBuiltinSpecsDetector[count];
+		Arrays.fill(workers, this);
+		try {
+			for (int i = 1; i < count; i++) {
+				workers[i] = cloneShallow();
+			}
+		} catch (CloneNotSupportedException e) {
+			ManagedBuilderCorePlugin.log(e);
+			Arrays.fill(workers, this);
+		}
+		return workers;
+	}
+
+	/**
+	 * Run built-in specs command for one language, or parse the output of an identical run of the
+	 * compiler for another provider, configuration or project, see {@link BuiltinSpecsCache}.
+	 *
+	 * @param owner - provider running the languages, this provider or the one it was cloned from.
+	 * @param languageId - language ID.
+	 * @param monitor - progress monitor, only used for cancellation as it may be shared by several threads.
+	 * @return the entries detected for the language.
+	 */
+	private List<ICLanguageSettingEntry> detectForLanguage(AbstractBuiltinSpecsDetector owner, String languageId, final IProgressMonitor monitor) throws CoreException {
+		if (owner != this) {
+			startup(owner.currentCfgDescription, null);
+		}
+		try {
+			startupForLanguage(languageId);
+			String key = getSpecsCacheKey();
+			if (key == null) {
+				runForLanguage(monitor);
+			} else {
+				final boolean[] isRun = { false };
+				List<String> lines = BuiltinSpecsCache.getOutput(key, new Callable<List<String>>() {
+					@Override
+					public List<String> call() throws Exception {
+						isRun[0] = true;
+						// the output and error streams may be read by separate threads
+						recordedLines = Collections.synchronizedList(new ArrayList<String>());
+						try {
+							runForLanguage(monitor);
+							if (monitor.isCanceled()) {
+								// do not share partial results
+								throw new OperationCanceledException();
+							}
+							return Collections.unmodifiableList(new ArrayList<String>(recordedLines));
+						} finally {
+							recordedLines = null;
+						}
+					}
+				}, monitor);
+				if (!isRun[0]) {
+					// the paths are resolved against the resources of this project
+					for (String line : lines) {
+						processLine(line);
+					}
+				}
+			}
+			return new ArrayList<ICLanguageSettingEntry>(detectedSettingEntries);
+		} finally {
+			shutdownForLanguage();
+			if (owner != this) {
+				shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Progress monitor reporting cancellation of another monitor, to be used from several threads.
+	 */
+	private static class CancelForwardingMonitor extends NullProgressMonitor {
+		private final IProgressMonitor monitor;
+
+		public CancelForwardingMonitor(IProgressMonitor monitor) {
+			this.monitor = monitor;
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return monitor.isCanceled();
+		}
+	}
+
 	/**
 	 * Initialize provider before running for a language.
 	 *
@@ -382,6 +382,14 @@ public abstract class AbstractLanguageSettingsOutputScanner extends LanguageSett
 	 */
 	protected abstract AbstractOptionParser[] getOptionParsers();
 
+	/**
+	 * @return lexer recognizing the options of {@link #getOptionParsers()} without regular
+	 * expressions, or {@code null} if only the option parsers are to be used.
+	 */
+	GCCOptionLexer getOptionLexer() {
+		return null;
+	}
+
 	/**
 	 * @return {@code true} when the provider tries to resolve relative or remote paths
 	 * to the existing paths in the workspace or local file-system using certain heuristics.
@@ -457,29 +465,43 @@ public abstract class AbstractLanguageSettingsOutputScanner extends LanguageSett
 		List<String> options = parseOptions(line);
 		if (options != null) {
 			AbstractOptionParser[] optionParsers = getOptionParsers();
+			GCCOptionLexer optionLexer = getOptionLexer();
 			for (String option : options) {
-				for (AbstractOptionParser optionParser : optionParsers) {
+				if (optionLexer != null) {
 					try {
-						if (optionParser.parseOption(option)) {
-							ICLanguageSettingEntry entry = null;
-							if (isResolvingPaths && (optionParser.isForFile() || optionParser.isForFolder())) {
-								URI baseURI = mappedRootURI;
-								if (buildDirURI != null && !new Path(optionParser.parsedName).isAbsolute()) {
-									if (mappedRootURI != null) {
-										baseURI = efsProvider.append(mappedRootURI, buildDirURI.getPath());
-									} else {
-										baseURI = buildDirURI;
-									}
+						GCCOptionLexer.Token token = optionLexer.lex(option);
+						if (token != null) {
+							if (token != GCCOptionLexer.NOT_AN_ENTRY) {
+								ICLanguageSettingEntry entry = createEntry(token.parser, token.name, token.value, mappedRootURI, buildDirURI);
+								if (entry != null && !entries.contains(entry)) {
+									entries.add(entry);
 								}
-								entry = createResolvedPathEntry(optionParser, optionParser.parsedName, 0, baseURI);
-							} else {
-								entry = optionParser.createEntry(optionParser.parsedName, optionParser.parsedValue, 0);
 							}
-
-							if (entry != null && !entries.contains(entry)) {
-								entries.add(entry);
-								break;
+							continue;
+						}
+					} catch (Throwable e) {
+						@SuppressWarnings("nls")
+						String msg = "Exception trying to parse option [" + option + "], class " + getClass().getSimpleName();
+						ManagedBuilderCorePlugin.log(new Status(IStatus.ERROR, ManagedBuilderCorePlugin.PLUGIN_ID, msg, e));
+						continue;
+					}
+				}
+				for (AbstractOptionParser optionParser : optionParsers) {
+					try {
+						String parsedName;
+						String parsedValue;
+						// option parsers are shared between providers which may run concurrently
+						synchronized (optionParser) {
+							if (!optionParser.parseOption(option)) {
+								continue;
 							}
+							parsedName = optionParser.parsedName;
+							parsedValue = optionParser.parsedValue;
+						}
+						ICLanguageSettingEntry entry = createEntry(optionParser, parsedName, parsedValue, mappedRootURI, buildDirURI);
+						if (entry != null && !entries.contains(entry)) {
+							entries.add(entry);
+							break;
 						}
 					} catch (Throwable e) {
 						@SuppressWarnings("nls")
@@ -497,6 +519,24 @@ public abstract class AbstractLanguageSettingsOutputScanner extends LanguageSett
 		return false;
 	}
 
+	/**
+	 * Create language settings entry for a parsed option, resolving paths if needed.
+	 */
+	private ICLanguageSettingEntry createEntry(AbstractOptionParser optionParser, String parsedName, String parsedValue, URI mappedRootURI, URI buildDirURI) {
+		if (isResolvingPaths && (optionParser.isForFile() || optionParser.isForFolder())) {
+			URI baseURI = mappedRootURI;
+			if (buildDirURI != null && !new Path(parsedName).isAbsolute()) {
+				if (mappedRootURI != null) {
+					baseURI = efsProvider.append(mappedRootURI, buildDirURI.getPath());
+				} else {
+					baseURI = buildDirURI;
+				}
+			}
+			return createResolvedPathEntry(optionParser, parsedName, 0, baseURI);
+		}
+		return optionParser.createEntry(parsedName, parsedValue, 0);
+	}
+
 	/**
 	 * In case when absolute path is mapped to the source tree in a project
 	 * this function will try to figure mapping and return "mapped root",
@@ -1170,6 +1210,15 @@ public abstract class AbstractLanguageSettingsOutputScanner extends LanguageSett
 	 * @return regular expression for searching C/C++ file extensions.
 	 */
 	protected String getPatternFileExtensions() {
+		String pattern = expressionLogicalOr(getSourceFileExtensions());
+
+		return pattern;
+	}
+
+	/**
+	 * @return file extensions of C and C++ source files used by {@link #getPatternFileExtensions()}.
+	 */
+	static Set<String> getSourceFileExtensions() {
 		IContentTypeManager manager = Platform.getContentTypeManager();
 
 		Set<String> fileExts = new HashSet<String>();
@@ -1180,9 +1229,7 @@ public abstract class AbstractLanguageSettingsOutputScanner extends LanguageSett
 		IContentType contentTypeC = manager.getContentType(CCorePlugin.CONTENT_TYPE_CSOURCE);
 		fileExts.addAll(Arrays.asList(contentTypeC.getFileSpecs(IContentType.FILE_EXTENSION_SPEC)));
 
-		String pattern = expressionLogicalOr(fileExts);
-
-		return pattern;
+		return fileExts;
 	}
 	
 	/**
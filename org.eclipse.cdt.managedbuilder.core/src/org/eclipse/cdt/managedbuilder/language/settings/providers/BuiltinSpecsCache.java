@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Obeo - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.cdt.managedbuilder.language.settings.providers;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.cdt.managedbuilder.core.ManagedBuilderCorePlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+
+/**
+ * Workspace-wide store of the output of the compilers run by built-in specs detectors, shared by
+ * all the providers, configurations and projects running the same compiler the same way.
+ * <p>
+ * The output is keyed by a fingerprint of the compiler run (see
+ * {@link AbstractBuiltinSpecsDetector}) and kept unparsed, so that each provider resolves the
+ * paths of the entries against its own project. A run in progress is shared as well,
+ * so that concurrent requests for the same key run the compiler only once.
+ * Failed runs and empty outputs are not kept, they are attempted again next time.
+ * The completed runs are dropped when the store grows over {@value #MAX_ENTRIES}
+ * entries, as the keys of replaced compilers are never requested again,
+ * and the store is cleared when the workspace environment changes.
+ * </p>
+ */
+final class BuiltinSpecsCache {
+	/** Delay between two checks of the progress monitor while waiting for a detection */
+	private static final long CANCEL_CHECK_MILLIS = 200;
+	/** Number of entries over which the completed detections are dropped */
+	static final int MAX_ENTRIES = 256;
+
+	private static final ConcurrentMap<String, FutureTask<List<String>>> cache =
+			new ConcurrentHashMap<String, FutureTask<List<String>>>();
+
+	private BuiltinSpecsCache() {
+	}
+
+	/**
+	 * Get the compiler output for the given key, running the compiler in the calling thread
+	 * if no other thread has run it or is running it yet.
+	 *
+	 * @param key - fingerprint of the compiler run.
+	 * @param detection - runs the compiler and returns an unmodifiable list of the lines of its output.
+	 * @param monitor - progress monitor, checked for cancellation while waiting for another thread.
+	 * @return the lines of the output, possibly empty.
+	 * @throws CoreException if the compiler run failed.
+	 */
+	static List<String> getOutput(String key, Callable<List<String>> detection, IProgressMonitor monitor) throws CoreException {
+		for (;;) {
+			FutureTask<List<String>> task = new FutureTask<List<String>>(detection);
+			if (cache.size() >= MAX_ENTRIES && !cache.containsKey(key)) {
+				evictCompleted();
+			}
+			FutureTask<List<String>> existing = cache.putIfAbsent(key, task);
+			if (existing == null) {
+				existing = task;
+				task.run();
+			}
+
+			try {
+				List<String> lines = waitFor(existing, monitor);
+				if (lines == null || lines.isEmpty()) {
+					cache.remove(key, existing);
+					return Collections.emptyList();
+				}
+				return lines;
+			} catch (ExecutionException e) {
+				cache.remove(key, existing);
+				Throwable cause = e.getCause();
+				if (cause instanceof OperationCanceledException) {
+					if (existing != task) {
+						// the thread running the detection was canceled, not this one
+						continue;
+					}
+					throw (OperationCanceledException) cause;
+				}
+				if (cause instanceof CoreException) {
+					throw (CoreException) cause;
+				}
+				throw new CoreException(new Status(IStatus.ERROR, ManagedBuilderCorePlugin.PLUGIN_ID, "Error running Builtin Specs Detector", cause)); //$NON-NLS-1$
+			}
+		}
+	}
+
+	/**
+	 * Drop all the completed runs, so that the compilers are run again.
+	 * The runs in progress are left to the threads waiting for them.
+	 */
+	static void clear() {
+		evictCompleted();
+	}
+
+	private static void evictCompleted() {
+		for (Iterator<FutureTask<List<String>>> it = cache.values().iterator(); it.hasNext();) {
+			if (it.next().isDone()) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Wait for a compiler run to complete, checking the progress monitor for cancellation.
+	 */
+	private static List<String> waitFor(FutureTask<List<String>> task, IProgressMonitor monitor) throws ExecutionException {
+		for (;;) {
+			try {
+				return task.get(CANCEL_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				if (monitor != null && monitor.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new OperationCanceledException();
+			}
+		}
+	}
+}
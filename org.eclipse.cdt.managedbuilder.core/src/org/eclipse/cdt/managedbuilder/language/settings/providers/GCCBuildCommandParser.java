@@ -29,32 +29,68 @@ import org.eclipse.cdt.core.settings.model.ICSettingEntry;
  * @since 8.1
  */
 public class GCCBuildCommandParser extends AbstractBuildCommandParser implements ILanguageSettingsEditableProvider {
+	@SuppressWarnings("nls")
+	private static final AbstractOptionParser INCLUDE_PATH_PARSER = new IncludePathOptionParser("-I\\s*([^\\s\"']*)", "$1");
+	@SuppressWarnings("nls")
+	private static final AbstractOptionParser SYSTEM_INCLUDE_PATH_PARSER = new IncludePathOptionParser("-isystem\\s*([^\\s\"']*)", "$1");
+	@SuppressWarnings("nls")
+	private static final AbstractOptionParser FRAMEWORK_PARSER = new IncludePathOptionParser("-(F|(iframework))\\s*([^\\s\"']*)", "$3", ICSettingEntry.FRAMEWORKS_MAC);
+	@SuppressWarnings("nls")
+	private static final AbstractOptionParser INCLUDE_FILE_PARSER = new IncludeFileOptionParser("-include\\s*([^\\s\"']*)", "$1");
+	@SuppressWarnings("nls")
+	private static final AbstractOptionParser MACRO_PARSER = new MacroOptionParser("-D\\s*([^\\s=\"']*)(=([^\\s\"']*))?", "$1", "$3");
+	@SuppressWarnings("nls")
+	private static final AbstractOptionParser UNDEF_PARSER = new MacroOptionParser("-U\\s*([^\\s=\"']*)", "$1", ICSettingEntry.UNDEFINED);
+	@SuppressWarnings("nls")
+	private static final AbstractOptionParser MACRO_FILE_PARSER = new MacroFileOptionParser("-imacros\\s*([^\\s\"']*)", "$1");
+	@SuppressWarnings("nls")
+	private static final AbstractOptionParser LIBRARY_PATH_PARSER = new LibraryPathOptionParser("-L\\s*([^\\s\"']*)", "$1");
+	@SuppressWarnings("nls")
+	private static final AbstractOptionParser LIBRARY_FILE_PARSER = new LibraryFileOptionParser("-l\\s*([^\\s\"']*)", "lib$1.a");
+
 	@SuppressWarnings("nls")
 	static final AbstractOptionParser[] optionParsers = {
 			new IncludePathOptionParser("-I\\s*([\"'])(.*)\\1", "$2"),
-			new IncludePathOptionParser("-I\\s*([^\\s\"']*)", "$1"),
+			INCLUDE_PATH_PARSER,
 			new IncludePathOptionParser("-isystem\\s*([\"'])(.*)\\1", "$2"),
-			new IncludePathOptionParser("-isystem\\s*([^\\s\"']*)", "$1"),
+			SYSTEM_INCLUDE_PATH_PARSER,
 			new IncludePathOptionParser("-(F|(iframework))\\s*([\"'])(.*)\\3", "$4", ICSettingEntry.FRAMEWORKS_MAC),
-			new IncludePathOptionParser("-(F|(iframework))\\s*([^\\s\"']*)", "$3", ICSettingEntry.FRAMEWORKS_MAC),
+			FRAMEWORK_PARSER,
 			new IncludeFileOptionParser("-include\\s*([\"'])(.*)\\1", "$2"),
-			new IncludeFileOptionParser("-include\\s*([^\\s\"']*)", "$1"),
+			INCLUDE_FILE_PARSER,
 			new MacroOptionParser("-D\\s*([\"'])([^=]*)(=(.*))?\\1", "$2", "$4"),
 			new MacroOptionParser("-D\\s*([^\\s=\"']*)=(\\\\([\"']))(.*?)\\2", "$1", "$3$4$3"),
 			new MacroOptionParser("-D\\s*([^\\s=\"']*)=([\"'])(.*?)\\2", "$1", "$3"),
-			new MacroOptionParser("-D\\s*([^\\s=\"']*)(=([^\\s\"']*))?", "$1", "$3"),
-			new MacroOptionParser("-U\\s*([^\\s=\"']*)", "$1", ICSettingEntry.UNDEFINED),
+			MACRO_PARSER,
+			UNDEF_PARSER,
 			new MacroFileOptionParser("-imacros\\s*([\"'])(.*)\\1", "$2"),
-			new MacroFileOptionParser("-imacros\\s*([^\\s\"']*)", "$1"),
+			MACRO_FILE_PARSER,
 			new LibraryPathOptionParser("-L\\s*([\"'])(.*)\\1", "$2"),
-			new LibraryPathOptionParser("-L\\s*([^\\s\"']*)", "$1"),
-			new LibraryFileOptionParser("-l\\s*([^\\s\"']*)", "lib$1.a"), };
+			LIBRARY_PATH_PARSER,
+			LIBRARY_FILE_PARSER, };
+
+	/**
+	 * Lexer handling the unquoted forms of the options of {@link #optionParsers}.
+	 */
+	@SuppressWarnings("nls")
+	private static final GCCOptionLexer optionLexer = new GCCOptionLexer(
+			new String[] { "-I", "-isystem", "-F", "-iframework", "-include", "-D", "-U", "-imacros", "-L", "-l" },
+			new int[] { GCCOptionLexer.PATH, GCCOptionLexer.PATH, GCCOptionLexer.PATH, GCCOptionLexer.PATH, GCCOptionLexer.PATH,
+					GCCOptionLexer.MACRO, GCCOptionLexer.UNDEF, GCCOptionLexer.PATH, GCCOptionLexer.PATH, GCCOptionLexer.LIBRARY },
+			new AbstractOptionParser[] { INCLUDE_PATH_PARSER, SYSTEM_INCLUDE_PATH_PARSER, FRAMEWORK_PARSER, FRAMEWORK_PARSER, INCLUDE_FILE_PARSER,
+					MACRO_PARSER, UNDEF_PARSER, MACRO_FILE_PARSER, LIBRARY_PATH_PARSER, LIBRARY_FILE_PARSER });
 
 	@Override
 	protected AbstractOptionParser[] getOptionParsers() {
 		return optionParsers;
 	}
 
+	@Override
+	GCCOptionLexer getOptionLexer() {
+		// custom option parsers are parsed with regular expressions only
+		return getOptionParsers() == optionParsers ? optionLexer : null;
+	}
+
 	@Override
 	public GCCBuildCommandParser cloneShallow() throws CloneNotSupportedException {
 		return (GCCBuildCommandParser) super.cloneShallow();
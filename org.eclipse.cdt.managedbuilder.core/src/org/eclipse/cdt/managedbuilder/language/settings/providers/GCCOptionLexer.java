@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Obeo - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.cdt.managedbuilder.language.settings.providers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.cdt.managedbuilder.language.settings.providers.AbstractLanguageSettingsOutputScanner.AbstractOptionParser;
+
+/**
+ * Hand-written lexer for gcc command lines. It splits a line into options and
+ * classifies them by prefix in a single pass, without regular expressions.
+ * <p>
+ * The lexer only handles the unquoted forms of the options for which its result
+ * is known to be the same as the one of the regular expression option parsers
+ * it is created with. For the other options it returns {@code null} so that the
+ * option parsers are used as a fallback.
+ * </p>
+ */
+final class GCCOptionLexer {
+	/** Option followed by a path, such as {@code -I/usr/include} */
+	static final int PATH = 0;
+	/** Macro definition, {@code -DNAME} or {@code -DNAME=VALUE} */
+	static final int MACRO = 1;
+	/** Macro removal, {@code -UNAME} */
+	static final int UNDEF = 2;
+	/** Library name, {@code -lNAME} */
+	static final int LIBRARY = 3;
+
+	/**
+	 * Option recognized by the lexer, to be turned into an entry by its option parser.
+	 */
+	static final class Token {
+		final AbstractOptionParser parser;
+		final String name;
+		final String value;
+
+		private Token(AbstractOptionParser parser, String name, String value) {
+			this.parser = parser;
+			this.name = name;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Returned by {@link #lex(String)} for options which do not define any entry.
+	 */
+	static final Token NOT_AN_ENTRY = new Token(null, null, null);
+
+	private final String[] prefixes;
+	private final int[] forms;
+	private final AbstractOptionParser[] parsers;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param prefixes - option prefixes such as {@code -I}. A prefix must not be a prefix of another one,
+	 *    and the prefixes must cover all the option parsers the lexer is used with.
+	 * @param forms - form of the options, one of {@link #PATH}, {@link #MACRO}, {@link #UNDEF}, {@link #LIBRARY}.
+	 * @param parsers - option parsers of the unquoted form of the options, used to create the entries.
+	 */
+	GCCOptionLexer(String[] prefixes, int[] forms, AbstractOptionParser[] parsers) {
+		this.prefixes = prefixes;
+		this.forms = forms;
+		this.parsers = parsers;
+	}
+
+	/**
+	 * Classify an option returned by {@link #splitOptions(String)}.
+	 *
+	 * @param option - the option, possibly with an argument.
+	 * @return the recognized option, {@link #NOT_AN_ENTRY} if no option parser would
+	 *    match it, or {@code null} if it should be parsed by the option parsers.
+	 */
+	Token lex(String option) {
+		for (int i = 0; i < prefixes.length; i++) {
+			String prefix = prefixes[i];
+			if (!option.startsWith(prefix)) {
+				continue;
+			}
+
+			int start = skipWhitespace(option, prefix.length());
+			int end = start;
+			int length = option.length();
+			switch (forms[i]) {
+			case PATH:
+			case LIBRARY:
+				if (start < length && isQuote(option.charAt(start))) {
+					return null;
+				}
+				while (end < length && !isWhitespace(option.charAt(end)) && !isQuote(option.charAt(end))) {
+					end++;
+				}
+				if (end == start) {
+					return null;
+				}
+				String name = option.substring(start, end);
+				if (forms[i] == LIBRARY) {
+					return new Token(parsers[i], "lib" + name + ".a", "lib" + name + ".a"); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+				return new Token(parsers[i], name, name);
+
+			case MACRO:
+			case UNDEF:
+				// quoted names and values are left to the option parsers
+				if (option.indexOf('"') >= 0 || option.indexOf('\'') >= 0) {
+					return null;
+				}
+				while (end < length && !isWhitespace(option.charAt(end)) && option.charAt(end) != '=') {
+					end++;
+				}
+				if (end == start) {
+					return null;
+				}
+				String macro = option.substring(start, end);
+				if (forms[i] == UNDEF) {
+					return new Token(parsers[i], macro, null);
+				}
+				String value = ""; //$NON-NLS-1$
+				if (end < length && option.charAt(end) == '=') {
+					int valueEnd = end + 1;
+					while (valueEnd < length && !isWhitespace(option.charAt(valueEnd))) {
+						valueEnd++;
+					}
+					value = option.substring(end + 1, valueEnd);
+				}
+				return new Token(parsers[i], macro, value);
+
+			default:
+				return null;
+			}
+		}
+		return NOT_AN_ENTRY;
+	}
+
+	/**
+	 * Split a command line into options in a single pass. An option starts with {@code -}
+	 * and extends up to a space or a quote, optionally followed by an argument: a quoted
+	 * string, or a word of at least two characters not starting with {@code -}.
+	 * This is the same as finding the regular expression
+	 * {@code -[^\s"']*(\s*((".*?")|('.*?')|([^-\s][^\s]+)))?}
+	 *
+	 * @param line - the command line.
+	 * @return the list of options with their arguments.
+	 */
+	static List<String> splitOptions(String line) {
+		List<String> options = new ArrayList<String>();
+		int length = line.length();
+		int pos = line.indexOf('-');
+		while (pos >= 0) {
+			int end = pos + 1;
+			while (end < length && !isWhitespace(line.charAt(end)) && !isQuote(line.charAt(end))) {
+				end++;
+			}
+
+			int arg = skipWhitespace(line, end);
+			if (arg < length) {
+				char c = line.charAt(arg);
+				int close = isQuote(c) ? findClosingQuote(line, arg) : -1;
+				if (close >= 0) {
+					end = close + 1;
+				} else if (c != '-' && !isWhitespace(c) && arg + 1 < length && !isWhitespace(line.charAt(arg + 1))) {
+					end = arg + 2;
+					while (end < length && !isWhitespace(line.charAt(end))) {
+						end++;
+					}
+				}
+			}
+
+			options.add(line.substring(pos, end));
+			pos = line.indexOf('-', end);
+		}
+		return options;
+	}
+
+	/**
+	 * Find the quote closing the one at the given position, not crossing line terminators.
+	 *
+	 * @return position of the closing quote or {@code -1}.
+	 */
+	private static int findClosingQuote(String line, int open) {
+		char quote = line.charAt(open);
+		for (int i = open + 1; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == quote) {
+				return i;
+			}
+			if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	private static int skipWhitespace(String str, int pos) {
+		while (pos < str.length() && isWhitespace(str.charAt(pos))) {
+			pos++;
+		}
+		return pos;
+	}
+
+	/**
+	 * Same characters as {@code \s} in regular expressions.
+	 */
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	private static boolean isQuote(char c) {
+		return c == '"' || c == '\'';
+	}
+}
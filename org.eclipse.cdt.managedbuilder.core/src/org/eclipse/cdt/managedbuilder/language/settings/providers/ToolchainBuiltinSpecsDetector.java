@@ -11,9 +11,9 @@
 
 package org.eclipse.cdt.managedbuilder.language.settings.providers;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.cdt.core.envvar.IEnvironmentVariable;
 import org.eclipse.cdt.managedbuilder.core.BuildException;
@@ -42,7 +42,7 @@ import org.eclipse.cdt.managedbuilder.internal.envvar.EnvironmentVariableManager
  */
 public abstract class ToolchainBuiltinSpecsDetector extends AbstractBuiltinSpecsDetector {
 	private static final String EMPTY_QUOTED_STRING = "\"\""; //$NON-NLS-1$
-	private Map<String, ITool> toolMap = new HashMap<String, ITool>();
+	private Map<String, ITool> toolMap = new ConcurrentHashMap<String, ITool>();
 
 	/**
 	 * Concrete compiler specs detectors need to supply tool-chain ID.
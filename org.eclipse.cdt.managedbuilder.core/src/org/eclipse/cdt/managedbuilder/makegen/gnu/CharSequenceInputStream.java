@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Obeo - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.cdt.managedbuilder.makegen.gnu;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Input stream of the encoded characters of a character sequence, encoding
+ * them as they are read instead of copying the whole sequence into a
+ * {@code String} and then into a byte array.
+ * <p>
+ * Characters which cannot be encoded are replaced as by {@link String#getBytes(Charset)}.
+ * </p>
+ */
+final class CharSequenceInputStream extends InputStream {
+	private static final int BUFFER_SIZE = 8192;
+
+	private final CharsetEncoder encoder;
+	private final CharBuffer chars;
+	private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+	private boolean encoded;
+	private boolean flushed;
+
+	CharSequenceInputStream(CharSequence sequence, Charset charset) {
+		encoder = charset.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		chars = CharBuffer.wrap(sequence);
+		bytes.flip();
+	}
+
+	@Override
+	public int read() {
+		if (!fill())
+			return -1;
+		return bytes.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if (len == 0)
+			return 0;
+		if (!fill())
+			return -1;
+		int count = Math.min(len, bytes.remaining());
+		bytes.get(b, off, count);
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return bytes.remaining();
+	}
+
+	/**
+	 * Encodes more characters if all the encoded bytes have been read.
+	 *
+	 * @return false at the end of the stream
+	 */
+	private boolean fill() {
+		while (!bytes.hasRemaining()) {
+			if (flushed)
+				return false;
+			bytes.clear();
+			if (!encoded) {
+				// Underflow once all the characters are consumed
+				encoded = encoder.encode(chars, bytes, true).isUnderflow();
+			} else {
+				// Encoders may have bytes left once all the characters are consumed
+				encoder.flush(bytes);
+				flushed = true;
+			}
+			bytes.flip();
+		}
+		return true;
+	}
+}
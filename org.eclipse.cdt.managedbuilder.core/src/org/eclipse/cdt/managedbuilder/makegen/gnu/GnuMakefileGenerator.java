@@ -16,11 +16,13 @@
  *******************************************************************************/
 package org.eclipse.cdt.managedbuilder.makegen.gnu;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -31,9 +33,16 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import org.eclipse.cdt.core.CCorePlugin;
 import org.eclipse.cdt.core.settings.model.CSourceEntry;
@@ -56,10 +65,13 @@ import org.eclipse.cdt.managedbuilder.core.IManagedCommandLineInfo;
 import org.eclipse.cdt.managedbuilder.core.IManagedOutputNameProvider;
 import org.eclipse.cdt.managedbuilder.core.IOption;
 import org.eclipse.cdt.managedbuilder.core.IOutputType;
+import org.eclipse.cdt.managedbuilder.core.IProjectType;
 import org.eclipse.cdt.managedbuilder.core.IResourceInfo;
 import org.eclipse.cdt.managedbuilder.core.ITool;
 import org.eclipse.cdt.managedbuilder.core.ManagedBuildManager;
 import org.eclipse.cdt.managedbuilder.core.ManagedBuilderCorePlugin;
+import org.eclipse.cdt.managedbuilder.core.ManagedOptionValueHandler;
+import org.eclipse.cdt.managedbuilder.internal.core.ManagedCommandLineGenerator;
 import org.eclipse.cdt.managedbuilder.internal.core.ManagedMakeMessages;
 import org.eclipse.cdt.managedbuilder.internal.core.Tool;
 import org.eclipse.cdt.managedbuilder.internal.macros.BuildMacroProvider;
@@ -75,6 +87,7 @@ import org.eclipse.cdt.managedbuilder.makegen.IManagedDependencyGenerator2;
 import org.eclipse.cdt.managedbuilder.makegen.IManagedDependencyGeneratorType;
 import org.eclipse.cdt.managedbuilder.makegen.IManagedDependencyInfo;
 import org.eclipse.cdt.managedbuilder.makegen.IManagedDependencyPreBuild;
+import org.eclipse.cdt.managedbuilder.makegen.internal.DefaultNoDependencyCalculator;
 import org.eclipse.cdt.utils.EFSExtensionManager;
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
@@ -107,6 +120,15 @@ import org.eclipse.core.runtime.SubProgressMonitor;
  */
 public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 	private static final IPath DOT_SLASH_PATH = new Path("./");  //$NON-NLS-1$
+	/** System property enabling the concurrent generation of the fragment makefiles */
+	private static final String PARALLEL_PROPERTY = "org.eclipse.cdt.managedbuilder.makegen.parallel"; //$NON-NLS-1$
+	/** Dependency generators provided by the managed builder, which do not keep any state */
+	private static final Set<Class<?>> STATELESS_DEPENDENCY_GENERATORS = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+			DefaultGCCDependencyCalculator.class,
+			DefaultGCCDependencyCalculator2.class,
+			DefaultGCCDependencyCalculator3.class,
+			DefaultGCCDependencyCalculatorPreBuild.class,
+			DefaultNoDependencyCalculator.class));
 
 	/**
 	 * This class walks the delta supplied by the build system to determine
@@ -254,24 +276,8 @@ public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 			if (proxy.getType() == IResource.FILE) {
 				// If this resource has a Resource Configuration and is not excluded or
 				// if it has a file extension that one of the tools builds, add the sudirectory to the list
-//				boolean willBuild = false;
-				IResourceInfo rcInfo = config.getResourceInfo(resource.getProjectRelativePath(), false);
-				if (isSource/* && !rcInfo.isExcluded()*/) {
-					boolean willBuild = false;
-					if(rcInfo instanceof IFolderInfo){
-						String ext = resource.getFileExtension();
-						if (((IFolderInfo)rcInfo).buildsFileType(ext) &&
-								// If this file resource is a generated resource, then it is uninteresting
-								!generator.isGeneratedResource(resource)) {
-							willBuild = true;
-						}
-					} else {
-						willBuild = true;
-					}
-
-					if(willBuild)
-						generator.appendBuildSubdirectory(resource);
-				}
+				if (isSource && generator.willBuild(config, resource))
+					generator.appendBuildSubdirectory(resource);
 //				if (willBuild) {
 //					if ((resConfig == null) || (!(resConfig.isExcluded()))) {
 //						generator.appendBuildSubdirectory(resource);
@@ -377,6 +383,8 @@ public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 	//  Map of dependency file build variable names to a List of GnuDependencyGroupInfo objects
 	private final HashMap<String, GnuDependencyGroupInfo> buildDepVars = new HashMap<String, GnuDependencyGroupInfo>();
 	private final LinkedHashMap<String, String> topBuildOutVars = new LinkedHashMap<String, String>();
+	//  Contributions of the fragment makefile being generated, recording the entries it shares with the previous ones
+	private GnuMakefileModel.Fragment recordedFragment;
 	// Dependency file variables
 //	private Vector dependencyMakefiles;		//  IPath's - relative to the top build directory or absolute
 
@@ -636,8 +644,18 @@ public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 
 		// Get all the subdirectories participating in the build
 		updateMonitor(ManagedMakeMessages.getFormattedString("MakefileGenerator.message.finding.sources", project.getName()));	//$NON-NLS-1$
-		ResourceProxyVisitor resourceVisitor = new ResourceProxyVisitor(this, config);
-		project.accept(resourceVisitor, IResource.NONE);
+		GnuMakefileModel model = GnuMakefileModel.isEnabled() ? GnuMakefileModel.get(project, config) : null;
+		if (model != null) {
+			// Forgotten until this generation succeeds, the next one walks the project otherwise
+			GnuMakefileModel.remove(project, config);
+			// The subdirectories of the previous generation, the delta tells which ones changed
+			for (IPath path : model.getFolders()) {
+				getSubdirList().add(path.isEmpty() ? project : project.getFolder(path));
+			}
+		} else {
+			ResourceProxyVisitor resourceVisitor = new ResourceProxyVisitor(this, config);
+			project.accept(resourceVisitor, IResource.NONE);
+		}
 		checkCancel();
 
 		// Bug 303953: Ensure that if all resources have been removed from a folder, than the folder still
@@ -646,6 +664,7 @@ public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 
 		// Make sure there is something to build
 		if (getSubdirList().isEmpty()) {
+			GnuMakefileModel.remove(project, config);
 			String info = ManagedMakeMessages.getFormattedString("MakefileGenerator.warning.no.source", project.getName());	//$NON-NLS-1$
 			updateMonitor(info);
 			status = new MultiStatus(
@@ -714,21 +733,11 @@ public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 		}
 
 		// Recreate all module makefiles
-		// NOTE WELL: For now, always recreate all of the fragment makefile.  This is necessary
-		//     in order to re-populate the buildVariable lists.  In the future, the list could
-		//     possibly segmented by subdir so that all fragments didn't need to be
-		//     regenerated
-		for (IResource res : getSubdirList()) {
-			IContainer subDir = (IContainer)res;
-			try {
-				populateFragmentMakefile(subDir);
-			} catch (CoreException e) {
-				// Probably should ask user if they want to continue
-				checkCancel();
-				continue;
-			}
-			checkCancel();
-		}
+		// NOTE WELL: Without the makefile model, always recreate all of the fragment makefile.
+		//     This is necessary in order to re-populate the buildVariable lists.  With the model,
+		//     the contributions of the fragments of the unmodified folders are replayed instead.
+		GnuMakefileModel newModel = GnuMakefileModel.isEnabled() ? new GnuMakefileModel() : null;
+		populateFragmentMakefiles(model, newModel);
 
 
 		// Calculate the inputs and outputs of the Tools to be generated in the main makefile
@@ -740,6 +749,8 @@ public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 		IFile makefileHandle = createFile(makefilePath);
 		populateTopMakefile(makefileHandle, false);
 		checkCancel();
+		if (newModel != null)
+			GnuMakefileModel.set(project, config, newModel);
 
 		// Remove deleted folders from generated build directory
 		for (IResource res : getDeletedDirList()) {
@@ -814,28 +825,90 @@ public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 		return false;
 	}
 	
+	/**
+	 * Returns whether a source file is built, either because it has a resource
+	 * configuration or because one of the tools of its folder builds its extension.
+	 */
+	private boolean willBuild(IConfiguration cfg, IResource resource) {
+		IResourceInfo rcInfo = cfg.getResourceInfo(resource.getProjectRelativePath(), false);
+		if (rcInfo instanceof IFolderInfo) {
+			String ext = resource.getFileExtension();
+			// If this file resource is a generated resource, then it is uninteresting
+			return ((IFolderInfo)rcInfo).buildsFileType(ext) && !isGeneratedResource(resource);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether a folder directly contains source files which are built
+	 */
+	private boolean containsBuildableSource(IContainer container) {
+		try {
+			for (IResource resource : container.members()) {
+				if (resource.getType() == IResource.FILE && isSource(resource.getProjectRelativePath())
+						&& willBuild(config, resource))
+					return true;
+			}
+		} catch (CoreException e) {
+			// The folder does not exist anymore
+		}
+		return false;
+	}
+
 	private static void save(StringBuffer buffer, IFile file) throws CoreException {
-		String encoding = null;
+		Charset charset = null;
 		try {
-			encoding = file.getCharset();
+			String encoding = file.getCharset();
+			if (encoding != null)
+				charset = Charset.forName(encoding);
 		} catch (CoreException ce) {
 			// use no encoding
+		} catch (IllegalArgumentException e) {
+			// unsupported encoding
 		}
+		if (charset == null)
+			charset = Charset.defaultCharset();
 
-		byte[] bytes = null;
-		if (encoding != null) {
-			try {
-				bytes = buffer.toString().getBytes(encoding);
-			} catch (Exception e) {
-			}
-		} else {
-			bytes = buffer.toString().getBytes();
-		}
+		// Leave an up to date makefile untouched: rewriting it would fire a resource
+		// delta and make GNU make re-read it because of its new time stamp
+		if (hasContents(file, buffer, charset))
+			return;
 
-		ByteArrayInputStream stream = new ByteArrayInputStream(bytes);
 		// use a platform operation to update the resource contents
 		boolean force = true;
-		file.setContents(stream, force, false, null); // Don't record history
+		file.setContents(new CharSequenceInputStream(buffer, charset), force, false, null); // Don't record history
+	}
+
+	/**
+	 * Returns whether a file has the given contents, comparing them as they are
+	 * read and encoded.
+	 */
+	private static boolean hasContents(IFile file, CharSequence contents, Charset charset) {
+		if (!file.exists())
+			return false;
+		InputStream current = null;
+		try {
+			current = new BufferedInputStream(file.getContents(true));
+			InputStream expected = new CharSequenceInputStream(contents, charset);
+			int c;
+			do {
+				c = expected.read();
+				if (c != current.read())
+					return false;
+			} while (c != -1);
+			return true;
+		} catch (CoreException e) {
+			return false;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			if (current != null) {
+				try {
+					current.close();
+				} catch (IOException e) {
+				}
+			}
+		}
 	}
 
 	/* (non-Javadoc)
@@ -900,6 +973,7 @@ public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 		checkCancel();
 
 		// Populate the makefile if any buildable source files have been found in the project
+		GnuMakefileModel.remove(project, config);
 		if (getSubdirList().isEmpty()) {
 			String info = ManagedMakeMessages.getFormattedString("MakefileGenerator.warning.no.source", project.getName()); //$NON-NLS-1$
 			updateMonitor(info);
@@ -932,17 +1006,8 @@ public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 		checkCancel();
 
 		// Now populate the module makefiles
-		for (IResource res : getSubdirList()) {
-			IContainer subDir = (IContainer)res;
-			try {
-				populateFragmentMakefile(subDir);
-			} catch (CoreException e) {
-				// Probably should ask user if they want to continue
-				checkCancel();
-				continue;
-			}
-			checkCancel();
-		}
+		GnuMakefileModel model = GnuMakefileModel.isEnabled() ? new GnuMakefileModel() : null;
+		populateFragmentMakefiles(null, model);
 
 		// Calculate the inputs and outputs of the Tools to be generated in the main makefile
 		calculateToolInputsOutputs();
@@ -959,6 +1024,8 @@ public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 		IFile objsFileHandle = createFile(objFilePath);
 		populateObjectsMakefile(objsFileHandle);
 		checkCancel();
+		if (model != null)
+			GnuMakefileModel.set(project, config, model);
 
 		// How did we do
 		if (!getInvalidDirList().isEmpty()) {
@@ -1021,6 +1088,404 @@ public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 		save(makeBuf, modMakefile);
 	}
 
+	/**
+	 * Generates the fragment makefile of a folder, ignoring the errors, and records
+	 * its contributions in the makefile model if any.
+	 */
+	private void populateFragmentMakefile(IContainer subDir, GnuMakefileModel model) {
+		GnuMakefileModel.Snapshot before = null;
+		GnuMakefileModel.Fragment fragment = null;
+		if (model != null) {
+			before = GnuMakefileModel.snapshot(buildSrcVars, buildOutVars, getRuleList(), getDepLineList(), getDepRuleList(), getDependencyMakefiles());
+			fragment = new GnuMakefileModel.Fragment();
+		}
+		recordedFragment = fragment;
+		try {
+			populateFragmentMakefile(subDir);
+		} catch (CoreException e) {
+			// Probably should ask user if they want to continue
+			if (model != null && subDir.exists())
+				model.putFragment(subDir.getProjectRelativePath(), null);
+			return;
+		} finally {
+			recordedFragment = null;
+		}
+		if (model != null) {
+			GnuMakefileModel.record(fragment, before, buildSrcVars, buildOutVars,
+					getRuleList(), getDepLineList(), getDepRuleList(), getDependencyMakefiles());
+			fragment.stamp = getFragmentMakefile(subDir).getModificationStamp();
+			model.putFragment(subDir.getProjectRelativePath(), fragment);
+		}
+	}
+
+	/**
+	 * Adds the contributions of the fragment makefile of a folder recorded by a previous
+	 * generation, instead of generating it again.
+	 *
+	 * @return false if the contributions cannot be used, the fragment must then be generated
+	 */
+	private boolean replayFragment(IContainer subDir, GnuMakefileModel.Fragment fragment, FragmentIndex index) {
+		// The fragment must not have been modified since it was generated
+		IFile makeFragment = getFragmentMakefile(subDir);
+		if (fragment.stamp == IResource.NULL_STAMP || makeFragment.getModificationStamp() != fragment.stamp)
+			return false;
+		if (!canAddContributions(fragment, index))
+			return false;
+
+		addContributions(fragment);
+		return true;
+	}
+
+	/**
+	 * Tells whether the contributions of a fragment makefile can be added to the build
+	 * variables and the lists, instead of generating it: the generation would then be the
+	 * same. The previous fragments must provide the entries it shared with them, and none of
+	 * the entries it added, which would otherwise be missing or duplicated.
+	 */
+	private boolean canAddContributions(GnuMakefileModel.Fragment fragment, FragmentIndex index) {
+		if (FragmentIndex.containsAny(index.srcVars, buildSrcVars, fragment.srcVars)
+				|| FragmentIndex.containsAny(index.outVars, buildOutVars, fragment.outVars)
+				|| index.rules.containsAny(getRuleList(), fragment.rules)
+				|| index.depLines.containsAny(getDepLineList(), fragment.depLines)
+				|| index.depRules.containsAny(getDepRuleList(), fragment.depRules))
+			return false;
+		if (!FragmentIndex.containsAll(index.srcVars, buildSrcVars, fragment.sharedSrcVars)
+				|| !FragmentIndex.containsAll(index.outVars, buildOutVars, fragment.sharedOutVars)
+				|| !index.rules.containsAll(getRuleList(), fragment.sharedRules)
+				|| !index.depLines.containsAll(getDepLineList(), fragment.sharedDepLines)
+				|| !index.depRules.containsAll(getDepRuleList(), fragment.sharedDepRules))
+			return false;
+		for (IPath path : fragment.depMakefiles.keySet()) {
+			if (getToolInfo(path) == null)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the contributions of a fragment makefile to the build variables and the lists,
+	 * once checked with {@link #canAddContributions(GnuMakefileModel.Fragment, FragmentIndex)}
+	 */
+	private void addContributions(GnuMakefileModel.Fragment fragment) {
+		for (Entry<String, List<IPath>> entry : fragment.srcVars.entrySet())
+			buildSrcVars.get(entry.getKey()).addAll(entry.getValue());
+		for (Entry<String, List<IPath>> entry : fragment.outVars.entrySet())
+			buildOutVars.get(entry.getKey()).addAll(entry.getValue());
+		getRuleList().addAll(fragment.rules);
+		getDepLineList().addAll(fragment.depLines);
+		getDepRuleList().addAll(fragment.depRules);
+		for (Entry<IPath, List<IPath>> entry : fragment.depMakefiles.entrySet())
+			getDependencyMakefiles(getToolInfo(entry.getKey())).addAll(entry.getValue());
+	}
+
+	/**
+	 * Generates the fragment makefiles of all the subdirectories, in their order.
+	 * <p>
+	 * If the system property {@value #PARALLEL_PROPERTY} is {@code true} and the configuration
+	 * only uses extensions known to be thread-safe (see {@link #canGenerateConcurrently()}),
+	 * the contents of the fragments are computed concurrently by copies of this generator,
+	 * each fragment starting from empty build variables. The fragments are then merged in order by the calling thread,
+	 * which also writes them since the workspace is locked by the build. A fragment whose
+	 * serial generation would have been different, because it shares entries with a previous
+	 * fragment, is generated again serially, so that the makefiles are the same as serially
+	 * generated ones.
+	 * </p>
+	 *
+	 * @param oldModel model of the previous generation, whose fragments are replayed for
+	 *    the folders not modified, or null
+	 * @param newModel model recording this generation, or null
+	 */
+	private void populateFragmentMakefiles(GnuMakefileModel oldModel, GnuMakefileModel newModel) {
+		Map<IContainer, GeneratedFragment> generated = Collections.emptyMap();
+		if (Boolean.getBoolean(PARALLEL_PROPERTY) && getClass() == GnuMakefileGenerator.class && canGenerateConcurrently()) {
+			List<IContainer> toGenerate = new ArrayList<IContainer>();
+			for (IContainer subDir : getSubdirList()) {
+				if (oldModel == null || getModifiedList().contains(subDir) || oldModel.getFragment(subDir.getProjectRelativePath()) == null)
+					toGenerate.add(subDir);
+			}
+			if (toGenerate.size() > 1)
+				generated = generateFragments(toGenerate);
+		}
+
+		FragmentIndex index = new FragmentIndex();
+		for (IContainer subDir : getSubdirList()) {
+			if (oldModel != null && !getModifiedList().contains(subDir)) {
+				GnuMakefileModel.Fragment fragment = oldModel.getFragment(subDir.getProjectRelativePath());
+				if (fragment != null && replayFragment(subDir, fragment, index)) {
+					newModel.putFragment(subDir.getProjectRelativePath(), fragment);
+					checkCancel();
+					continue;
+				}
+			}
+			// Bug 303953: a folder whose sources have all been removed gets its fragment
+			// regenerated, but does not participate in the build anymore
+			boolean participates = !getModifiedList().contains(subDir) || containsBuildableSource(subDir);
+			GeneratedFragment fragment = generated.get(subDir);
+			if (fragment == null || !mergeFragment(subDir, fragment, participates ? newModel : null, index))
+				populateFragmentMakefile(subDir, participates ? newModel : null);
+			checkCancel();
+		}
+	}
+
+	/**
+	 * Tells whether the fragment makefiles of the configuration can be computed concurrently.
+	 * <p>
+	 * Computing a fragment reads the build model, resolves build macros and calls the
+	 * extensions of the tool-chain, which are not documented as thread-safe. The copies of
+	 * the generator only read the model once it is resolved, so the extensions created lazily
+	 * by the model are created here by the calling thread, and the fragments are only computed
+	 * concurrently when all these extensions are the stateless ones of the managed builder:
+	 * no build macro or environment supplier, the default command line generators and option
+	 * value handlers, no option applicability calculator or command generator, and the GCC
+	 * dependency generators.
+	 * </p>
+	 */
+	private boolean canGenerateConcurrently() {
+		if (config.getBuildMacroSupplier() != null || config.getEnvironmentVariableSupplier() != null)
+			return false;
+		IProjectType projectType = config.getProjectType();
+		if (projectType != null && (projectType.getBuildMacroSupplier() != null || projectType.getEnvironmentVariableSupplier() != null))
+			return false;
+		for (IResourceInfo rcInfo : config.getResourceInfos()) {
+			if (rcInfo.isExcluded())
+				continue;
+			ITool[] tools = rcInfo instanceof IFolderInfo ? ((IFolderInfo)rcInfo).getFilteredTools() : ((IFileInfo)rcInfo).getToolsToInvoke();
+			for (ITool tool : tools) {
+				if (tool.getCommandLineGenerator().getClass() != ManagedCommandLineGenerator.class)
+					return false;
+				for (String ext : tool.getAllInputExtensions()) {
+					IManagedDependencyGeneratorType depType = tool.getDependencyGeneratorForExtension(ext);
+					if (depType != null && !STATELESS_DEPENDENCY_GENERATORS.contains(depType.getClass()))
+						return false;
+				}
+				for (IOption option : tool.getOptions()) {
+					if (option.getValueHandler().getClass() != ManagedOptionValueHandler.class
+							|| option.getApplicabilityCalculator() != null
+							|| option.getCommandGenerator() != null)
+						return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Contents and contributions of a fragment makefile computed by a copy of the generator
+	 */
+	private static final class GeneratedFragment {
+		StringBuffer contents;
+		GnuMakefileModel.Fragment contributions;
+	}
+
+	/**
+	 * Index of the entries of the lists of the generator, updated as the lists grow,
+	 * to find quickly whether a fragment shares entries with the previous ones
+	 */
+	private static final class ListIndex<T> {
+		private final Set<T> entries = new HashSet<T>();
+		private int indexed;
+
+		boolean containsAny(List<T> list, List<T> candidates) {
+			update(list);
+			for (T candidate : candidates) {
+				if (entries.contains(candidate))
+					return true;
+			}
+			return false;
+		}
+
+		boolean containsAll(List<T> list, List<T> candidates) {
+			update(list);
+			return entries.containsAll(candidates);
+		}
+
+		private void update(List<T> list) {
+			for (; indexed < list.size(); indexed++)
+				entries.add(list.get(indexed));
+		}
+	}
+
+	private static final class FragmentIndex {
+		final HashMap<String, ListIndex<IPath>> srcVars = new HashMap<String, ListIndex<IPath>>();
+		final HashMap<String, ListIndex<IPath>> outVars = new HashMap<String, ListIndex<IPath>>();
+		final ListIndex<String> rules = new ListIndex<String>();
+		final ListIndex<String> depLines = new ListIndex<String>();
+		final ListIndex<String> depRules = new ListIndex<String>();
+
+		static boolean containsAny(HashMap<String, ListIndex<IPath>> indexes, HashMap<String, List<IPath>> vars, Map<String, List<IPath>> candidates) {
+			for (Entry<String, List<IPath>> entry : candidates.entrySet()) {
+				List<IPath> list = vars.get(entry.getKey());
+				if (list == null)
+					return true;
+				if (getIndex(indexes, entry.getKey()).containsAny(list, entry.getValue()))
+					return true;
+			}
+			return false;
+		}
+
+		static boolean containsAll(HashMap<String, ListIndex<IPath>> indexes, HashMap<String, List<IPath>> vars, Map<String, List<IPath>> candidates) {
+			for (Entry<String, List<IPath>> entry : candidates.entrySet()) {
+				List<IPath> list = vars.get(entry.getKey());
+				if (list == null || !getIndex(indexes, entry.getKey()).containsAll(list, entry.getValue()))
+					return false;
+			}
+			return true;
+		}
+
+		private static ListIndex<IPath> getIndex(HashMap<String, ListIndex<IPath>> indexes, String variable) {
+			ListIndex<IPath> index = indexes.get(variable);
+			if (index == null) {
+				index = new ListIndex<IPath>();
+				indexes.put(variable, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Computes the fragment makefiles of the given subdirectories concurrently.
+	 *
+	 * @return the fragments computed successfully, by subdirectory
+	 */
+	private Map<IContainer, GeneratedFragment> generateFragments(final List<IContainer> subDirs) {
+		int parallelism = Math.min(Runtime.getRuntime().availableProcessors(), subDirs.size());
+		final BlockingQueue<GnuMakefileGenerator> workers = new LinkedBlockingQueue<GnuMakefileGenerator>();
+		for (int i = 0; i < parallelism; i++) {
+			GnuMakefileGenerator worker = createWorker();
+			// The build variables must be iterated in the same order to generate the same fragments
+			if (!new ArrayList<String>(worker.buildSrcVars.keySet()).equals(new ArrayList<String>(buildSrcVars.keySet()))
+					|| !new ArrayList<String>(worker.buildOutVars.keySet()).equals(new ArrayList<String>(buildOutVars.keySet())))
+				return Collections.emptyMap();
+			workers.add(worker);
+		}
+
+		final IProgressMonitor cancelMonitor = monitor;
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<ForkJoinTask<GeneratedFragment>> tasks = new ArrayList<ForkJoinTask<GeneratedFragment>>(subDirs.size());
+			for (final IContainer subDir : subDirs) {
+				tasks.add(pool.submit(new Callable<GeneratedFragment>() {
+					@Override
+					public GeneratedFragment call() throws Exception {
+						if (cancelMonitor != null && cancelMonitor.isCanceled())
+							return null;
+						GnuMakefileGenerator worker = workers.take();
+						try {
+							return worker.generateFragment(subDir);
+						} finally {
+							workers.put(worker);
+						}
+					}
+				}));
+			}
+
+			HashMap<IContainer, GeneratedFragment> result = new HashMap<IContainer, GeneratedFragment>();
+			for (int i = 0; i < subDirs.size(); i++) {
+				try {
+					GeneratedFragment fragment = tasks.get(i).get();
+					if (fragment != null)
+						result.put(subDirs.get(i), fragment);
+				} catch (ExecutionException e) {
+					// The fragment is generated serially
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			return result;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Creates a copy of this generator computing fragment makefiles for it
+	 */
+	private GnuMakefileGenerator createWorker() {
+		GnuMakefileGenerator worker = new GnuMakefileGenerator();
+		worker.project = project;
+		worker.projectResources = projectResources;
+		worker.config = config;
+		worker.builder = builder;
+		worker.buildTargetName = buildTargetName;
+		worker.buildTargetExt = buildTargetExt;
+		worker.topBuildDir = topBuildDir;
+		worker.srcEntries = srcEntries;
+		worker.initToolInfos();
+		for (String macroName : buildSrcVars.keySet())
+			worker.buildSrcVars.put(macroName, new ArrayList<IPath>());
+		for (String macroName : buildOutVars.keySet())
+			worker.buildOutVars.put(macroName, new ArrayList<IPath>());
+		worker.buildDepVars.putAll(buildDepVars);
+		return worker;
+	}
+
+	/**
+	 * Computes the contents of the fragment makefile of a folder, starting from empty
+	 * build variables. Called on a copy of the generator.
+	 */
+	private GeneratedFragment generateFragment(IContainer module) throws CoreException {
+		for (List<IPath> list : buildSrcVars.values())
+			list.clear();
+		for (List<IPath> list : buildOutVars.values())
+			list.clear();
+		getRuleList().clear();
+		getDepLineList().clear();
+		getDepRuleList().clear();
+		for (List<IPath> list : getDependencyMakefiles().values())
+			list.clear();
+		GnuMakefileModel.Snapshot before = GnuMakefileModel.snapshot(buildSrcVars, buildOutVars,
+				getRuleList(), getDepLineList(), getDepRuleList(), getDependencyMakefiles());
+
+		GeneratedFragment fragment = new GeneratedFragment();
+		fragment.contents = new StringBuffer();
+		fragment.contents.append(addFragmentMakefileHeader());
+		fragment.contents.append(addSources(module));
+		fragment.contributions = new GnuMakefileModel.Fragment();
+		GnuMakefileModel.record(fragment.contributions, before, buildSrcVars, buildOutVars,
+				getRuleList(), getDepLineList(), getDepRuleList(), getDependencyMakefiles());
+		return fragment;
+	}
+
+	/**
+	 * Writes a fragment makefile computed concurrently and adds its contributions,
+	 * recording them in the makefile model if any.
+	 *
+	 * @return false if the fragment shares entries with the previous ones, it must then
+	 *    be generated serially
+	 */
+	private boolean mergeFragment(IContainer subDir, GeneratedFragment generated, GnuMakefileModel model, FragmentIndex index) {
+		// Computed from empty build variables, the fragment does not share any entry
+		GnuMakefileModel.Fragment fragment = generated.contributions;
+		if (!canAddContributions(fragment, index))
+			return false;
+
+		// Same steps as populateFragmentMakefile(IContainer)
+		IPath moduleOutputPath = getBuildWorkingDir().append(subDir.getProjectRelativePath());
+		updateMonitor(ManagedMakeMessages.getFormattedString("MakefileGenerator.message.gen.source.makefile", moduleOutputPath.toString()));	//$NON-NLS-1$
+		IFile modMakefile;
+		try {
+			IPath moduleOutputDir = createDirectory(moduleOutputPath.toString());
+			modMakefile = createFile(moduleOutputDir.append(MODFILE_NAME));
+			save(generated.contents, modMakefile);
+		} catch (CoreException e) {
+			// Probably should ask user if they want to continue
+			if (model != null && subDir.exists())
+				model.putFragment(subDir.getProjectRelativePath(), null);
+			return true;
+		}
+		addContributions(fragment);
+		if (model != null) {
+			fragment.stamp = modMakefile.getModificationStamp();
+			model.putFragment(subDir.getProjectRelativePath(), fragment);
+		}
+		return true;
+	}
+
+	private IFile getFragmentMakefile(IContainer subDir) {
+		return project.getFile(getBuildWorkingDir().append(subDir.getProjectRelativePath()).append(MODFILE_NAME));
+	}
+
 	/**
 	 * The makefile generator generates a Macro for each type of output, other than final artifact,
 	 * created by the build.
@@ -2223,7 +2688,8 @@ public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 	protected void addToBuildVar (LinkedHashMap<String, String> buildVarToRuleStringMap, String ext,
 			String varName, String relativePath, IPath sourceLocation, boolean generatedSource) {
 		List<IPath> varList = null;
-		if (varName == null) {
+		boolean isSourceVar = varName == null;
+		if (isSourceVar) {
 			// Get the proper source build variable based upon the extension
 			varName = getSourceMacroName(ext).toString();
 			varList = buildSrcVars.get(varName);
@@ -2243,9 +2709,29 @@ public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 				//  Add the resource name to the makefile line that adds resources to the build variable
 				addMacroAdditionFile(buildVarToRuleStringMap, varName, relativePath, sourceLocation, generatedSource);
 			}
+		} else if (varList != null && recordedFragment != null) {
+			recordedFragment.sharePath(isSourceVar, varName, sourceLocation);
 		}
 	}
 
+	/**
+	 * Tells whether a rule or a dependency line is already in the given list of the
+	 * generator. If so, it is recorded as shared by the fragment makefile being recorded.
+	 */
+	private boolean isKnownLine(Vector<String> list, String line) {
+		if (!list.contains(line))
+			return false;
+		if (recordedFragment != null) {
+			if (list == getRuleList())
+				GnuMakefileModel.Fragment.shareLine(recordedFragment.sharedRules, line);
+			else if (list == getDepLineList())
+				GnuMakefileModel.Fragment.shareLine(recordedFragment.sharedDepLines, line);
+			else if (list == getDepRuleList())
+				GnuMakefileModel.Fragment.shareLine(recordedFragment.sharedDepRules, line);
+		}
+		return true;
+	}
+
 	private IManagedCommandLineInfo generateToolCommandLineInfo(ITool tool, String sourceExtension, String[] flags,
 			String outputFlag, String outputPrefix, String outputName, String[] inputResources, IPath inputLocation, IPath outputLocation ){
 
@@ -2589,7 +3075,7 @@ public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 		buildRule += COLON + WHITESPACE + (patternRule ? patternBuildRuleDependencies : buildRuleDependencies);
 
 		// No duplicates in a makefile.  If we already have this rule, don't add it or the commands to build the file
-		if (getRuleList().contains(buildRule)) {
+		if (isKnownLine(getRuleList(), buildRule)) {
 			//  TODO:  Should we assert that this is a pattern rule?
 		}
 		else {
@@ -2830,7 +3316,7 @@ public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 
 		if (calculatedDependencies != null) {
 			depLine = primaryOutputName + COLON + calculatedDependencies + NEWLINE;
-			if (!getDepLineList().contains(depLine)) {
+			if (!isKnownLine(getDepLineList(), depLine)) {
 				getDepLineList().add(depLine);
 				addedDepLines = true;
 				buffer.append(depLine);
@@ -2852,7 +3338,7 @@ public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 			depLine = escapeWhitespaces(addlOutputs.get(i).toString()) + COLON + WHITESPACE + primaryOutputName;
 			if (calculatedDependencies != null) depLine += calculatedDependencies;
 			depLine += NEWLINE;
-			if (!getDepLineList().contains(depLine)) {
+			if (!isKnownLine(getDepLineList(), depLine)) {
 				getDepLineList().add(depLine);
 				addedDepLines = true;
 				buffer.append(depLine);
@@ -2885,7 +3371,7 @@ public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 					}
 				}
 				depLine += COLON + WHITESPACE + (patternRule ? patternBuildRuleDependencies : buildRuleDependencies);
-				if (!getDepRuleList().contains(depLine)) {
+				if (!isKnownLine(getDepRuleList(), depLine)) {
 					getDepRuleList().add(depLine);
 					addedDepLines = true;
 					buffer.append(depLine + NEWLINE);
@@ -4509,6 +4995,19 @@ public class GnuMakefileGenerator implements IManagedBuilderMakefileGenerator2 {
 		return h.dependencyMakefiles;
 	}
 
+	/**
+	 * @return the dependency makefiles of all the tool infos, by path of the tool info
+	 */
+	private HashMap<IPath, List<IPath>> getDependencyMakefiles() {
+		HashMap<IPath, List<IPath>> result = new HashMap<IPath, List<IPath>>();
+		for (PathSettingsContainer container : toolInfos.getChildren(true)) {
+			ToolInfoHolder h = (ToolInfoHolder)container.getValue();
+			if (h != null && h.dependencyMakefiles != null)
+				result.put(container.getPath(), h.dependencyMakefiles);
+		}
+		return result;
+	}
+
 	/**
 	 * Strips off the file extension from the argument and returns
 	 * the name component in a <code>String</code>
@@ -0,0 +1,410 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Obeo - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.cdt.managedbuilder.makegen.gnu;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.cdt.managedbuilder.core.IConfiguration;
+import org.eclipse.cdt.managedbuilder.core.ManagedBuilderCorePlugin;
+import org.eclipse.cdt.managedbuilder.internal.buildmodel.BuildStateManager;
+import org.eclipse.cdt.managedbuilder.internal.buildmodel.IProjectBuildState;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+/**
+ * Model of the makefiles generated for a configuration by {@link GnuMakefileGenerator},
+ * kept between the builds so that an incremental generation neither walks the whole
+ * project nor regenerates the fragment makefiles of the folders which did not change.
+ * <p>
+ * The model records the folders contributing sources to the build and, for each of
+ * them, the full contributions of the generation of its fragment makefile (subdir.mk):
+ * the entries it added to the build variables and the other lists of the generator, and
+ * the entries it shared with the fragments generated before it, which were therefore not
+ * added again. These contributions are replayed instead of generating the fragment again,
+ * as long as the previous fragments still provide the shared entries and none of the added
+ * ones.
+ * </p>
+ * <p>
+ * The model is stored next to the build state of the configuration, so that it survives
+ * the restarts of the workspace. It is used when the system property
+ * {@value #INCREMENTAL_PROPERTY} is {@code true}.
+ * </p>
+ */
+final class GnuMakefileModel {
+	/** System property enabling the incremental generation of the makefiles */
+	static final String INCREMENTAL_PROPERTY = "org.eclipse.cdt.managedbuilder.makegen.incremental"; //$NON-NLS-1$
+
+	private static final int VERSION = 1;
+	private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	private static final Map<String, GnuMakefileModel> models = new ConcurrentHashMap<String, GnuMakefileModel>();
+
+	/**
+	 * Contributions of the generation of a fragment makefile
+	 */
+	static final class Fragment {
+		/** Modification stamp of the fragment makefile once generated */
+		long stamp = IResource.NULL_STAMP;
+		/** Paths added to the source build variables */
+		final Map<String, List<IPath>> srcVars = new HashMap<String, List<IPath>>();
+		/** Paths added to the output build variables */
+		final Map<String, List<IPath>> outVars = new HashMap<String, List<IPath>>();
+		final List<String> rules = new ArrayList<String>();
+		final List<String> depLines = new ArrayList<String>();
+		final List<String> depRules = new ArrayList<String>();
+		/** Dependency makefiles added, by path of the tool info */
+		final Map<IPath, List<IPath>> depMakefiles = new HashMap<IPath, List<IPath>>();
+		/** Paths of the source build variables already added by the previous fragments */
+		final Map<String, List<IPath>> sharedSrcVars = new HashMap<String, List<IPath>>();
+		/** Paths of the output build variables already added by the previous fragments */
+		final Map<String, List<IPath>> sharedOutVars = new HashMap<String, List<IPath>>();
+		final List<String> sharedRules = new ArrayList<String>();
+		final List<String> sharedDepLines = new ArrayList<String>();
+		final List<String> sharedDepRules = new ArrayList<String>();
+
+		/**
+		 * Records a path of a build variable already added by a previous fragment
+		 */
+		void sharePath(boolean source, String variable, IPath path) {
+			Map<String, List<IPath>> shared = source ? sharedSrcVars : sharedOutVars;
+			List<IPath> paths = shared.get(variable);
+			if (paths == null) {
+				paths = new ArrayList<IPath>();
+				shared.put(variable, paths);
+			}
+			if (!paths.contains(path))
+				paths.add(path);
+		}
+
+		/**
+		 * Records a line already added by a previous fragment to the given list of shared lines
+		 */
+		static void shareLine(List<String> shared, String line) {
+			if (!shared.contains(line))
+				shared.add(line);
+		}
+	}
+
+	/**
+	 * Sizes of the lists of the generator before the generation of a fragment makefile
+	 */
+	static final class Snapshot {
+		final Map<String, Integer> srcVars = new HashMap<String, Integer>();
+		final Map<String, Integer> outVars = new HashMap<String, Integer>();
+		int rules;
+		int depLines;
+		int depRules;
+		final Map<IPath, Integer> depMakefiles = new HashMap<IPath, Integer>();
+	}
+
+	/** Fragments by project relative path of the folder, in the order of generation */
+	private final LinkedHashMap<IPath, Fragment> fragments = new LinkedHashMap<IPath, Fragment>();
+
+	static boolean isEnabled() {
+		return Boolean.getBoolean(INCREMENTAL_PROPERTY);
+	}
+
+	private static String getKey(IProject project, IConfiguration config) {
+		return project.getName() + '/' + config.getId();
+	}
+
+	/**
+	 * Returns the model of the last generation for the configuration, or {@code null}
+	 */
+	static GnuMakefileModel get(IProject project, IConfiguration config) {
+		String key = getKey(project, config);
+		GnuMakefileModel model = models.get(key);
+		if (model == null) {
+			model = load(project, config);
+			if (model != null)
+				models.put(key, model);
+		}
+		return model;
+	}
+
+	/**
+	 * Stores the model of a successful generation for the configuration
+	 */
+	static void set(IProject project, IConfiguration config, GnuMakefileModel model) {
+		models.put(getKey(project, config), model);
+		store(project, config, model);
+	}
+
+	/**
+	 * Forgets the model of the configuration, the next generation walks the project
+	 */
+	static void remove(IProject project, IConfiguration config) {
+		models.remove(getKey(project, config));
+		IProjectBuildState state = BuildStateManager.getInstance().getProjectBuildState(project);
+		File file = state.getMakefileModelFile(config.getId(), false);
+		if (file != null && file.exists())
+			file.delete();
+	}
+
+	private static GnuMakefileModel load(IProject project, IConfiguration config) {
+		IProjectBuildState state = BuildStateManager.getInstance().getProjectBuildState(project);
+		File file = state.getMakefileModelFile(config.getId(), false);
+		if (file == null || !file.exists())
+			return null;
+		try {
+			DataInputStream iStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				if (iStream.readInt() != VERSION)
+					return null;
+				GnuMakefileModel model = new GnuMakefileModel();
+				int count = iStream.readInt();
+				for (int i = 0; i < count; i++) {
+					IPath folder = readPath(iStream);
+					model.putFragment(folder, iStream.readBoolean() ? readFragment(iStream) : null);
+				}
+				return model;
+			} finally {
+				iStream.close();
+			}
+		} catch (IOException e) {
+			ManagedBuilderCorePlugin.log(e);
+			return null;
+		}
+	}
+
+	private static void store(IProject project, IConfiguration config, GnuMakefileModel model) {
+		IProjectBuildState state = BuildStateManager.getInstance().getProjectBuildState(project);
+		File file = state.getMakefileModelFile(config.getId(), true);
+		try {
+			DataOutputStream oStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			try {
+				oStream.writeInt(VERSION);
+				oStream.writeInt(model.fragments.size());
+				for (Map.Entry<IPath, Fragment> entry : model.fragments.entrySet()) {
+					writePath(oStream, entry.getKey());
+					oStream.writeBoolean(entry.getValue() != null);
+					if (entry.getValue() != null)
+						writeFragment(oStream, entry.getValue());
+				}
+			} finally {
+				oStream.close();
+			}
+		} catch (IOException e) {
+			ManagedBuilderCorePlugin.log(e);
+			file.delete();
+		}
+		// Saves the name of the file of the configuration
+		BuildStateManager.getInstance().setProjectBuildState(project, state);
+	}
+
+	private static Fragment readFragment(DataInputStream iStream) throws IOException {
+		Fragment fragment = new Fragment();
+		fragment.stamp = iStream.readLong();
+		readPathMap(iStream, fragment.srcVars);
+		readPathMap(iStream, fragment.outVars);
+		readLines(iStream, fragment.rules);
+		readLines(iStream, fragment.depLines);
+		readLines(iStream, fragment.depRules);
+		int count = iStream.readInt();
+		for (int i = 0; i < count; i++) {
+			IPath key = readPath(iStream);
+			List<IPath> paths = new ArrayList<IPath>();
+			readPaths(iStream, paths);
+			fragment.depMakefiles.put(key, paths);
+		}
+		readPathMap(iStream, fragment.sharedSrcVars);
+		readPathMap(iStream, fragment.sharedOutVars);
+		readLines(iStream, fragment.sharedRules);
+		readLines(iStream, fragment.sharedDepLines);
+		readLines(iStream, fragment.sharedDepRules);
+		return fragment;
+	}
+
+	private static void writeFragment(DataOutputStream oStream, Fragment fragment) throws IOException {
+		oStream.writeLong(fragment.stamp);
+		writePathMap(oStream, fragment.srcVars);
+		writePathMap(oStream, fragment.outVars);
+		writeLines(oStream, fragment.rules);
+		writeLines(oStream, fragment.depLines);
+		writeLines(oStream, fragment.depRules);
+		oStream.writeInt(fragment.depMakefiles.size());
+		for (Map.Entry<IPath, List<IPath>> entry : fragment.depMakefiles.entrySet()) {
+			writePath(oStream, entry.getKey());
+			writePaths(oStream, entry.getValue());
+		}
+		writePathMap(oStream, fragment.sharedSrcVars);
+		writePathMap(oStream, fragment.sharedOutVars);
+		writeLines(oStream, fragment.sharedRules);
+		writeLines(oStream, fragment.sharedDepLines);
+		writeLines(oStream, fragment.sharedDepRules);
+	}
+
+	private static void readPathMap(DataInputStream iStream, Map<String, List<IPath>> map) throws IOException {
+		int count = iStream.readInt();
+		for (int i = 0; i < count; i++) {
+			String key = readString(iStream);
+			List<IPath> paths = new ArrayList<IPath>();
+			readPaths(iStream, paths);
+			map.put(key, paths);
+		}
+	}
+
+	private static void writePathMap(DataOutputStream oStream, Map<String, List<IPath>> map) throws IOException {
+		oStream.writeInt(map.size());
+		for (Map.Entry<String, List<IPath>> entry : map.entrySet()) {
+			writeString(oStream, entry.getKey());
+			writePaths(oStream, entry.getValue());
+		}
+	}
+
+	private static void readPaths(DataInputStream iStream, List<IPath> paths) throws IOException {
+		int count = iStream.readInt();
+		for (int i = 0; i < count; i++)
+			paths.add(readPath(iStream));
+	}
+
+	private static void writePaths(DataOutputStream oStream, List<IPath> paths) throws IOException {
+		oStream.writeInt(paths.size());
+		for (IPath path : paths)
+			writePath(oStream, path);
+	}
+
+	private static void readLines(DataInputStream iStream, List<String> lines) throws IOException {
+		int count = iStream.readInt();
+		for (int i = 0; i < count; i++)
+			lines.add(readString(iStream));
+	}
+
+	private static void writeLines(DataOutputStream oStream, List<String> lines) throws IOException {
+		oStream.writeInt(lines.size());
+		for (String line : lines)
+			writeString(oStream, line);
+	}
+
+	private static IPath readPath(DataInputStream iStream) throws IOException {
+		return Path.fromPortableString(readString(iStream));
+	}
+
+	private static void writePath(DataOutputStream oStream, IPath path) throws IOException {
+		writeString(oStream, path.toPortableString());
+	}
+
+	/*
+	 * The rules may be longer than the strings written by DataOutputStream.writeUTF
+	 */
+	private static String readString(DataInputStream iStream) throws IOException {
+		byte[] bytes = new byte[iStream.readInt()];
+		iStream.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	private static void writeString(DataOutputStream oStream, String str) throws IOException {
+		byte[] bytes = str.getBytes(UTF8);
+		oStream.writeInt(bytes.length);
+		oStream.write(bytes);
+	}
+
+	/**
+	 * Returns the project relative paths of the folders contributing sources
+	 */
+	List<IPath> getFolders() {
+		return new ArrayList<IPath>(fragments.keySet());
+	}
+
+	/**
+	 * Returns the contributions of the fragment makefile of a folder, or {@code null}
+	 * if it is unknown
+	 */
+	Fragment getFragment(IPath folder) {
+		return fragments.get(folder);
+	}
+
+	/**
+	 * Records a folder contributing sources with the contributions of its fragment
+	 * makefile, {@code null} if they are unknown
+	 */
+	void putFragment(IPath folder, Fragment fragment) {
+		fragments.put(folder, fragment);
+	}
+
+	/**
+	 * Takes a snapshot of the sizes of the lists of the generator
+	 */
+	static Snapshot snapshot(Map<String, List<IPath>> srcVars, Map<String, List<IPath>> outVars,
+			List<String> rules, List<String> depLines, List<String> depRules, Map<IPath, List<IPath>> depMakefiles) {
+		Snapshot snapshot = new Snapshot();
+		for (Map.Entry<String, List<IPath>> entry : srcVars.entrySet())
+			snapshot.srcVars.put(entry.getKey(), entry.getValue().size());
+		for (Map.Entry<String, List<IPath>> entry : outVars.entrySet())
+			snapshot.outVars.put(entry.getKey(), entry.getValue().size());
+		snapshot.rules = rules.size();
+		snapshot.depLines = depLines.size();
+		snapshot.depRules = depRules.size();
+		for (Map.Entry<IPath, List<IPath>> entry : depMakefiles.entrySet())
+			snapshot.depMakefiles.put(entry.getKey(), entry.getValue().size());
+		return snapshot;
+	}
+
+	/**
+	 * Completes the contributions of a fragment makefile, whose shared entries have been
+	 * recorded during its generation, with the entries it added to the lists of the
+	 * generator, from their sizes before its generation. The generator only ever
+	 * appends to these lists.
+	 */
+	static void record(Fragment fragment, Snapshot before, Map<String, List<IPath>> srcVars, Map<String, List<IPath>> outVars,
+			List<String> rules, List<String> depLines, List<String> depRules, Map<IPath, List<IPath>> depMakefiles) {
+		addTails(fragment.srcVars, before.srcVars, srcVars);
+		addTails(fragment.outVars, before.outVars, outVars);
+		fragment.rules.addAll(rules.subList(before.rules, rules.size()));
+		fragment.depLines.addAll(depLines.subList(before.depLines, depLines.size()));
+		fragment.depRules.addAll(depRules.subList(before.depRules, depRules.size()));
+		addTails(fragment.depMakefiles, before.depMakefiles, depMakefiles);
+
+		// The entries found again by the fragment after adding them are not shared
+		removeAdded(fragment.sharedSrcVars, fragment.srcVars);
+		removeAdded(fragment.sharedOutVars, fragment.outVars);
+		fragment.sharedRules.removeAll(fragment.rules);
+		fragment.sharedDepLines.removeAll(fragment.depLines);
+		fragment.sharedDepRules.removeAll(fragment.depRules);
+	}
+
+	private static void removeAdded(Map<String, List<IPath>> shared, Map<String, List<IPath>> added) {
+		for (Map.Entry<String, List<IPath>> entry : added.entrySet()) {
+			List<IPath> paths = shared.get(entry.getKey());
+			if (paths != null) {
+				paths.removeAll(entry.getValue());
+				if (paths.isEmpty())
+					shared.remove(entry.getKey());
+			}
+		}
+	}
+
+	private static <K> void addTails(Map<K, List<IPath>> tails, Map<K, Integer> sizes, Map<K, List<IPath>> lists) {
+		for (Map.Entry<K, List<IPath>> entry : lists.entrySet()) {
+			Integer size = sizes.get(entry.getKey());
+			List<IPath> list = entry.getValue();
+			int start = size != null ? size.intValue() : 0;
+			if (list.size() > start)
+				tails.put(entry.getKey(), new ArrayList<IPath>(list.subList(start, list.size())));
+		}
+	}
+}
@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Obeo - Initial API and implementation
+ *******************************************************************************/
+package org.eclipse.cdt.managedbuilder.makegen.ninja;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.eclipse.cdt.managedbuilder.buildmodel.BuildDescriptionManager;
+import org.eclipse.cdt.managedbuilder.buildmodel.IBuildDescription;
+import org.eclipse.cdt.managedbuilder.core.IBuilder;
+import org.eclipse.cdt.managedbuilder.core.IConfiguration;
+import org.eclipse.cdt.managedbuilder.core.IManagedBuildInfo;
+import org.eclipse.cdt.managedbuilder.core.ManagedBuilderCorePlugin;
+import org.eclipse.cdt.managedbuilder.internal.buildmodel.BuildDescriptionNinjaGenerator;
+import org.eclipse.cdt.managedbuilder.internal.core.ManagedMakeMessages;
+import org.eclipse.cdt.managedbuilder.makegen.IManagedBuilderMakefileGenerator2;
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceStatus;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+
+/**
+ * Build file generator writing the build description of a configuration as a ninja
+ * build file instead of a tree of makefiles. It is used by the Ninja builder
+ * ({@code org.eclipse.cdt.build.core.ninja.builder}), or any builder declaring it as
+ * its {@code buildfileGenerator} and running {@code ninja} as its command.
+ * <p>
+ * The whole build graph is written in a single {@value #BUILD_FILE_NAME} in the build
+ * directory. The dependencies on the included files are not generated: ninja reads the
+ * dependency files written by the compiler and keeps them in its own logs.
+ * </p>
+ *
+ * @see BuildDescriptionNinjaGenerator
+ * @since 8.3
+ */
+public class NinjaBuildFileGenerator implements IManagedBuilderMakefileGenerator2 {
+	/** Name of the generated build file, the one run by ninja by default */
+	public static final String BUILD_FILE_NAME = "build.ninja"; //$NON-NLS-1$
+
+	private IProject project;
+	private IConfiguration config;
+	private IProgressMonitor monitor;
+	/** Project relative path of the build directory, known once the build file is generated */
+	private IPath buildWorkingDir;
+
+	@Override
+	public void initialize(IProject project, IManagedBuildInfo info, IProgressMonitor monitor) {
+		this.project = project;
+		this.config = info.getDefaultConfiguration();
+		this.monitor = monitor;
+	}
+
+	@Override
+	public void initialize(int buildKind, IConfiguration cfg, IBuilder builder, IProgressMonitor monitor) {
+		this.project = cfg.getOwner().getProject();
+		this.config = cfg;
+		this.monitor = monitor;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.cdt.managedbuilder.makegen.IManagedBuilderMakefileGenerator#generateMakefiles(org.eclipse.core.resources.IResourceDelta)
+	 */
+	@Override
+	public MultiStatus generateMakefiles(IResourceDelta delta) throws CoreException {
+		// The build file describes the whole build graph, ninja works out what is out of date
+		return regenerateMakefiles();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.cdt.managedbuilder.makegen.IManagedBuilderMakefileGenerator#regenerateMakefiles()
+	 */
+	@Override
+	public MultiStatus regenerateMakefiles() throws CoreException {
+		updateMonitor(ManagedMakeMessages.getFormattedString("MakefileGenerator.message.finding.sources", project.getName()));	//$NON-NLS-1$
+		IBuildDescription des = BuildDescriptionManager.createBuildDescription(config, null, BuildDescriptionManager.DEPFILES);
+
+		if (des.getOutputStep().getInputResources().length == 0) {
+			String info = ManagedMakeMessages.getFormattedString("MakefileGenerator.warning.no.source", project.getName()); //$NON-NLS-1$
+			updateMonitor(info);
+			MultiStatus status = new MultiStatus(
+					ManagedBuilderCorePlugin.getUniqueIdentifier(),
+					IStatus.INFO,
+					new String(),
+					null);
+			status.add(new Status (
+					IStatus.INFO,
+					ManagedBuilderCorePlugin.getUniqueIdentifier(),
+					NO_SOURCE_FOLDERS,
+					info,
+					null));
+			return status;
+		}
+
+		IPath buildDir = des.getDefaultBuildDirFullPath();
+		buildWorkingDir = buildDir.removeFirstSegments(1);
+		IContainer container = buildWorkingDir.isEmpty() ? (IContainer)project : createDirectory(project.getFolder(buildWorkingDir));
+
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		new BuildDescriptionNinjaGenerator(des).store(stream);
+		save(stream.toByteArray(), container.getFile(new Path(BUILD_FILE_NAME)));
+
+		return new MultiStatus(
+				ManagedBuilderCorePlugin.getUniqueIdentifier(),
+				IStatus.OK,
+				new String(),
+				null);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.cdt.managedbuilder.makegen.IManagedBuilderMakefileGenerator#generateDependencies()
+	 */
+	@Override
+	public void generateDependencies() throws CoreException {
+		// ninja reads the dependency files itself
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.cdt.managedbuilder.makegen.IManagedBuilderMakefileGenerator#regenerateDependencies(boolean)
+	 */
+	@Override
+	public void regenerateDependencies(boolean force) throws CoreException {
+		// ninja reads the dependency files itself
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.cdt.managedbuilder.makegen.IManagedBuilderMakefileGenerator#getBuildWorkingDir()
+	 */
+	@Override
+	public IPath getBuildWorkingDir() {
+		if (buildWorkingDir == null && config != null)
+			return new Path(config.getName());
+		return buildWorkingDir;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.cdt.managedbuilder.makegen.IManagedBuilderMakefileGenerator#getMakefileName()
+	 */
+	@Override
+	public String getMakefileName() {
+		return BUILD_FILE_NAME;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.eclipse.cdt.managedbuilder.makegen.IManagedBuilderMakefileGenerator#isGeneratedResource(org.eclipse.core.resources.IResource)
+	 */
+	@Override
+	public boolean isGeneratedResource(IResource resource) {
+		IPath dir = getBuildWorkingDir();
+		return dir != null && !dir.isEmpty() && dir.isPrefixOf(resource.getProjectRelativePath());
+	}
+
+	private IFolder createDirectory(IFolder folder) throws CoreException {
+		if (!folder.exists()) {
+			IContainer parent = folder.getParent();
+			if (parent instanceof IFolder)
+				createDirectory((IFolder)parent);
+			try {
+				folder.create(true, true, null);
+			} catch (CoreException e) {
+				if (e.getStatus().getCode() == IResourceStatus.PATH_OCCUPIED)
+					folder.refreshLocal(IResource.DEPTH_ZERO, null);
+				else
+					throw e;
+			}
+			// Make sure the folder is marked as derived so it is not added to CM
+			if (!folder.isDerived())
+				folder.setDerived(true, null);
+		}
+		return folder;
+	}
+
+	/**
+	 * Writes the build file unless it is up to date, so that ninja does not
+	 * reload it for nothing
+	 */
+	private static void save(byte[] bytes, IFile file) throws CoreException {
+		if (!file.exists()) {
+			file.create(new ByteArrayInputStream(bytes), true, null);
+			file.setDerived(true, null);
+			return;
+		}
+		if (hasContents(file, bytes))
+			return;
+		file.setContents(new ByteArrayInputStream(bytes), true, false, null); // Don't record history
+	}
+
+	private static boolean hasContents(IFile file, byte[] bytes) {
+		InputStream current = null;
+		try {
+			current = new BufferedInputStream(file.getContents(true));
+			for (int i = 0; i < bytes.length; i++) {
+				if (current.read() != (bytes[i] & 0xFF))
+					return false;
+			}
+			return current.read() == -1;
+		} catch (CoreException e) {
+			return false;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			if (current != null) {
+				try {
+					current.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	private void updateMonitor(String msg) {
+		if (monitor != null && !monitor.isCanceled()) {
+			monitor.subTask(msg);
+			monitor.worked(1);
+		}
+	}
+}